@@ -0,0 +1,27 @@
+package stev.sudoku;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Lance les bancs d'essai avec le profileur GC (taux d'allocation). Les options usuelles de JMH
+ * restent disponibles, par exemple -p corpus=hard17 ou un motif pour ne lancer que certains bancs.
+ */
+public class Benchmarks {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        OptionsBuilder constructeur = new OptionsBuilder();
+        constructeur.parent(options).addProfiler(GCProfiler.class);
+        if (options.getIncludes().isEmpty())
+            constructeur.include(Benchmarks.class.getPackage().getName() + "\\..*Benchmark");
+        try {
+            new Runner(constructeur.build()).run();
+        } catch (RunnerException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package stev.sudoku;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compteurs secondaires publiés par JMH à côté du débit : nombre de clauses et de variables
+ * produites par une opération, c'est-à-dire pour tout le corpus.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class ClauseCounts {
+    public long clauses;
+    public long variables;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        clauses = 0;
+        variables = 0;
+    }
+
+    void set(long clauses, long variables) {
+        this.clauses = clauses;
+        this.variables = variables;
+    }
+}
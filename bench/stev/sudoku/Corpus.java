@@ -0,0 +1,85 @@
+package stev.sudoku;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Grilles fixes sur lesquelles tournent tous les bancs d'essai. Une opération traite
+ * toutes les grilles du corpus choisi.
+ */
+@State(Scope.Benchmark)
+public class Corpus {
+    // Grilles de 17 indices à solution unique
+    static final String DIFFICILES[] = {
+            "#######1#4#########2###########5#4#7##8###3####1#9####3##4##2###5#1########8#6###",
+            "#######1#4#########2###########5#6#4##8###3####1#9####3##4##2###5#1########8#7###",
+            "#######12####35######6###7#7#####3#####4##8##1###########12#####8#####4##5####6##",
+            "#######12##36##########7###41##2#######5##3##7#####6##28#####4####3##5###########",
+            "#######12##8#3###########4#12#5##########47###6#######5#7###3#####62#######1#####",
+            "#######13####3##8##7##########2#6####3####9######1####6##5##2#4###4##7##1########",
+            "#######13###5###7####8#2######4##9##1#7############2##89#####5##4####6######1####",
+            "#######13###7###6####5#8######4##8##1#6############2##74#####5##2####4######1####"
+    };
+
+    @Param({"main", "hard17", "16x16", "25x25"})
+    public String corpus;
+
+    public Sudoku grilles[];
+
+    @Setup
+    public void setup() {
+        switch (corpus) {
+            case "main":
+                grilles = lire(Main.sudokus);
+                break;
+            case "hard17":
+                grilles = lire(DIFFICILES);
+                break;
+            case "16x16":
+                grilles = generer(4, 4, 0.55, 4);
+                break;
+            case "25x25":
+                grilles = generer(5, 5, 0.45, 2);
+                break;
+            default:
+                throw new IllegalArgumentException("Corpus inconnu : " + corpus);
+        }
+    }
+
+    private static Sudoku[] lire(String[] lignes) {
+        Sudoku grilles[] = new Sudoku[lignes.length];
+        for (int g = 0; g < lignes.length; g++)
+            grilles[g] = Sudoku.parse(lignes[g]);
+        return grilles;
+    }
+
+    // Grilles satisfiables obtenues en vidant une proportion des cases d'une solution connue ;
+    // la graine est fixe pour que le corpus soit identique d'une exécution à l'autre
+    static Sudoku[] generer(int hauteurBloc, int largeurBloc, double proportionVides, int nombre) {
+        int n = hauteurBloc * largeurBloc;
+        Random hasard = new Random(42);
+        Sudoku grilles[] = new Sudoku[nombre];
+        for (int g = 0; g < nombre; g++) {
+            int permutation[] = new int[n];
+            for (int v = 0; v < n; v++)
+                permutation[v] = v;
+            for (int v = n - 1; v > 0; v--) {
+                int w = hasard.nextInt(v + 1);
+                int t = permutation[v];
+                permutation[v] = permutation[w];
+                permutation[w] = t;
+            }
+            int grille[][] = new int[n][n];
+            for (int i = 0; i < n; i++)
+                for (int j = 0; j < n; j++)
+                    if (hasard.nextDouble() >= proportionVides)
+                        grille[i][j] = permutation[((i % hauteurBloc) * largeurBloc + i / hauteurBloc + j) % n] + 1;
+            grilles[g] = new Sudoku(grille, hauteurBloc, largeurBloc);
+        }
+        return grilles;
+    }
+}
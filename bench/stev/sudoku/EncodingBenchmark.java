@@ -0,0 +1,113 @@
+package stev.sudoku;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import stev.booleans.BooleanFormula;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chaque phase de la modélisation mesurée séparément : construction de la formule,
+ * conversion en CNF, export des clauses, puis les encodeurs directs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncodingBenchmark {
+
+    // Formules et CNF construites une fois, pour mesurer les phases suivantes isolément
+    @State(Scope.Benchmark)
+    public static class Formules {
+        BooleanFormula formules[];
+        BooleanFormula cnfs[];
+
+        @Setup
+        public void setup(Corpus corpus) {
+            formules = new BooleanFormula[corpus.grilles.length];
+            cnfs = new BooleanFormula[corpus.grilles.length];
+            for (int g = 0; g < formules.length; g++) {
+                formules[g] = corpus.grilles[g].formule();
+                cnfs[g] = BooleanFormula.toCnf(formules[g]);
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Encodage {
+        @Param({"PAIRWISE", "SEQUENTIAL", "COMMANDER", "PRODUCT"})
+        public AtMostOne amo;
+    }
+
+    @Benchmark
+    public void formula(Corpus corpus, Blackhole trou) {
+        for (Sudoku grille : corpus.grilles)
+            trou.consume(grille.formule());
+    }
+
+    @Benchmark
+    public void toCnf(Formules formules, Blackhole trou) {
+        for (BooleanFormula formule : formules.formules)
+            trou.consume(BooleanFormula.toCnf(formule));
+    }
+
+    @Benchmark
+    public void getClauses(Formules formules, ClauseCounts compteurs, Blackhole trou) {
+        long clauses = 0;
+        for (BooleanFormula cnf : formules.cnfs) {
+            int tableau[][] = cnf.getClauses();
+            clauses += tableau.length;
+            trou.consume(tableau);
+        }
+        compteurs.set(clauses, 0);
+    }
+
+    // Chaîne complète d'origine : formule, CNF et export
+    @Benchmark
+    public void modelize(Corpus corpus, ClauseCounts compteurs, Blackhole trou) {
+        long clauses = 0, variables = 0;
+        for (Sudoku grille : corpus.grilles) {
+            BooleanFormula cnf = grille.modelize();
+            int tableau[][] = cnf.getClauses();
+            clauses += tableau.length;
+            variables += grille.getTaille() * grille.getTaille() * grille.getTaille();
+            trou.consume(tableau);
+        }
+        compteurs.set(clauses, variables);
+    }
+
+    @Benchmark
+    public void encode(Corpus corpus, Encodage encodage, ClauseCounts compteurs, Blackhole trou) {
+        long clauses = 0, variables = 0;
+        for (Sudoku grille : corpus.grilles) {
+            ClauseArena arena = grille.encode(encodage.amo);
+            clauses += arena.size();
+            variables += arena.getVariableCount();
+            trou.consume(arena);
+        }
+        compteurs.set(clauses, variables);
+    }
+
+    @Benchmark
+    public void encodeReduced(Corpus corpus, Encodage encodage, ClauseCounts compteurs, Blackhole trou) {
+        long clauses = 0, variables = 0;
+        for (Sudoku grille : corpus.grilles) {
+            ReducedEncoding reduit = grille.encodeReduced(encodage.amo);
+            clauses += reduit.getClauses().size();
+            variables += reduit.getClauses().getVariableCount();
+            trou.consume(reduit);
+        }
+        compteurs.set(clauses, variables);
+    }
+}
@@ -0,0 +1,38 @@
+package stev.sudoku;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+
+/**
+ * Compteurs secondaires publiés par JMH à côté du débit : nombre de grilles gagnées par chaque
+ * stratégie de PortfolioSudokuSolver.standard() pendant l'itération.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class PortfolioWins {
+    public long natif;
+    public long satDefaultPairwise;
+    public long satGlucoseSequential;
+    public long satMinisatProduct;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        natif = 0;
+        satDefaultPairwise = 0;
+        satGlucoseSequential = 0;
+        satMinisatProduct = 0;
+    }
+
+    // Ajoute les victoires obtenues entre deux relevés de getWins()
+    void add(Map<String, Long> avant, Map<String, Long> apres) {
+        natif += apres.get("native") - avant.get("native");
+        satDefaultPairwise += apres.get("sat-default-pairwise") - avant.get("sat-default-pairwise");
+        satGlucoseSequential += apres.get("sat-glucose-sequential") - avant.get("sat-glucose-sequential");
+        satMinisatProduct += apres.get("sat-minisat-product") - avant.get("sat-minisat-product");
+    }
+}
@@ -0,0 +1,109 @@
+package stev.sudoku;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Résolution seule, à partir de clauses déjà encodées, puis résolution de bout en bout
+ * avec chacun des moteurs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolveBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Encodages {
+        ClauseArena arenas[];
+
+        @Setup
+        public void setup(Corpus corpus) {
+            arenas = new ClauseArena[corpus.grilles.length];
+            for (int g = 0; g < arenas.length; g++)
+                arenas[g] = corpus.grilles[g].encode();
+        }
+    }
+
+    // Un moteur de chaque sorte par thread, comme dans BatchSolver
+    @State(Scope.Thread)
+    public static class Moteurs {
+        SudokuSession session;
+        BitboardSudokuSolver natif;
+        SatSudokuSolver sat;
+        PortfolioSudokuSolver portefeuille;
+
+        @Setup
+        public void setup(Corpus corpus) {
+            Sudoku premiere = corpus.grilles[0];
+            session = new SudokuSession(premiere.getHauteurBloc(), premiere.getLargeurBloc(), AtMostOne.PAIRWISE);
+            natif = new BitboardSudokuSolver();
+            sat = new SatSudokuSolver();
+            portefeuille = PortfolioSudokuSolver.standard();
+        }
+
+        @TearDown
+        public void tearDown() {
+            portefeuille.close();
+        }
+    }
+
+    @Benchmark
+    public void solveOnly(Corpus corpus, Encodages encodages, Blackhole trou) {
+        for (int g = 0; g < encodages.arenas.length; g++)
+            trou.consume(corpus.grilles[g].solve(encodages.arenas[g]));
+    }
+
+    // Chaîne complète d'origine : modelize, getClauses et solve
+    @Benchmark
+    public void endToEndModelize(Corpus corpus, Blackhole trou) {
+        for (Sudoku grille : corpus.grilles)
+            trou.consume(grille.solve(grille.modelize().getClauses()));
+    }
+
+    @Benchmark
+    public void endToEndEncode(Corpus corpus, Blackhole trou) {
+        for (Sudoku grille : corpus.grilles)
+            trou.consume(grille.solve(grille.encode()));
+    }
+
+    @Benchmark
+    public void endToEndReduced(Corpus corpus, Moteurs moteurs, Blackhole trou) {
+        for (Sudoku grille : corpus.grilles)
+            trou.consume(moteurs.sat.solve(grille));
+    }
+
+    @Benchmark
+    public void session(Corpus corpus, Moteurs moteurs, Blackhole trou) {
+        for (Sudoku grille : corpus.grilles)
+            trou.consume(moteurs.session.solve(grille));
+    }
+
+    @Benchmark
+    public void nativeEngine(Corpus corpus, Moteurs moteurs, Blackhole trou) {
+        for (Sudoku grille : corpus.grilles)
+            trou.consume(moteurs.natif.solve(grille));
+    }
+
+    @Benchmark
+    public void portfolio(Corpus corpus, Moteurs moteurs, PortfolioWins victoires, Blackhole trou) {
+        Map<String, Long> avant = moteurs.portefeuille.getWins();
+        for (Sudoku grille : corpus.grilles)
+            trou.consume(moteurs.portefeuille.solve(grille));
+        victoires.add(avant, moteurs.portefeuille.getWins());
+    }
+}
@@ -0,0 +1,57 @@
+package stev.sudoku;
+
+import stev.booleans.CnfFormula;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Vérification de bout en bout de Sudoku.solve(CnfFormula) : les clauses de encode(), avec chaque
+ * encodage "au plus un", et celles de modelize() passent par le prétraitement et le solveur, et la
+ * grille retournée doit respecter les règles et les cases pré-remplies. Code de sortie 1 en cas d'échec.
+ */
+public class SolveCheck {
+    public static void main(String[] args) {
+        List<Sudoku> grilles = new ArrayList<>();
+        grilles.add(grille("1##2###4####2#4#", 2, 2));
+        for (String ligne : Main.sudokus)
+            grilles.add(Sudoku.parse(ligne));
+        for (double proportionVides : new double[] {0.3, 0.5, 0.7}) {
+            ajouter(grilles, Corpus.generer(2, 2, proportionVides, 20));
+            ajouter(grilles, Corpus.generer(2, 3, proportionVides, 20));
+            ajouter(grilles, Corpus.generer(3, 3, proportionVides, 10));
+            ajouter(grilles, Corpus.generer(4, 4, proportionVides, 2));
+        }
+
+        int nbEchecs = 0;
+        for (Sudoku grille : grilles) {
+            for (AtMostOne auPlusUn : AtMostOne.values())
+                nbEchecs += verifier(grille, grille.encode(auPlusUn), "encode(" + auPlusUn + ")");
+            nbEchecs += verifier(grille, grille.modelize(), "modelize()");
+        }
+        System.out.println("Grilles : " + grilles.size() + ", échecs : " + nbEchecs);
+        if (nbEchecs > 0)
+            System.exit(1);
+    }
+
+    private static Sudoku grille(String ligne, int hauteurBloc, int largeurBloc) {
+        Sudoku sudoku = new Sudoku(hauteurBloc, largeurBloc);
+        sudoku.initialize(ligne);
+        return sudoku;
+    }
+
+    private static void ajouter(List<Sudoku> grilles, Sudoku[] nouvelles) {
+        for (Sudoku grille : nouvelles)
+            grilles.add(grille);
+    }
+
+    // Toutes les grilles vérifiées ont une solution : une grille non satisfiable est aussi un échec
+    private static int verifier(Sudoku grille, CnfFormula cnf, String origine) {
+        Sudoku solution = grille.findSolution(cnf);
+        if (solution != null && solution.isSolutionOf(grille))
+            return 0;
+        System.out.println("Échec avec " + origine + " : " + grille.toLine()
+                + (solution == null ? " (non satisfiable)" : " -> " + solution.toLine()));
+        return 1;
+    }
+}
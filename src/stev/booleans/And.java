@@ -53,7 +53,7 @@ public class And extends NaryConnective
 	@Override
 	public int[][] getClauses()
 	{
-		Map<String,Integer> var_dict = getVariablesMap();
+		Map<String,Integer> var_dict = getExportMap(this);
 		int[][] clauses = new int[m_operands.size()][];
 		for (int i = 0; i < m_operands.size(); i++)
 		{
@@ -70,12 +70,12 @@ public class And extends NaryConnective
 			else if (bf instanceof Not)
 			{
 				PropositionalVariable p = (PropositionalVariable) ((Not) bf).m_operand;
-				clauses[i] = new int[] {-var_dict.get(p.m_variableName)};
+				clauses[i] = new int[] {-p.getIndex(var_dict)};
 			}
 			else if (bf instanceof PropositionalVariable)
 			{
 				PropositionalVariable p = (PropositionalVariable) bf;
-				clauses[i] = new int[] {var_dict.get(p.m_variableName)};
+				clauses[i] = new int[] {p.getIndex(var_dict)};
 			}
 		}
 		return clauses;
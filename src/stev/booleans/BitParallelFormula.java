@@ -0,0 +1,542 @@
+/*
+    Simple manipulation of Boolean formulas
+    Copyright (C) 2020 Sylvain Hallé
+    
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+    
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package stev.booleans;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Formula compiled for evaluation on 64 valuations at once. Each
+ * variable is given as a <tt>long</tt> whose bit <i>k</i> is its value in
+ * valuation <i>k</i>; the connectives then become bitwise operations, and
+ * one pass over the program gives the value of the formula in 64
+ * valuations. {@link #evaluate(long[][], long[])} processes longer
+ * batches block by block, with loops over arrays of words that the JIT
+ * can vectorize.
+ * <p>
+ * The program is a sequence of bitwise operations on registers, one
+ * register per distinct subformula: a subformula that appears several
+ * times as the same object (for example in a formula built by a
+ * {@link FormulaFactory}) is computed only once. Variables are numbered as
+ * in {@link CompiledFormula}.
+ */
+public class BitParallelFormula
+{
+	/**
+	 * Opcodes of the instructions
+	 */
+	protected static final int LOAD = 0, NOT = 1, AND = 2, OR = 3, IMPLIES = 4, EQUIV = 5, CONST = 6;
+	
+	/**
+	 * Number of words of each variable processed at a time by
+	 * {@link #evaluate(long[][], long[])}
+	 */
+	protected static final int BLOCK = 64;
+	
+	/**
+	 * The program: instruction <i>i</i> is <tt>m_code[4*i]</tt> (opcode),
+	 * followed by the destination register and the two operands (a register,
+	 * a variable number for {@link #LOAD}, or the constant for {@link #CONST})
+	 */
+	/*@ non_null @*/ protected final int[] m_code;
+	
+	/**
+	 * The register holding the value of the formula
+	 */
+	protected final int m_result;
+	
+	/**
+	 * The number of registers
+	 */
+	protected final int m_registers;
+	
+	/**
+	 * The number given to each variable
+	 */
+	/*@ non_null @*/ protected final Map<String,Integer> m_indices;
+	
+	/**
+	 * The largest variable number
+	 */
+	protected final int m_variableCount;
+	
+	/**
+	 * Compiles a formula
+	 * @param phi The formula
+	 */
+	public BitParallelFormula(/*@ non_null @*/ BooleanFormula phi)
+	{
+		super();
+		Compiler c = new Compiler();
+		m_result = phi instanceof CnfFormula ? c.compileCnf((CnfFormula) phi) : c.compile(phi);
+		m_code = Arrays.copyOf(c.m_code, 4 * c.m_size);
+		m_registers = c.m_registers;
+		m_indices = c.m_indices;
+		m_variableCount = c.m_variableCount;
+	}
+	
+	/**
+	 * Evaluates the formula on 64 valuations
+	 * @param lanes The values of the variables: bit <i>k</i> of
+	 * <tt>lanes[i]</tt> is the value of variable <i>i</i> in valuation
+	 * <i>k</i>. Entry 0 is not used.
+	 * @return The values of the formula: bit <i>k</i> is its value in
+	 * valuation <i>k</i>
+	 */
+	public long evaluate(/*@ non_null @*/ long[] lanes)
+	{
+		return evaluate(lanes, new long[m_registers]);
+	}
+	
+	/**
+	 * Evaluates the formula on 64 valuations, using a given array as
+	 * registers so that nothing is allocated
+	 * @param lanes The values of the variables, as in {@link #evaluate(long[])}
+	 * @param registers An array of at least {@link #getRegisterCount()}
+	 * entries, whose contents are overwritten
+	 * @return The values of the formula
+	 */
+	public long evaluate(/*@ non_null @*/ long[] lanes, /*@ non_null @*/ long[] registers)
+	{
+		final int[] code = m_code;
+		for (int i = 0; i < code.length; i += 4)
+		{
+			int dst = code[i + 1];
+			int a = code[i + 2];
+			int b = code[i + 3];
+			switch (code[i])
+			{
+			case LOAD:
+				registers[dst] = lanes[a];
+				break;
+			case NOT:
+				registers[dst] = ~registers[a];
+				break;
+			case AND:
+				registers[dst] = registers[a] & registers[b];
+				break;
+			case OR:
+				registers[dst] = registers[a] | registers[b];
+				break;
+			case IMPLIES:
+				registers[dst] = ~registers[a] | registers[b];
+				break;
+			case EQUIV:
+				registers[dst] = ~(registers[a] ^ registers[b]);
+				break;
+			default:
+				registers[dst] = a == 0 ? 0L : -1L;
+			}
+		}
+		return registers[m_result];
+	}
+	
+	/**
+	 * Evaluates the formula on any number of valuations
+	 * @param lanes The values of the variables: bit <i>k</i> of
+	 * <tt>lanes[i][w]</tt> is the value of variable <i>i</i> in valuation
+	 * 64<i>w</i>+<i>k</i>. Entry 0 is not used, and all other entries must
+	 * have at least as many words as <tt>results</tt>.
+	 * @param results The array receiving the values of the formula, one bit
+	 * per valuation
+	 */
+	public void evaluate(/*@ non_null @*/ long[][] lanes, /*@ non_null @*/ long[] results)
+	{
+		final int[] code = m_code;
+		long[] r = new long[m_registers * BLOCK];
+		for (int from = 0; from < results.length; from += BLOCK)
+		{
+			int len = Math.min(BLOCK, results.length - from);
+			for (int i = 0; i < code.length; i += 4)
+			{
+				int dst = code[i + 1] * BLOCK;
+				int a = code[i + 2];
+				int b = code[i + 3] * BLOCK;
+				switch (code[i])
+				{
+				case LOAD:
+					System.arraycopy(lanes[a], from, r, dst, len);
+					break;
+				case NOT:
+					a *= BLOCK;
+					for (int w = 0; w < len; w++)
+					{
+						r[dst + w] = ~r[a + w];
+					}
+					break;
+				case AND:
+					a *= BLOCK;
+					for (int w = 0; w < len; w++)
+					{
+						r[dst + w] = r[a + w] & r[b + w];
+					}
+					break;
+				case OR:
+					a *= BLOCK;
+					for (int w = 0; w < len; w++)
+					{
+						r[dst + w] = r[a + w] | r[b + w];
+					}
+					break;
+				case IMPLIES:
+					a *= BLOCK;
+					for (int w = 0; w < len; w++)
+					{
+						r[dst + w] = ~r[a + w] | r[b + w];
+					}
+					break;
+				case EQUIV:
+					a *= BLOCK;
+					for (int w = 0; w < len; w++)
+					{
+						r[dst + w] = ~(r[a + w] ^ r[b + w]);
+					}
+					break;
+				default:
+					Arrays.fill(r, dst, dst + len, a == 0 ? 0L : -1L);
+				}
+			}
+			System.arraycopy(r, m_result * BLOCK, results, from, len);
+		}
+	}
+	
+	/**
+	 * Packs up to 64 valuations into lanes
+	 * @param valuations The valuations; valuation <i>k</i> becomes bit
+	 * <i>k</i> of each lane
+	 * @param num_variables The largest variable number
+	 * @return The lanes, indexed by variable number
+	 */
+	/*@ non_null @*/ public static long[] toLanes(/*@ non_null @*/ BitValuation[] valuations, int num_variables)
+	{
+		if (valuations.length > 64)
+		{
+			throw new BooleanFormulaException("At most 64 valuations fit in a lane");
+		}
+		long[] lanes = new long[num_variables + 1];
+		for (int k = 0; k < valuations.length; k++)
+		{
+			for (int i = 1; i <= num_variables; i++)
+			{
+				if (valuations[k].get(i))
+				{
+					lanes[i] |= 1L << k;
+				}
+			}
+		}
+		return lanes;
+	}
+	
+	/**
+	 * Gets the number given to a variable
+	 * @param var_name The name of the variable
+	 * @return The number, or 0 if the variable does not occur in the
+	 * formula
+	 */
+	public int getIndex(/*@ non_null @*/ String var_name)
+	{
+		Integer index = m_indices.get(var_name);
+		return index == null ? 0 : index;
+	}
+	
+	/**
+	 * Gets the largest variable number
+	 * @return The number
+	 */
+	public int getVariableCount()
+	{
+		return m_variableCount;
+	}
+	
+	/**
+	 * Gets the number of registers used by the program
+	 * @return The number of registers
+	 */
+	public int getRegisterCount()
+	{
+		return m_registers;
+	}
+	
+	/**
+	 * Emits the program, operands before the connectives that use them
+	 */
+	protected static class Compiler
+	{
+		int[] m_code = new int[64];
+		
+		int m_size = 0;
+		
+		int m_registers = 0;
+		
+		Map<String,Integer> m_indices = new HashMap<String,Integer>();
+		
+		int m_variableCount = 0;
+		
+		int m_lastIndex = 0;
+		
+		/**
+		 * The register of each variable number already loaded
+		 */
+		Map<Integer,Integer> m_loaded = new HashMap<Integer,Integer>();
+		
+		/**
+		 * The register of each subformula already computed
+		 */
+		Map<BooleanFormula,Integer> m_done = new IdentityHashMap<BooleanFormula,Integer>();
+		
+		/**
+		 * The formula standing for each CNF formula or cardinality
+		 * constraint met, created once so that both visits see the same one
+		 */
+		Map<BooleanFormula,BooleanFormula[]> m_replaced = new IdentityHashMap<BooleanFormula,BooleanFormula[]>();
+		
+		/**
+		 * Emits an instruction
+		 * @return The destination register
+		 */
+		int emit(int op, int dst, int a, int b)
+		{
+			if (4 * m_size + 4 > m_code.length)
+			{
+				m_code = Arrays.copyOf(m_code, 2 * m_code.length);
+			}
+			m_code[4 * m_size] = op;
+			m_code[4 * m_size + 1] = dst;
+			m_code[4 * m_size + 2] = a;
+			m_code[4 * m_size + 3] = b;
+			m_size++;
+			return dst;
+		}
+		
+		/**
+		 * Gets the register holding a variable, loading it if needed
+		 * @param index The number of the variable
+		 * @return The register
+		 */
+		int load(int index)
+		{
+			Integer reg = m_loaded.get(index);
+			if (reg == null)
+			{
+				reg = emit(LOAD, m_registers++, index, 0);
+				m_loaded.put(index, reg);
+			}
+			return reg;
+		}
+		
+		/**
+		 * Gets the number of a variable
+		 * @param p The variable
+		 * @return The number
+		 */
+		int index(PropositionalVariable p)
+		{
+			Integer index = m_indices.get(p.m_variableName);
+			if (index == null)
+			{
+				index = p.m_id > 0 ? p.m_id : ++m_lastIndex;
+				m_indices.put(p.m_variableName, index);
+				m_variableCount = Math.max(m_variableCount, index);
+			}
+			return index;
+		}
+		
+		/**
+		 * Combines registers with an associative operation
+		 * @param op The operation, {@link #AND} or {@link #OR}
+		 * @param regs The registers
+		 * @param n The number of registers
+		 * @return The register holding the result
+		 */
+		int combine(int op, int[] regs, int n)
+		{
+			if (n == 0)
+			{
+				return emit(CONST, m_registers++, op == AND ? 1 : 0, 0);
+			}
+			if (n == 1)
+			{
+				return regs[0];
+			}
+			int dst = emit(op, m_registers++, regs[0], regs[1]);
+			for (int i = 2; i < n; i++)
+			{
+				emit(op, dst, dst, regs[i]);
+			}
+			return dst;
+		}
+		
+		/**
+		 * Compiles a formula without recursion: a node is visited a first
+		 * time to push its operands, and a second time, once their registers
+		 * are known, to emit its own instructions
+		 * @param phi The formula
+		 * @return The register holding its value
+		 */
+		int compile(BooleanFormula phi)
+		{
+			Deque<BooleanFormula> stack = new ArrayDeque<BooleanFormula>();
+			Map<BooleanFormula,Boolean> expanded = new IdentityHashMap<BooleanFormula,Boolean>();
+			stack.push(phi);
+			while (!stack.isEmpty())
+			{
+				BooleanFormula f = stack.peek();
+				if (m_done.containsKey(f))
+				{
+					stack.pop();
+					continue;
+				}
+				if (f instanceof PropositionalVariable)
+				{
+					stack.pop();
+					m_done.put(f, load(index((PropositionalVariable) f)));
+					continue;
+				}
+				BooleanFormula[] ops = operands(f);
+				if (expanded.put(f, Boolean.TRUE) == null)
+				{
+					for (int i = ops.length - 1; i >= 0; i--)
+					{
+						if (!m_done.containsKey(ops[i]))
+						{
+							stack.push(ops[i]);
+						}
+					}
+					continue;
+				}
+				stack.pop();
+				int[] regs = new int[ops.length];
+				for (int i = 0; i < ops.length; i++)
+				{
+					regs[i] = m_done.get(ops[i]);
+				}
+				int reg;
+				if (f instanceof Not)
+				{
+					reg = emit(NOT, m_registers++, regs[0], 0);
+				}
+				else if (f instanceof And)
+				{
+					reg = combine(AND, regs, regs.length);
+				}
+				else if (f instanceof Or)
+				{
+					reg = combine(OR, regs, regs.length);
+				}
+				else if (f instanceof Implies)
+				{
+					reg = emit(IMPLIES, m_registers++, regs[0], regs[1]);
+				}
+				else if (f instanceof Equivalence)
+				{
+					reg = emit(EQUIV, m_registers++, regs[0], regs[1]);
+				}
+				else
+				{
+					// Same value as the formula it stands for
+					reg = regs[0];
+				}
+				m_done.put(f, reg);
+			}
+			return m_done.get(phi);
+		}
+		
+		/**
+		 * Gets the operands of a connective
+		 * @param f The connective
+		 * @return The operands
+		 */
+		BooleanFormula[] operands(BooleanFormula f)
+		{
+			if (f instanceof Not)
+			{
+				return new BooleanFormula[] {((Not) f).m_operand};
+			}
+			if (f instanceof NaryConnective)
+			{
+				List<BooleanFormula> ops = ((NaryConnective) f).m_operands;
+				return ops.toArray(new BooleanFormula[ops.size()]);
+			}
+			if (f instanceof BinaryConnective)
+			{
+				return new BooleanFormula[] {((BinaryConnective) f).m_left, ((BinaryConnective) f).m_right};
+			}
+			if (f instanceof CnfFormula || f instanceof Cardinality)
+			{
+				BooleanFormula[] ops = m_replaced.get(f);
+				if (ops == null)
+				{
+					ops = new BooleanFormula[] {f instanceof CnfFormula ? ((CnfFormula) f).toTree() : ((Cardinality) f).expand()};
+					m_replaced.put(f, ops);
+				}
+				return ops;
+			}
+			throw new BooleanFormulaException("Unknown connective: " + f);
+		}
+		
+		/**
+		 * Compiles a formula in CNF with its own numbering
+		 * @param cnf The formula
+		 * @return The register holding its value
+		 */
+		int compileCnf(CnfFormula cnf)
+		{
+			int[] literals = cnf.getLiterals();
+			for (int i = 0; i < cnf.getLiteralCount(); i++)
+			{
+				int var = Math.abs(literals[i]);
+				m_indices.put(cnf.getVariable(var).m_variableName, var);
+			}
+			m_variableCount = cnf.getVariableCount();
+			Map<Integer,Integer> negated = new HashMap<Integer,Integer>();
+			int[] clauses = new int[cnf.size()];
+			int[] regs = new int[16];
+			for (int c = 0; c < cnf.size(); c++)
+			{
+				int len = cnf.getClauseLength(c);
+				if (len > regs.length)
+				{
+					regs = new int[len];
+				}
+				for (int i = 0; i < len; i++)
+				{
+					int literal = literals[cnf.getClauseStart(c) + i];
+					int reg = load(Math.abs(literal));
+					if (literal < 0)
+					{
+						Integer n = negated.get(reg);
+						if (n == null)
+						{
+							n = emit(NOT, m_registers++, reg, 0);
+							negated.put(reg, n);
+						}
+						reg = n;
+					}
+					regs[i] = reg;
+				}
+				clauses[c] = combine(OR, regs, len);
+			}
+			return combine(AND, clauses, clauses.length);
+		}
+	}
+}
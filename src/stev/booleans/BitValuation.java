@@ -0,0 +1,115 @@
+/*
+    Simple manipulation of Boolean formulas
+    Copyright (C) 2020 Sylvain Hallé
+    
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+    
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package stev.booleans;
+
+import java.util.Arrays;
+
+/**
+ * Assignment of Boolean values to variables designated by their number,
+ * stored as one bit per variable. Unlike {@link Valuation}, reading the
+ * value of a variable involves no hashing and no boxing. Variables are
+ * numbered from 1, as in DIMACS clauses; variables that have not been
+ * set are false.
+ */
+public class BitValuation
+{
+	/**
+	 * The values, variable <i>i</i> being bit <i>i</i> % 64 of word
+	 * <i>i</i> / 64
+	 */
+	/*@ non_null @*/ protected long[] m_bits;
+	
+	/**
+	 * Creates a valuation where all variables are false
+	 * @param num_variables The largest variable number
+	 */
+	public BitValuation(int num_variables)
+	{
+		super();
+		m_bits = new long[(num_variables >> 6) + 1];
+	}
+	
+	/**
+	 * Creates a valuation from a model given as DIMACS literals, such as
+	 * the one returned by a SAT solver: a positive literal makes its
+	 * variable true, a negative literal makes it false.
+	 * @param model The literals
+	 */
+	public BitValuation(/*@ non_null @*/ int[] model)
+	{
+		this(model.length);
+		for (int literal : model)
+		{
+			if (literal > 0)
+			{
+				set(literal, true);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the value of a variable
+	 * @param index The number of the variable
+	 * @return The value
+	 */
+	public boolean get(int index)
+	{
+		int word = index >> 6;
+		return word < m_bits.length && (m_bits[word] & (1L << index)) != 0;
+	}
+	
+	/**
+	 * Sets the value of a variable
+	 * @param index The number of the variable
+	 * @param value The value
+	 */
+	public void set(int index, boolean value)
+	{
+		int word = index >> 6;
+		if (word >= m_bits.length)
+		{
+			m_bits = Arrays.copyOf(m_bits, Math.max(2 * m_bits.length, word + 1));
+		}
+		if (value)
+		{
+			m_bits[word] |= 1L << index;
+		}
+		else
+		{
+			m_bits[word] &= ~(1L << index);
+		}
+	}
+	
+	/**
+	 * Sets all variables to false
+	 */
+	public void clear()
+	{
+		Arrays.fill(m_bits, 0L);
+	}
+	
+	/**
+	 * Gives direct access to the words holding the values, for example to
+	 * enumerate assignments by incrementing a word
+	 * @return The array of words
+	 */
+	/*@ non_null @*/ public long[] getWords()
+	{
+		return m_bits;
+	}
+}
@@ -17,12 +17,17 @@
  */
 package stev.booleans;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Abstract class designating an arbitrary propositional logic formula.
@@ -52,14 +57,312 @@ public abstract class BooleanFormula
 	 * Converts the formula into conjunctive normal form (CNF).
 	 * @param phi The input formula
 	 * @return A new formula equivalent to the current one, but in
-	 * CNF.
+	 * CNF. If the input is already a {@link CnfFormula}, it is returned
+	 * as is.
 	 */
-	public static final BooleanFormula toCnf(BooleanFormula phi)
+	public static final CnfFormula toCnf(BooleanFormula phi)
 	{
-		BooleanFormula n_phi = phi.keepAndOrNot();
-		n_phi = n_phi.pushNegations();
+		if (phi instanceof CnfFormula)
+		{
+			return (CnfFormula) phi;
+		}
+		BooleanFormula n_phi = normalize(phi);
 		BooleanFormula cnf_phi = toCnfRecursive(n_phi);
-		return simplify(cnf_phi);
+		return toCnfFormula(simplify(cnf_phi));
+	}
+
+	/**
+	 * Converts the formula into conjunctive normal form (CNF), building the
+	 * normalized formula through a factory. Subformulas that are
+	 * structurally equal are then the same object, and are converted only
+	 * once. This is worth it when the formula was itself built by the
+	 * factory. The result is equivalent to the one of
+	 * {@link #toCnf(BooleanFormula)}, but can have fewer clauses, since
+	 * the factory keeps repeated operands only once.
+	 * @param phi The input formula
+	 * @param factory The factory
+	 * @return A new formula equivalent to the current one, but in
+	 * CNF
+	 */
+	public static final CnfFormula toCnf(BooleanFormula phi, FormulaFactory factory)
+	{
+		if (phi instanceof CnfFormula)
+		{
+			return (CnfFormula) phi;
+		}
+		BooleanFormula n_phi = new Normalizer(factory).normalize(phi);
+		return toCnfFormula(simplify(toCnfRecursive(n_phi)));
+	}
+
+	/**
+	 * Converts the formula into conjunctive normal form (CNF) on several
+	 * threads. If the formula is a large conjunction, its operands are
+	 * converted in parallel by fork/join tasks; the result is the same as
+	 * with {@link #toCnf(BooleanFormula)}, in the same order.
+	 * @param phi The input formula
+	 * @param pool The pool running the tasks
+	 * @return A new formula equivalent to the current one, but in
+	 * CNF
+	 */
+	public static final CnfFormula toCnf(BooleanFormula phi, ForkJoinPool pool)
+	{
+		if (phi instanceof CnfFormula)
+		{
+			return (CnfFormula) phi;
+		}
+		BooleanFormula n_phi = normalize(phi);
+		return toCnfFormula(new ParallelCnfConverter(pool).convert(n_phi));
+	}
+
+	/**
+	 * Converts the formula into conjunctive normal form (CNF), using a
+	 * given conversion method. With {@link CnfMode#TSEITIN} and
+	 * {@link CnfMode#PLAISTED_GREENBAUM}, auxiliary variables named
+	 * <tt>_t1</tt>, <tt>_t2</tt>, etc. are added (skipping names already
+	 * used in the formula), and the result is only equisatisfiable with
+	 * the input formula. This method cannot add auxiliary variables to a
+	 * formula whose variables come from a {@link VariableRegistry}; use
+	 * {@link #toCnf(BooleanFormula, CnfMode, VariableRegistry)} instead.
+	 * @param phi The input formula
+	 * @param mode The conversion method
+	 * @return A new formula in CNF
+	 */
+	public static final CnfFormula toCnf(BooleanFormula phi, CnfMode mode)
+	{
+		return toCnf(phi, mode, null);
+	}
+
+	/**
+	 * Converts the formula into conjunctive normal form (CNF), using a
+	 * given conversion method. Auxiliary variables, if any, are created
+	 * by the registry the formula's variables come from, so that the
+	 * result can still be exported with the registry's identifiers.
+	 * Except with {@link CnfMode#EQUIVALENT}, the {@link Cardinality}
+	 * constraints over literals in the top-level conjunction are written
+	 * with their own {@link CardinalityEncoding}.
+	 * @param phi The input formula
+	 * @param mode The conversion method
+	 * @param registry The registry of the formula's variables, or
+	 * <tt>null</tt> if they do not come from a registry
+	 * @return A new formula in CNF
+	 */
+	public static final CnfFormula toCnf(BooleanFormula phi, CnfMode mode, VariableRegistry registry)
+	{
+		if (mode == CnfMode.EQUIVALENT || phi instanceof CnfFormula)
+		{
+			return toCnf(phi);
+		}
+		Normalizer normalizer = new Normalizer();
+		List<Cardinality> constraints = new ArrayList<Cardinality>();
+		BooleanFormula n_phi = normalize(phi, normalizer, constraints);
+		if (normalizer.hasRegisteredVariables() && registry == null)
+		{
+			throw new BooleanFormulaException("The registry of the formula's variables is needed to create auxiliary variables");
+		}
+		if (!normalizer.hasRegisteredVariables() && registry != null)
+		{
+			throw new BooleanFormulaException("The formula's variables do not come from a registry");
+		}
+		DefinitionalEncoder encoder = new DefinitionalEncoder(mode, registry, normalizer.getNames());
+		for (Cardinality c : constraints)
+		{
+			encoder.assertCardinality(c);
+		}
+		return toCnfFormula(simplify(encoder.encode(n_phi)));
+	}
+
+	/**
+	 * Converts the formula into conjunctive normal form (CNF) and adds
+	 * the clauses to a sink as they are produced, instead of building a
+	 * {@link CnfFormula}. With {@link CnfMode#EQUIVALENT}, each operand of
+	 * the top-level conjunction is converted and added before the next
+	 * one, so that only the clauses of one operand are in memory at a
+	 * time; with the other modes, no clause is kept at all.
+	 * <p>
+	 * Variables coming from a {@link VariableRegistry} are written with
+	 * their identifier, and the others are numbered as in
+	 * {@link #getVariablesMap()}. These numbers are reserved in the sink,
+	 * and auxiliary variables, if any, are new numbers given by the sink.
+	 * @param phi The input formula
+	 * @param mode The conversion method
+	 * @param sink The sink receiving the clauses
+	 * @return The number given to each variable of the input formula
+	 */
+	public static final Map<String,Integer> writeCnf(BooleanFormula phi, CnfMode mode, ClauseSink sink)
+	{
+		if (phi instanceof CnfFormula)
+		{
+			// Same numbers as in the formula
+			CnfFormula f = (CnfFormula) phi;
+			Map<String,Integer> var_dict = new HashMap<String,Integer>();
+			for (int i = 0; i < f.getLiteralCount(); i++)
+			{
+				int var = Math.abs(f.m_literals[i]);
+				var_dict.put(f.getVariable(var).getName(), var);
+			}
+			sink.reserveVariables(f.getVariableCount());
+			for (int c = 0; c < f.size(); c++)
+			{
+				sink.addClause(f.m_literals, f.getClauseStart(c), f.getClauseLength(c));
+			}
+			return var_dict;
+		}
+		Map<String,Integer> var_dict = phi.getVariablesMap();
+		int max = 0;
+		for (int index : var_dict.values())
+		{
+			max = Math.max(max, index);
+		}
+		sink.reserveVariables(max);
+		if (mode != CnfMode.EQUIVALENT)
+		{
+			List<Cardinality> constraints = new ArrayList<Cardinality>();
+			BooleanFormula n_phi = normalize(phi, new Normalizer(), constraints);
+			DefinitionalEncoder encoder = new DefinitionalEncoder(mode, sink, var_dict);
+			for (Cardinality c : constraints)
+			{
+				encoder.assertCardinality(c);
+			}
+			encoder.assertTop(n_phi);
+			return var_dict;
+		}
+		BooleanFormula n_phi = normalize(phi);
+		CnfCache cache = new CnfCache(n_phi, CnfCache.DEFAULT_CAPACITY);
+		if (n_phi instanceof And)
+		{
+			for (BooleanFormula op : distinctOperands((And) n_phi))
+			{
+				writeClauses(simplify(toCnfRecursive(op, cache)), var_dict, sink);
+			}
+		}
+		else
+		{
+			writeClauses(simplify(toCnfRecursive(n_phi, cache)), var_dict, sink);
+		}
+		return var_dict;
+	}
+	
+	/**
+	 * Puts a formula in negation normal form, except for the cardinality
+	 * constraints over literals in its top-level conjunction, which are
+	 * set aside to be encoded separately
+	 * @param phi The formula
+	 * @param normalizer The normalizer, which also records the names of
+	 * the variables of the constraints set aside
+	 * @param constraints A list receiving the constraints set aside
+	 * @return The rest of the formula, normalized
+	 */
+	/*@ non_null @*/ private static BooleanFormula normalize(/*@ non_null @*/ BooleanFormula phi, /*@ non_null @*/ Normalizer normalizer, /*@ non_null @*/ List<Cardinality> constraints)
+	{
+		List<BooleanFormula> rest = new ArrayList<BooleanFormula>();
+		constraints.addAll(Cardinality.extract(phi, rest));
+		if (constraints.isEmpty())
+		{
+			return normalizer.normalize(phi);
+		}
+		for (Cardinality c : constraints)
+		{
+			// Only to record the names of the variables
+			for (BooleanFormula op : c.m_operands)
+			{
+				normalizer.normalize(op);
+			}
+		}
+		return normalizer.normalize(rest.size() == 1 ? rest.get(0) : new And(rest));
+	}
+	
+	/**
+	 * Adds the clauses of a formula in CNF to a sink
+	 * @param cnf The formula, or <tt>null</tt> if it has no clause
+	 * @param var_dict The numbering of the variables; registered
+	 * variables use their identifier
+	 * @param sink The sink
+	 */
+	protected static void writeClauses(BooleanFormula cnf, /*@ non_null @*/ Map<String,Integer> var_dict, /*@ non_null @*/ ClauseSink sink)
+	{
+		if (cnf instanceof And)
+		{
+			for (BooleanFormula clause : ((And) cnf).m_operands)
+			{
+				writeClause(clause, var_dict, sink);
+			}
+		}
+		else if (cnf != null)
+		{
+			writeClause(cnf, var_dict, sink);
+		}
+	}
+	
+	/**
+	 * Adds a clause given as a disjunction or a literal to a sink
+	 * @param clause The clause
+	 * @param var_dict The numbering of the variables; registered
+	 * variables use their identifier
+	 * @param sink The sink
+	 */
+	protected static void writeClause(/*@ non_null @*/ BooleanFormula clause, /*@ non_null @*/ Map<String,Integer> var_dict, /*@ non_null @*/ ClauseSink sink)
+	{
+		if (clause instanceof Or)
+		{
+			for (BooleanFormula bf : ((Or) clause).m_operands)
+			{
+				writeLiteral(bf, var_dict, sink);
+			}
+		}
+		else
+		{
+			writeLiteral(clause, var_dict, sink);
+		}
+		sink.endClause();
+	}
+	
+	/**
+	 * Adds a literal given as a variable or a negated variable to a sink
+	 * @param atom The literal
+	 * @param var_dict The numbering of the variables
+	 * @param sink The sink
+	 */
+	private static void writeLiteral(/*@ non_null @*/ BooleanFormula atom, /*@ non_null @*/ Map<String,Integer> var_dict, /*@ non_null @*/ ClauseSink sink)
+	{
+		boolean negated = atom instanceof Not;
+		BooleanFormula f = negated ? ((Not) atom).m_operand : atom;
+		if (!(f instanceof PropositionalVariable))
+		{
+			throw new BooleanFormulaException("Formula is not in CNF");
+		}
+		int index = ((PropositionalVariable) f).getIndex(var_dict);
+		sink.addLiteral(negated ? -index : index);
+	}
+	
+	/**
+	 * Puts a formula in negation normal form, with only and, or and not
+	 * as connectives, negations applied to variables only, and no
+	 * conjunction (resp. disjunction) directly inside another. This is the
+	 * same as calling {@link #keepAndOrNot()}, {@link #pushNegations()} and
+	 * {@link #flatten()}, but in a single pass that does not recurse and
+	 * does not copy the subformulas that are already in this form.
+	 * @param phi The formula
+	 * @return The normalized formula
+	 */
+	/*@ non_null @*/ protected static BooleanFormula normalize(/*@ non_null @*/ BooleanFormula phi)
+	{
+		return new Normalizer().normalize(phi);
+	}
+
+	/**
+	 * Stores the result of a conversion as a {@link CnfFormula}
+	 * @param cnf The simplified formula in CNF, or <tt>null</tt> if
+	 * simplification found it to be a tautology
+	 * @return The formula
+	 */
+	protected static CnfFormula toCnfFormula(BooleanFormula cnf)
+	{
+		if (cnf == null)
+		{
+			// No clause at all
+			return new CnfFormula();
+		}
+		return new CnfFormula(cnf);
 	}
 
 	/**
@@ -81,29 +384,55 @@ public abstract class BooleanFormula
 		}
 		if (phi instanceof And)
 		{
-			And big_and = new And();
-			for (BooleanFormula bf : ((And) phi).m_operands)
+			List<BooleanFormula> clauses = ((And) phi).m_operands;
+			List<BooleanFormula> simplified = new ArrayList<BooleanFormula>(clauses.size());
+			for (BooleanFormula bf : clauses)
 			{
-				if (bf instanceof Or)
-				{
-					BooleanFormula simplified = simplifyClause((Or) bf);
-					if (simplified != null)
-					{
-						big_and.addOperand(simplified);
-					}
-				}
-				else
-				{
-					big_and.addOperand(bf);
-				}
+				simplified.add(simplifyOperand(bf));
 			}
-			if (big_and.m_operands.size() == 1)
+			return joinSimplified(simplified);
+		}
+		throw new BooleanFormulaException("Error simplifying formula");
+	}
+
+	/**
+	 * Simplifies one operand of a conjunction in CNF.
+	 * @param clause The operand, which is a clause or a literal
+	 * @return The simplified operand, or <tt>null</tt> if it is a clause
+	 * that can be deleted
+	 */
+	protected static BooleanFormula simplifyOperand(/*@ non_null @*/ BooleanFormula clause)
+	{
+		if (clause instanceof Or)
+		{
+			return simplifyClause((Or) clause);
+		}
+		return clause;
+	}
+
+	/**
+	 * Puts together the simplified operands of a conjunction in CNF.
+	 * Deleted clauses are skipped, and clauses that are equal are only
+	 * kept once.
+	 * @param simplified The operands given by
+	 * {@link #simplifyOperand(BooleanFormula)}, in order
+	 * @return The conjunction, or its only operand
+	 */
+	protected static BooleanFormula joinSimplified(/*@ non_null @*/ List<BooleanFormula> simplified)
+	{
+		And big_and = new And();
+		for (BooleanFormula bf : simplified)
+		{
+			if (bf != null)
 			{
-				return big_and.m_operands.get(0);
+				big_and.addOperand(bf);
 			}
-			return big_and;
 		}
-		throw new BooleanFormulaException("Error simplifying formula");
+		if (big_and.m_operands.size() == 1)
+		{
+			return big_and.m_operands.get(0);
+		}
+		return big_and;
 	}
 
 	/**
@@ -170,52 +499,163 @@ public abstract class BooleanFormula
 	}
 
 	/**
-	 * Recursively converts a formula into conjunctive normal form (CNF).
+	 * Converts a formula into conjunctive normal form (CNF).
 	 * @param n_phi The formula to put in CNF
 	 * @return A new formula equivalent to the current one, but in
 	 * CNF.
 	 */
 	protected static BooleanFormula toCnfRecursive(BooleanFormula n_phi)
 	{
-		if (n_phi instanceof PropositionalVariable)
+		return toCnfRecursive(n_phi, new CnfCache(n_phi, CnfCache.DEFAULT_CAPACITY));
+	}
+
+	/**
+	 * A conjunction or a disjunction waiting for the conversion of its
+	 * operands
+	 */
+	private static class CnfFrame
+	{
+		/**
+		 * The connective to convert
+		 */
+		/*@ non_null @*/ final BooleanFormula m_node;
+		
+		/**
+		 * The operands to convert; an operand that appears twice in a
+		 * conjunction is only listed once
+		 */
+		/*@ non_null @*/ final List<BooleanFormula> m_operands;
+		
+		/**
+		 * The operands converted so far, in order
+		 */
+		/*@ non_null @*/ final List<BooleanFormula> m_converted;
+		
+		CnfFrame(/*@ non_null @*/ BooleanFormula node)
 		{
-			// n_phi is a single variable
-			return n_phi;
+			super();
+			m_node = node;
+			if (node instanceof And)
+			{
+				m_operands = distinctOperands((And) node);
+			}
+			else if (node instanceof Or)
+			{
+				m_operands = ((Or) node).m_operands;
+			}
+			else
+			{
+				throw new BooleanFormulaException("Error converting to CNF");
+			}
+			m_converted = new ArrayList<BooleanFormula>(m_operands.size());
+		}
+	}
+
+	/**
+	 * Converts a formula into conjunctive normal form (CNF), converting
+	 * only once the subformulas that appear several times. The formula is
+	 * visited with an explicit stack of frames instead of recursive
+	 * calls, so that its depth is not limited by the size of the thread's
+	 * stack.
+	 * @param n_phi The formula to put in CNF
+	 * @param cache The results of the conversion of shared subformulas
+	 * @return A new formula equivalent to the current one, but in
+	 * CNF.
+	 */
+	static BooleanFormula toCnfRecursive(BooleanFormula n_phi, CnfCache cache)
+	{
+		BooleanFormula result = toCnfLeaf(n_phi, cache);
+		if (result != null)
+		{
+			return result;
+		}
+		Deque<CnfFrame> stack = new ArrayDeque<CnfFrame>();
+		stack.push(new CnfFrame(n_phi));
+		while (true)
+		{
+			CnfFrame top = stack.peek();
+			if (top.m_converted.size() < top.m_operands.size())
+			{
+				BooleanFormula child = top.m_operands.get(top.m_converted.size());
+				BooleanFormula r = toCnfLeaf(child, cache);
+				if (r != null)
+				{
+					top.m_converted.add(r);
+				}
+				else
+				{
+					stack.push(new CnfFrame(child));
+				}
+				continue;
+			}
+			stack.pop();
+			result = toCnfConnective(top.m_node, top.m_converted);
+			cache.put(top.m_node, result);
+			CnfFrame parent = stack.peek();
+			if (parent == null)
+			{
+				return result;
+			}
+			parent.m_converted.add(result);
 		}
-		if (n_phi instanceof Not)
+	}
+
+	/**
+	 * Gets the conversion of a formula that does not need a frame: a
+	 * literal, or a connective whose conversion is already cached
+	 * @param n_phi The formula
+	 * @param cache The results of the conversion of shared subformulas
+	 * @return The formula in CNF, or <tt>null</tt> if it must be converted
+	 */
+	private static BooleanFormula toCnfLeaf(BooleanFormula n_phi, CnfCache cache)
+	{
+		if (n_phi instanceof PropositionalVariable || n_phi instanceof Not)
 		{
-			// n_phi is a single negated variable
-			return n_phi; 
+			// n_phi is a single variable or a single negated variable
+			return n_phi;
 		}
+		return cache.get(n_phi);
+	}
+
+	/**
+	 * Converts a conjunction or a disjunction into conjunctive normal form
+	 * (CNF), once its operands are converted.
+	 * @param n_phi The formula to put in CNF
+	 * @param converted The operands of the formula in CNF, in order
+	 * @return A new formula equivalent to the current one, but in
+	 * CNF.
+	 */
+	private static BooleanFormula toCnfConnective(BooleanFormula n_phi, List<BooleanFormula> converted)
+	{
 		if (n_phi instanceof And)
 		{
-			And a = new And();
-			for (BooleanFormula child : ((And) n_phi).m_operands)
+			List<BooleanFormula> flattened = new ArrayList<BooleanFormula>(converted.size());
+			for (BooleanFormula child : converted)
 			{
-				a.addOperand(toCnf(child));
+				flattened.add(child.flatten());
 			}
-			return a.flatten();
+			return conjunction(flattened);
 		}
 		if (n_phi instanceof Or)
 		{
-			int num_terms = ((Or) n_phi).m_operands.size();
-			List<BooleanFormula> new_list = new ArrayList<BooleanFormula>(num_terms);
+			int num_terms = converted.size();
+			List<BooleanFormula> new_list = converted;
 			int[] sizes = new int[num_terms];
 			int[] cursor = new int[num_terms];
 			for (int i = 0; i < num_terms; i++)
 			{
 				cursor[i] = 0;
-				BooleanFormula bf = ((Or) n_phi).m_operands.get(i);
-				BooleanFormula n_bf = toCnf(bf);
-				new_list.add(n_bf);
+				BooleanFormula n_bf = new_list.get(i);
 				sizes[i] = 1;
-				if (bf instanceof And)
+				if (n_bf instanceof And)
 				{
-					sizes[i] = ((And) bf).m_operands.size();
+					sizes[i] = ((And) n_bf).m_operands.size();
 				}
 			}
 			boolean run = true;
-			And big_and = new And();
+			// Each clause is a new object: they can be added without checking
+			// for duplicates
+			List<BooleanFormula> clauses = new ArrayList<BooleanFormula>();
 			while (run)
 			{
 				Or clause = new Or();
@@ -231,7 +671,7 @@ public abstract class BooleanFormula
 						clause.addOperand(bf);
 					}
 				}
-				big_and.addOperand(clause);
+				clauses.add(clause);
 				int reset = 0;
 				for (int i = 0; i < num_terms; i++)
 				{
@@ -252,23 +692,185 @@ public abstract class BooleanFormula
 					run = false;
 				}
 			}
+			And big_and = new And();
+			big_and.addDistinctOperands(clauses);
 			return big_and.flatten();
 		}
 		throw new BooleanFormulaException("Error converting to CNF");
 	}
 
+	/**
+	 * Gets the operands of a conjunction, without the operands that
+	 * appear several times as the same object. The conversion into CNF
+	 * only converts these once.
+	 * @param a The conjunction
+	 * @return The operands, in order
+	 */
+	/*@ non_null @*/ static List<BooleanFormula> distinctOperands(/*@ non_null @*/ And a)
+	{
+		List<BooleanFormula> operands = new ArrayList<BooleanFormula>(a.m_operands.size());
+		Map<BooleanFormula,Boolean> seen = new IdentityHashMap<BooleanFormula,Boolean>();
+		for (BooleanFormula child : a.m_operands)
+		{
+			if (seen.put(child, Boolean.TRUE) == null)
+			{
+				operands.add(child);
+			}
+		}
+		return operands;
+	}
+
+	/**
+	 * Puts together the operands of a conjunction once they are in CNF.
+	 * Operands that are equal are only kept once, and the clauses of the
+	 * others are concatenated in order.
+	 * @param flattened The operands in CNF, each one flattened
+	 * @return The flattened conjunction, or its only clause
+	 */
+	/*@ non_null @*/ static BooleanFormula conjunction(/*@ non_null @*/ List<BooleanFormula> flattened)
+	{
+		Set<BooleanFormula> seen = new HashSet<BooleanFormula>();
+		List<BooleanFormula> clauses = new ArrayList<BooleanFormula>();
+		for (BooleanFormula f : flattened)
+		{
+			if (!seen.add(f))
+			{
+				continue;
+			}
+			if (f instanceof And)
+			{
+				clauses.addAll(((And) f).m_operands);
+			}
+			else
+			{
+				clauses.add(f);
+			}
+		}
+		if (clauses.size() == 1)
+		{
+			return clauses.get(0);
+		}
+		return new And(clauses);
+	}
+
 	/**
 	 * Gets the mapping between variables and integers representing each
 	 * of them in a formula
 	 * @return The mapping
+	 * @throws BooleanFormulaException If the formula mixes variables from
+	 * a {@link VariableRegistry} with other variables, or variables from
+	 * two registries
 	 */
 	/*@ non_null @*/ public final Map<String,Integer> getVariablesMap()
 	{
+		checkNumbering(this);
 		Map<String,Integer> map = new HashMap<String,Integer>();
 		setVariablesMap(map);
 		return map;
 	}
 
+	/**
+	 * Gets the mapping to use when exporting a formula as DIMACS clauses.
+	 * If the formula's variables come from a {@link VariableRegistry}, their
+	 * identifiers are used directly and no mapping is needed.
+	 * @param phi The formula to export
+	 * @return The mapping, or <tt>null</tt> if the formula uses registered
+	 * variables
+	 * @throws BooleanFormulaException If the formula mixes numbering
+	 * schemes (see {@link #checkNumbering(BooleanFormula)})
+	 */
+	protected static Map<String,Integer> getExportMap(/*@ non_null @*/ BooleanFormula phi)
+	{
+		if (checkNumbering(phi))
+		{
+			return null;
+		}
+		Map<String,Integer> map = new HashMap<String,Integer>();
+		phi.setVariablesMap(map);
+		return map;
+	}
+	
+	/**
+	 * Checks that all the variables of a formula are numbered the same way.
+	 * Registered identifiers are compared in an array indexed by
+	 * identifier, so that the check does not hash variable names.
+	 * @param phi The formula
+	 * @return <tt>true</tt> if all the variables come from a registry,
+	 * <tt>false</tt> if none of them does
+	 * @throws BooleanFormulaException If the formula mixes registered and
+	 * unregistered variables, or if two different variables have the same
+	 * identifier, which happens when they come from two registries
+	 */
+	protected static boolean checkNumbering(/*@ non_null @*/ BooleanFormula phi)
+	{
+		String[] names = new String[16];
+		boolean registered = false, plain = false;
+		List<BooleanFormula> to_visit = new ArrayList<BooleanFormula>();
+		to_visit.add(phi);
+		while (!to_visit.isEmpty())
+		{
+			BooleanFormula f = to_visit.remove(to_visit.size() - 1);
+			if (f instanceof PropositionalVariable)
+			{
+				PropositionalVariable p = (PropositionalVariable) f;
+				if (p.m_id <= 0)
+				{
+					plain = true;
+				}
+				else
+				{
+					registered = true;
+					if (p.m_id >= names.length)
+					{
+						names = Arrays.copyOf(names, Math.max(2 * names.length, p.m_id + 1));
+					}
+					if (names[p.m_id] == null)
+					{
+						names[p.m_id] = p.m_variableName;
+					}
+					else if (!names[p.m_id].equals(p.m_variableName))
+					{
+						throw new BooleanFormulaException("Variables " + names[p.m_id] + " and " + p.m_variableName + " have the same identifier " + p.m_id + "; they come from different registries");
+					}
+				}
+				if (registered && plain)
+				{
+					throw new BooleanFormulaException("Formula mixes variables from a registry with other variables, such as " + p.m_variableName);
+				}
+			}
+			else if (f instanceof Not)
+			{
+				to_visit.add(((Not) f).m_operand);
+			}
+			else if (f instanceof NaryConnective)
+			{
+				to_visit.addAll(((NaryConnective) f).m_operands);
+			}
+			else if (f instanceof BinaryConnective)
+			{
+				to_visit.add(((BinaryConnective) f).m_left);
+				to_visit.add(((BinaryConnective) f).m_right);
+			}
+			else if (f instanceof Cardinality)
+			{
+				to_visit.addAll(((Cardinality) f).m_operands);
+			}
+			else if (f instanceof CnfFormula)
+			{
+				CnfFormula cnf = (CnfFormula) f;
+				for (int i = 0; i < cnf.m_literalCount; i++)
+				{
+					to_visit.add(cnf.getVariable(Math.abs(cnf.m_literals[i])));
+				}
+			}
+			else
+			{
+				throw new BooleanFormulaException("Cannot number the variables of " + f.getClass().getSimpleName());
+			}
+		}
+		return registered;
+	}
+
 	/**
 	 * Recursively populates the map between variables and integers
 	 * representing each of them in a formula
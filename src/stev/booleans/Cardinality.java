@@ -0,0 +1,405 @@
+/*
+    Simple manipulation of Boolean formulas
+    Copyright (C) 2020 Sylvain Hallé
+    
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+    
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package stev.booleans;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A constraint on the number of operands that are true:
+ * {@link AtMostK}, {@link AtLeastK} or {@link ExactlyK}. Unlike an
+ * {@link NaryConnective}, a repeated operand counts as many times as it
+ * appears.
+ * <p>
+ * When the formula is converted into CNF by
+ * {@link BooleanFormula#toCnf(BooleanFormula, CnfMode, VariableRegistry)},
+ * a constraint over literals that must hold (at the top of the formula
+ * or inside the top-level conjunction) is written with its
+ * {@link CardinalityEncoding}. Anywhere else, and with the other
+ * conversion methods, it is replaced by its expansion with and, or and
+ * not (see {@link #expand()}), whose size is binomial in the number of
+ * operands.
+ */
+public abstract class Cardinality extends BooleanFormula
+{
+	/**
+	 * The operands
+	 */
+	/*@ non_null @*/ protected final List<BooleanFormula> m_operands;
+	
+	/**
+	 * The number of operands the constraint is about
+	 */
+	protected final int m_bound;
+	
+	/**
+	 * How the constraint is written as clauses
+	 */
+	/*@ non_null @*/ protected CardinalityEncoding m_encoding = CardinalityEncoding.PAIRWISE;
+	
+	/**
+	 * Creates a new cardinality constraint
+	 * @param k The bound, between 0 and the number of operands
+	 * @param operands The operands, at least one
+	 */
+	public Cardinality(int k, /*@ non_null @*/ List<BooleanFormula> operands)
+	{
+		super();
+		if (operands.isEmpty())
+		{
+			throw new BooleanFormulaException("A cardinality constraint needs at least one operand");
+		}
+		if (k < 0 || k > operands.size())
+		{
+			throw new BooleanFormulaException("Bound " + k + " out of range for " + operands.size() + " operands");
+		}
+		m_bound = k;
+		m_operands = new ArrayList<BooleanFormula>(operands);
+	}
+	
+	/**
+	 * Gets the bound of the constraint
+	 * @return The bound
+	 */
+	public int getBound()
+	{
+		return m_bound;
+	}
+	
+	/**
+	 * Gets the operands of the constraint
+	 * @return The operands, which cannot be modified
+	 */
+	/*@ non_null @*/ public List<BooleanFormula> getOperands()
+	{
+		return Collections.unmodifiableList(m_operands);
+	}
+	
+	/**
+	 * Gets the encoding used to write the constraint as clauses
+	 * @return The encoding
+	 */
+	/*@ non_null @*/ public CardinalityEncoding getEncoding()
+	{
+		return m_encoding;
+	}
+	
+	/**
+	 * Sets the encoding used to write the constraint as clauses
+	 * @param encoding The encoding
+	 * @return This constraint
+	 */
+	/*@ non_null @*/ public Cardinality setEncoding(/*@ non_null @*/ CardinalityEncoding encoding)
+	{
+		m_encoding = encoding;
+		return this;
+	}
+	
+	/**
+	 * Determines if all the operands are literals
+	 * @return <tt>true</tt> if so
+	 */
+	public boolean hasLiteralOperands()
+	{
+		for (BooleanFormula op : m_operands)
+		{
+			if (!op.isAtom())
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Gets the DIMACS literals of the operands
+	 * @param var_dict The mapping between variable names and indices, or
+	 * <tt>null</tt> if the variables come from a {@link VariableRegistry}
+	 * @return The literals, in the order of the operands
+	 */
+	/*@ non_null @*/ public int[] getLiterals(Map<String,Integer> var_dict)
+	{
+		int[] literals = new int[m_operands.size()];
+		for (int i = 0; i < literals.length; i++)
+		{
+			BooleanFormula op = m_operands.get(i);
+			if (op instanceof PropositionalVariable)
+			{
+				literals[i] = ((PropositionalVariable) op).getIndex(var_dict);
+			}
+			else if (op instanceof Not && ((Not) op).m_operand instanceof PropositionalVariable)
+			{
+				literals[i] = -((PropositionalVariable) ((Not) op).m_operand).getIndex(var_dict);
+			}
+			else
+			{
+				throw new BooleanFormulaException("Operand " + op + " is not a literal");
+			}
+		}
+		return literals;
+	}
+	
+	/**
+	 * Adds the clauses of the constraint, written with its encoding
+	 * @param literals The literals of the operands
+	 * @param sink The sink receiving the clauses and giving the
+	 * auxiliary variables
+	 */
+	public abstract void encode(/*@ non_null @*/ int[] literals, /*@ non_null @*/ ClauseSink sink);
+	
+	/**
+	 * Gets the same constraint with and, or and not only, without
+	 * auxiliary variables. A constraint that always holds is expanded
+	 * into the tautology <tt>o | !o</tt> on its first operand.
+	 * @return The expansion
+	 */
+	/*@ non_null @*/ public BooleanFormula expand()
+	{
+		List<BooleanFormula> clauses = new ArrayList<BooleanFormula>();
+		addExpansion(clauses);
+		if (clauses.isEmpty())
+		{
+			BooleanFormula o = m_operands.get(0);
+			return new Or(o, new Not(o));
+		}
+		if (clauses.size() == 1)
+		{
+			return clauses.get(0);
+		}
+		return new And(clauses);
+	}
+	
+	/**
+	 * Adds to a list the clauses of the expansion of the constraint
+	 * @param clauses The list
+	 */
+	protected abstract void addExpansion(/*@ non_null @*/ List<BooleanFormula> clauses);
+	
+	/**
+	 * Gets the same constraint over other operands
+	 * @param operands The operands
+	 * @return The new constraint, with the same bound and encoding
+	 */
+	/*@ non_null @*/ protected abstract Cardinality withOperands(/*@ non_null @*/ List<BooleanFormula> operands);
+	
+	/**
+	 * Determines if the constraint holds for a number of true operands
+	 * @param count The number of true operands
+	 * @return <tt>true</tt> if the constraint holds
+	 */
+	protected abstract boolean holds(int count);
+	
+	/**
+	 * Gets the symbol comparing the number of true operands with the
+	 * bound, for {@link #toString()}
+	 * @return The symbol
+	 */
+	/*@ non_null @*/ protected abstract String getSymbol();
+	
+	/**
+	 * Separates the cardinality constraints over literals that a formula
+	 * asserts at the top level from the rest of the formula
+	 * @param phi The formula
+	 * @param rest A list to which the other top-level conjuncts are added
+	 * @return The constraints, in the order they appear; a constraint
+	 * that appears several times is only returned once
+	 */
+	/*@ non_null @*/ public static List<Cardinality> extract(/*@ non_null @*/ BooleanFormula phi, /*@ non_null @*/ List<BooleanFormula> rest)
+	{
+		List<Cardinality> constraints = new ArrayList<Cardinality>();
+		Map<BooleanFormula,Boolean> seen = new IdentityHashMap<BooleanFormula,Boolean>();
+		Deque<BooleanFormula> to_visit = new ArrayDeque<BooleanFormula>();
+		to_visit.push(phi);
+		while (!to_visit.isEmpty())
+		{
+			BooleanFormula f = to_visit.pop();
+			if (f instanceof And)
+			{
+				List<BooleanFormula> ops = ((And) f).m_operands;
+				for (int i = ops.size() - 1; i >= 0; i--)
+				{
+					to_visit.push(ops.get(i));
+				}
+			}
+			else if (f instanceof Cardinality && ((Cardinality) f).hasLiteralOperands())
+			{
+				if (seen.put(f, Boolean.TRUE) == null)
+				{
+					constraints.add((Cardinality) f);
+				}
+			}
+			else
+			{
+				rest.add(f);
+			}
+		}
+		return constraints;
+	}
+	
+	/**
+	 * Adds to a list the clauses stating that, in every subset of a given
+	 * size of the literals, at least one is true
+	 * @param literals The literals
+	 * @param size The size of the subsets
+	 * @param clauses The list receiving the clauses
+	 */
+	protected static void addSubsetClauses(/*@ non_null @*/ List<BooleanFormula> literals, int size, /*@ non_null @*/ List<BooleanFormula> clauses)
+	{
+		int n = literals.size();
+		if (size <= 0 || size > n)
+		{
+			return;
+		}
+		int[] subset = new int[size];
+		for (int i = 0; i < size; i++)
+		{
+			subset[i] = i;
+		}
+		while (true)
+		{
+			if (size == 1)
+			{
+				clauses.add(literals.get(subset[0]));
+			}
+			else
+			{
+				List<BooleanFormula> clause = new ArrayList<BooleanFormula>(size);
+				for (int i = 0; i < size; i++)
+				{
+					clause.add(literals.get(subset[i]));
+				}
+				clauses.add(new Or(clause));
+			}
+			int i = size - 1;
+			while (i >= 0 && subset[i] == n - size + i)
+			{
+				i--;
+			}
+			if (i < 0)
+			{
+				return;
+			}
+			subset[i]++;
+			for (int j = i + 1; j < size; j++)
+			{
+				subset[j] = subset[j - 1] + 1;
+			}
+		}
+	}
+	
+	/**
+	 * Gets the negations of the operands
+	 * @return The list of negated operands
+	 */
+	/*@ non_null @*/ protected List<BooleanFormula> negatedOperands()
+	{
+		List<BooleanFormula> negated = new ArrayList<BooleanFormula>(m_operands.size());
+		for (BooleanFormula op : m_operands)
+		{
+			negated.add(new Not(op));
+		}
+		return negated;
+	}
+	
+	@Override
+	public boolean evaluate(/*@ non_null @*/ Valuation v)
+	{
+		int count = 0;
+		for (BooleanFormula op : m_operands)
+		{
+			if (op.evaluate(v))
+			{
+				count++;
+			}
+		}
+		return holds(count);
+	}
+	
+	@Override
+	public int[][] getClauses()
+	{
+		throw new BooleanFormulaException("Formula is not in CNF");
+	}
+	
+	@Override
+	public boolean isCnf()
+	{
+		return false;
+	}
+	
+	@Override
+	protected boolean isClause()
+	{
+		return false;
+	}
+	
+	@Override
+	protected boolean isAtom()
+	{
+		return false;
+	}
+	
+	@Override
+	protected BooleanFormula pushNegations()
+	{
+		return expand().pushNegations();
+	}
+	
+	@Override
+	protected BooleanFormula keepAndOrNot()
+	{
+		return expand().keepAndOrNot();
+	}
+	
+	@Override
+	protected BooleanFormula flatten()
+	{
+		return expand().flatten();
+	}
+	
+	@Override
+	protected void setVariablesMap(Map<String,Integer> map)
+	{
+		for (BooleanFormula op : m_operands)
+		{
+			op.setVariablesMap(map);
+		}
+	}
+	
+	@Override
+	public String toString()
+	{
+		StringBuilder out = new StringBuilder();
+		out.append("[");
+		for (int i = 0; i < m_operands.size(); i++)
+		{
+			if (i > 0)
+			{
+				out.append(", ");
+			}
+			out.append(m_operands.get(i).toString());
+		}
+		out.append("] ").append(getSymbol()).append(" ").append(m_bound);
+		return out.toString();
+	}
+}
@@ -0,0 +1,416 @@
+/*
+    Simple manipulation of Boolean formulas
+    Copyright (C) 2020 Sylvain Hallé
+    
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+    
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package stev.booleans;
+
+import java.util.Arrays;
+
+/**
+ * The ways a cardinality constraint ({@link AtMostK}, {@link AtLeastK},
+ * {@link ExactlyK}) can be written as clauses. Literals are given as
+ * DIMACS integers; the auxiliary variables an encoding needs are taken
+ * from {@link ClauseSink#newVariable()}, so the clauses are only
+ * equisatisfiable with the constraint, except with {@link #PAIRWISE}.
+ * <p>
+ * Every encoding writes "at most <i>k</i>"; "at least <i>k</i>" of
+ * <i>n</i> literals is "at most <i>n</i> - <i>k</i>" of their negations,
+ * and "exactly <i>k</i>" is both. The encodings only state the
+ * direction needed for the bound (a counter must be true when enough
+ * inputs are), which is enough for the constraint to propagate.
+ */
+public enum CardinalityEncoding
+{
+	/**
+	 * One clause <tt>!a | !b | ...</tt> for every set of <i>k</i> + 1
+	 * literals. No auxiliary variable, but the number of clauses is the
+	 * binomial coefficient C(<i>n</i>, <i>k</i> + 1): only suitable for
+	 * small <i>n</i> or <i>k</i> = 1.
+	 */
+	PAIRWISE
+	{
+		@Override
+		protected void encode(int[] literals, int length, int k, ClauseSink sink)
+		{
+			// Enumerate the subsets of k + 1 positions in lexicographic order
+			int[] subset = new int[k + 1];
+			for (int i = 0; i <= k; i++)
+			{
+				subset[i] = i;
+			}
+			while (true)
+			{
+				for (int i = 0; i <= k; i++)
+				{
+					sink.addLiteral(-literals[subset[i]]);
+				}
+				sink.endClause();
+				int i = k;
+				while (i >= 0 && subset[i] == length - 1 - k + i)
+				{
+					i--;
+				}
+				if (i < 0)
+				{
+					return;
+				}
+				subset[i]++;
+				for (int j = i + 1; j <= k; j++)
+				{
+					subset[j] = subset[j - 1] + 1;
+				}
+			}
+		}
+	},
+	
+	/**
+	 * Sinz's sequential counter: after the <i>i</i>-th literal, auxiliary
+	 * variable <i>s</i><sub><i>i</i>,<i>j</i></sub> is true if at least
+	 * <i>j</i> of the first <i>i</i> literals are. About 2<i>nk</i>
+	 * clauses and <i>nk</i> variables.
+	 */
+	LADDER
+	{
+		@Override
+		protected void encode(int[] literals, int length, int k, ClauseSink sink)
+		{
+			// 0 stands for a counter that is always false
+			int[] previous = new int[k];
+			int[] current = new int[k];
+			for (int i = 0; i < length; i++)
+			{
+				int x = literals[i];
+				if (previous[k - 1] != 0)
+				{
+					// k literals before this one are true: this one cannot be
+					sink.addClause(-x, -previous[k - 1]);
+				}
+				if (i == length - 1)
+				{
+					return;
+				}
+				for (int j = 0; j < k; j++)
+				{
+					if (j > i)
+					{
+						current[j] = 0;
+						continue;
+					}
+					int s = sink.newVariable();
+					current[j] = s;
+					if (j == 0)
+					{
+						sink.addClause(-x, s);
+					}
+					else
+					{
+						sink.addLiteral(-x);
+						sink.addLiteral(-previous[j - 1]);
+						sink.addLiteral(s);
+						sink.endClause();
+					}
+					if (previous[j] != 0)
+					{
+						sink.addClause(-previous[j], s);
+					}
+				}
+				int[] swap = previous;
+				previous = current;
+				current = swap;
+			}
+		}
+	},
+	
+	/**
+	 * Klieber and Kwon's commander encoding for <i>k</i> = 1: the literals
+	 * are split in groups of three, at most one literal per group is true,
+	 * a true literal makes its group's commander variable true, and the
+	 * same constraint is applied recursively to the commanders. For
+	 * <i>k</i> &gt; 1, the {@link #LADDER} encoding is used instead.
+	 */
+	COMMANDER
+	{
+		@Override
+		protected void encode(int[] literals, int length, int k, ClauseSink sink)
+		{
+			if (k > 1)
+			{
+				LADDER.encode(literals, length, k, sink);
+				return;
+			}
+			int[] level = literals;
+			int size = length;
+			while (size > PAIRWISE_THRESHOLD)
+			{
+				int groups = (size + 2) / 3;
+				int[] commanders = new int[groups];
+				for (int g = 0; g < groups; g++)
+				{
+					int end = Math.min(3 * g + 3, size);
+					commanders[g] = sink.newVariable();
+					for (int a = 3 * g; a < end; a++)
+					{
+						sink.addClause(-level[a], commanders[g]);
+						for (int b = a + 1; b < end; b++)
+						{
+							sink.addClause(-level[a], -level[b]);
+						}
+					}
+				}
+				level = commanders;
+				size = groups;
+			}
+			PAIRWISE.encode(level, size, 1, sink);
+		}
+	},
+	
+	/**
+	 * Bailleux and Boufkhad's totalizer: a balanced binary tree where each
+	 * node counts, in unary, the true literals below it. Counts are capped
+	 * at <i>k</i> + 1, so each node has at most <i>k</i> + 1 outputs, and
+	 * the <i>k</i> + 1-th output of the root is false.
+	 */
+	TOTALIZER
+	{
+		@Override
+		protected void encode(int[] literals, int length, int k, ClauseSink sink)
+		{
+			// Output j of a node is true if at least j + 1 literals below it are
+			int[][] nodes = new int[length][];
+			for (int i = 0; i < length; i++)
+			{
+				nodes[i] = new int[] {literals[i]};
+			}
+			int count = length;
+			while (count > 1)
+			{
+				int merged = 0;
+				for (int i = 0; i + 1 < count; i += 2)
+				{
+					nodes[merged++] = add(nodes[i], nodes[i + 1], k + 1, sink);
+				}
+				if ((count & 1) == 1)
+				{
+					nodes[merged++] = nodes[count - 1];
+				}
+				count = merged;
+			}
+			sink.addClause(-nodes[0][k]);
+		}
+		
+		/**
+		 * Creates a node counting the true outputs of two others
+		 */
+		private int[] add(int[] a, int[] b, int cap, ClauseSink sink)
+		{
+			int[] r = new int[Math.min(a.length + b.length, cap)];
+			for (int j = 0; j < r.length; j++)
+			{
+				r[j] = sink.newVariable();
+			}
+			// At least i true on the left and j on the right: at least i + j
+			for (int i = 0; i <= a.length; i++)
+			{
+				for (int j = 0; j <= b.length; j++)
+				{
+					if (i + j == 0 || i + j > r.length)
+					{
+						continue;
+					}
+					if (i > 0)
+					{
+						sink.addLiteral(-a[i - 1]);
+					}
+					if (j > 0)
+					{
+						sink.addLiteral(-b[j - 1]);
+					}
+					sink.addLiteral(r[i + j - 1]);
+					sink.endClause();
+				}
+			}
+			return r;
+		}
+	},
+	
+	/**
+	 * Batcher's odd-even merge sort network: the literals are sorted with
+	 * comparators, true values first, and the <i>k</i> + 1-th output is
+	 * false. Each comparator adds two variables and three clauses; there
+	 * are O(<i>n</i> log<sup>2</sup> <i>n</i>) comparators.
+	 */
+	SORTING_NETWORK
+	{
+		@Override
+		protected void encode(int[] literals, int length, int k, ClauseSink sink)
+		{
+			// Pad to a power of two with 0, which stands for false
+			int size = Integer.highestOneBit(length);
+			if (size < length)
+			{
+				size <<= 1;
+			}
+			int[] wires = Arrays.copyOf(literals, size);
+			Arrays.fill(wires, length, size, 0);
+			for (int p = 1; p < size; p <<= 1)
+			{
+				for (int d = p; d >= 1; d >>= 1)
+				{
+					for (int j = d % p; j + d < size; j += 2 * d)
+					{
+						for (int i = 0; i < d && i + j + d < size; i++)
+						{
+							if ((i + j) / (2 * p) == (i + j + d) / (2 * p))
+							{
+								compare(wires, i + j, i + j + d, sink);
+							}
+						}
+					}
+				}
+			}
+			if (wires[k] != 0)
+			{
+				sink.addClause(-wires[k]);
+			}
+		}
+		
+		/**
+		 * Puts the disjunction of two wires on the first one and their
+		 * conjunction on the second
+		 */
+		private void compare(int[] wires, int i, int j, ClauseSink sink)
+		{
+			int a = wires[i];
+			int b = wires[j];
+			if (a == 0 || b == 0)
+			{
+				// A comparator with a constant false input only moves the other one
+				wires[i] = a == 0 ? b : a;
+				wires[j] = 0;
+				return;
+			}
+			int max = sink.newVariable();
+			int min = sink.newVariable();
+			sink.addClause(-a, max);
+			sink.addClause(-b, max);
+			sink.addLiteral(-a);
+			sink.addLiteral(-b);
+			sink.addLiteral(min);
+			sink.endClause();
+			wires[i] = max;
+			wires[j] = min;
+		}
+	};
+	
+	/**
+	 * Number of literals up to which {@link #COMMANDER} states the
+	 * constraint pairwise
+	 */
+	protected static final int PAIRWISE_THRESHOLD = 4;
+	
+	/**
+	 * Adds clauses stating that at most <i>k</i> literals are true
+	 * @param literals The literals
+	 * @param length The number of literals to take from the array
+	 * @param k The bound
+	 * @param sink The sink receiving the clauses and giving the
+	 * auxiliary variables
+	 */
+	public void atMost(/*@ non_null @*/ int[] literals, int length, int k, /*@ non_null @*/ ClauseSink sink)
+	{
+		if (k >= length)
+		{
+			return;
+		}
+		if (k < 0)
+		{
+			// Cannot be satisfied
+			sink.endClause();
+			return;
+		}
+		if (k == 0)
+		{
+			for (int i = 0; i < length; i++)
+			{
+				sink.addClause(-literals[i]);
+			}
+			return;
+		}
+		encode(literals, length, k, sink);
+	}
+	
+	/**
+	 * Adds clauses stating that at least <i>k</i> literals are true
+	 * @param literals The literals
+	 * @param length The number of literals to take from the array
+	 * @param k The bound
+	 * @param sink The sink receiving the clauses and giving the
+	 * auxiliary variables
+	 */
+	public void atLeast(/*@ non_null @*/ int[] literals, int length, int k, /*@ non_null @*/ ClauseSink sink)
+	{
+		if (k <= 0)
+		{
+			return;
+		}
+		if (k == 1)
+		{
+			// A single clause, which is empty if there is no literal
+			sink.addClause(literals, 0, length);
+			return;
+		}
+		int[] negated = new int[length];
+		for (int i = 0; i < length; i++)
+		{
+			negated[i] = -literals[i];
+		}
+		atMost(negated, length, length - k, sink);
+	}
+	
+	/**
+	 * Adds clauses stating that exactly <i>k</i> literals are true
+	 * @param literals The literals
+	 * @param length The number of literals to take from the array
+	 * @param k The bound
+	 * @param sink The sink receiving the clauses and giving the
+	 * auxiliary variables
+	 */
+	public void exactly(/*@ non_null @*/ int[] literals, int length, int k, /*@ non_null @*/ ClauseSink sink)
+	{
+		atMost(literals, length, k, sink);
+		atLeast(literals, length, k, sink);
+	}
+	
+	/**
+	 * Adds clauses stating that at most <i>k</i> literals are true, when
+	 * the bound is neither trivial nor impossible
+	 * @param literals The literals
+	 * @param length The number of literals, greater than <i>k</i>
+	 * @param k The bound, at least 1
+	 * @param sink The sink receiving the clauses
+	 */
+	protected abstract void encode(int[] literals, int length, int k, ClauseSink sink);
+	
+	/**
+	 * Gets an encoding from its name, ignoring case
+	 * @param name The name
+	 * @return The encoding
+	 */
+	/*@ non_null @*/ public static CardinalityEncoding parse(/*@ non_null @*/ String name)
+	{
+		return valueOf(name.toUpperCase());
+	}
+}
@@ -0,0 +1,138 @@
+/*
+    Simple manipulation of Boolean formulas
+    Copyright (C) 2020 Sylvain Hallé
+    
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+    
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package stev.booleans;
+
+/**
+ * A {@link ClauseSink} that keeps no clause, only their number and size.
+ * Useful to measure an encoding before producing it for real.
+ */
+public class ClauseCounter implements ClauseSink
+{
+	/**
+	 * The number of clauses
+	 */
+	protected long m_clauseCount = 0;
+	
+	/**
+	 * The number of literals in all the clauses
+	 */
+	protected long m_literalCount = 0;
+	
+	/**
+	 * The number of literals in the current clause
+	 */
+	protected int m_currentLength = 0;
+	
+	/**
+	 * The number of literals of the longest clause
+	 */
+	protected int m_longestClause = 0;
+	
+	/**
+	 * The largest variable used or reserved
+	 */
+	protected int m_variableCount = 0;
+	
+	/**
+	 * Creates a new counter
+	 */
+	public ClauseCounter()
+	{
+		super();
+	}
+	
+	@Override
+	public void addLiteral(int literal)
+	{
+		m_currentLength++;
+		int var = literal < 0 ? -literal : literal;
+		if (var > m_variableCount)
+		{
+			m_variableCount = var;
+		}
+	}
+	
+	@Override
+	public void endClause()
+	{
+		m_clauseCount++;
+		m_literalCount += m_currentLength;
+		if (m_currentLength > m_longestClause)
+		{
+			m_longestClause = m_currentLength;
+		}
+		m_currentLength = 0;
+	}
+	
+	@Override
+	public void reserveVariables(int n)
+	{
+		if (n > m_variableCount)
+		{
+			m_variableCount = n;
+		}
+	}
+	
+	@Override
+	public int newVariable()
+	{
+		return ++m_variableCount;
+	}
+	
+	/**
+	 * Gets the number of clauses
+	 * @return The number of clauses
+	 */
+	public long getClauseCount()
+	{
+		return m_clauseCount;
+	}
+	
+	/**
+	 * Gets the total number of literals in the clauses
+	 * @return The number of literals
+	 */
+	public long getLiteralCount()
+	{
+		return m_literalCount;
+	}
+	
+	/**
+	 * Gets the number of literals of the longest clause
+	 * @return The number of literals
+	 */
+	public int getLongestClause()
+	{
+		return m_longestClause;
+	}
+	
+	/**
+	 * Gets the largest variable number used or reserved
+	 * @return The number of variables
+	 */
+	public int getVariableCount()
+	{
+		return m_variableCount;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return m_clauseCount + " clauses, " + m_literalCount + " literals, " + m_variableCount + " variables";
+	}
+}
@@ -0,0 +1,94 @@
+/*
+    Simple manipulation of Boolean formulas
+    Copyright (C) 2020 Sylvain Hallé
+    
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+    
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package stev.booleans;
+
+/**
+ * A destination for clauses produced one at a time, such as a
+ * {@link CnfFormula} kept in memory, a file written by a
+ * {@link DimacsWriter} (see {@link DimacsWriter#asClauseSink()}), a
+ * {@link ClauseCounter}, or a SAT solver. Literals are DIMACS integers:
+ * variable <i>n</i> is written <i>n</i> and its negation -<i>n</i>.
+ * <p>
+ * An encoder that pushes its clauses into a sink as soon as they are
+ * produced, like {@link BooleanFormula#writeCnf(BooleanFormula, CnfMode, ClauseSink)},
+ * does not need to keep the whole CNF in memory.
+ */
+public interface ClauseSink
+{
+	/**
+	 * Adds a literal to the current clause
+	 * @param literal The literal, a non-zero integer
+	 */
+	public void addLiteral(int literal);
+	
+	/**
+	 * Ends the current clause. Calling this method without adding literals
+	 * first adds the empty clause.
+	 */
+	public void endClause();
+	
+	/**
+	 * Reserves variable numbers 1 to <i>n</i>, so that
+	 * {@link #newVariable()} does not give them
+	 * @param n The number of variables
+	 */
+	public void reserveVariables(int n);
+	
+	/**
+	 * Gets a new variable number, after all those used or reserved so far
+	 * @return The number
+	 */
+	public int newVariable();
+	
+	/**
+	 * Adds a clause with a single literal
+	 * @param a The literal
+	 */
+	public default void addClause(int a)
+	{
+		addLiteral(a);
+		endClause();
+	}
+	
+	/**
+	 * Adds a clause with two literals
+	 * @param a The first literal
+	 * @param b The second literal
+	 */
+	public default void addClause(int a, int b)
+	{
+		addLiteral(a);
+		addLiteral(b);
+		endClause();
+	}
+	
+	/**
+	 * Adds a clause stored in a portion of an array
+	 * @param literals The array containing the literals
+	 * @param start The position of the first literal of the clause
+	 * @param length The number of literals in the clause
+	 */
+	public default void addClause(/*@ non_null @*/ int[] literals, int start, int length)
+	{
+		for (int i = start; i < start + length; i++)
+		{
+			addLiteral(literals[i]);
+		}
+		endClause();
+	}
+}
@@ -0,0 +1,141 @@
+/*
+    Simple manipulation of Boolean formulas
+    Copyright (C) 2020 Sylvain Hallé
+    
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+    
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package stev.booleans;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Results of the conversion into CNF of the subformulas that appear
+ * several times in a formula. A formula built with shared subformulas
+ * (for example by a {@link FormulaFactory}) is a graph rather than a
+ * tree; with this cache, each shared node is converted once instead of
+ * once per path leading to it.
+ * <p>
+ * Nodes are compared by identity. Only nodes with more than one parent
+ * are stored, since the others are reached only once; and the cache is
+ * emptied when it reaches its capacity, so that its size stays bounded
+ * whatever the size of the formula.
+ */
+class CnfCache
+{
+	/**
+	 * Default maximum number of results kept
+	 */
+	static final int DEFAULT_CAPACITY = 1 << 16;
+	
+	/**
+	 * The nodes that have more than one parent
+	 */
+	/*@ non_null @*/ protected final Map<BooleanFormula,Boolean> m_shared;
+	
+	/**
+	 * The result of the conversion of each shared node converted so far
+	 */
+	/*@ non_null @*/ protected final Map<BooleanFormula,BooleanFormula> m_results;
+	
+	/**
+	 * The maximum number of results kept
+	 */
+	protected final int m_capacity;
+	
+	/**
+	 * Creates a cache for the conversion of a formula
+	 * @param n_phi The formula, in negation normal form
+	 * @param capacity The maximum number of results kept
+	 */
+	CnfCache(/*@ non_null @*/ BooleanFormula n_phi, int capacity)
+	{
+		super();
+		m_shared = new IdentityHashMap<BooleanFormula,Boolean>();
+		m_results = new IdentityHashMap<BooleanFormula,BooleanFormula>();
+		m_capacity = capacity;
+		// Count the parents of each connective, without recursion
+		Map<BooleanFormula,Boolean> visited = new IdentityHashMap<BooleanFormula,Boolean>();
+		Deque<BooleanFormula> stack = new ArrayDeque<BooleanFormula>();
+		stack.push(n_phi);
+		visited.put(n_phi, Boolean.TRUE);
+		while (!stack.isEmpty())
+		{
+			BooleanFormula f = stack.pop();
+			if (!(f instanceof NaryConnective))
+			{
+				continue;
+			}
+			for (BooleanFormula child : ((NaryConnective) f).m_operands)
+			{
+				if (!(child instanceof NaryConnective))
+				{
+					// Variables and negations are not converted
+					continue;
+				}
+				if (visited.put(child, Boolean.TRUE) == null)
+				{
+					stack.push(child);
+				}
+				else
+				{
+					m_shared.put(child, Boolean.TRUE);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Creates an empty cache for the same formula as another one, for use
+	 * by another thread
+	 * @param cache The other cache
+	 */
+	CnfCache(/*@ non_null @*/ CnfCache cache)
+	{
+		super();
+		m_shared = cache.m_shared;
+		m_results = new IdentityHashMap<BooleanFormula,BooleanFormula>();
+		m_capacity = cache.m_capacity;
+	}
+	
+	/**
+	 * Gets the conversion of a node, if it has been stored
+	 * @param phi The node
+	 * @return The result, or <tt>null</tt>
+	 */
+	BooleanFormula get(/*@ non_null @*/ BooleanFormula phi)
+	{
+		return m_results.get(phi);
+	}
+	
+	/**
+	 * Stores the conversion of a node, if it has more than one parent
+	 * @param phi The node
+	 * @param result The result of its conversion
+	 */
+	void put(/*@ non_null @*/ BooleanFormula phi, /*@ non_null @*/ BooleanFormula result)
+	{
+		if (!m_shared.containsKey(phi))
+		{
+			return;
+		}
+		if (m_results.size() >= m_capacity)
+		{
+			m_results.clear();
+		}
+		m_results.put(phi, result);
+	}
+}
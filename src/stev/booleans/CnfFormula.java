@@ -0,0 +1,475 @@
+/*
+    Simple manipulation of Boolean formulas
+    Copyright (C) 2020 Sylvain Hallé
+    
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+    
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package stev.booleans;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Formula in conjunctive normal form stored as DIMACS clauses in a flat
+ * array of integers. The literals of clause <i>c</i> are at positions
+ * {@link #getClauseStart(int) getClauseStart(c)} to
+ * <tt>getClauseStart(c) + getClauseLength(c) - 1</tt> of the array
+ * returned by {@link #getLiterals()}, so clauses can be read without
+ * creating any object. This takes a few bytes per literal, where a tree
+ * of {@link And}, {@link Or} and {@link Not} takes several objects.
+ * <p>
+ * Each variable number is associated with a {@link PropositionalVariable},
+ * so that the formula can be evaluated and printed like any other.
+ * Numbers that have not been associated with a variable stand for a
+ * variable whose name is the number itself.
+ */
+public class CnfFormula extends BooleanFormula implements ClauseSink
+{
+	/**
+	 * The literals of all the clauses, one after the other
+	 */
+	/*@ non_null @*/ protected int[] m_literals;
+	
+	/**
+	 * The position of the first literal of each clause; the entry after
+	 * the last clause is the total number of literals
+	 */
+	/*@ non_null @*/ protected int[] m_starts;
+	
+	/**
+	 * The number of literals
+	 */
+	protected int m_literalCount = 0;
+	
+	/**
+	 * The number of clauses
+	 */
+	protected int m_clauseCount = 0;
+	
+	/**
+	 * The largest variable number used or reserved
+	 */
+	protected int m_variableCount = 0;
+	
+	/**
+	 * The variable associated with each number, or <tt>null</tt>
+	 */
+	/*@ non_null @*/ protected PropositionalVariable[] m_variables;
+	
+	/**
+	 * Creates an empty formula, which is true
+	 */
+	public CnfFormula()
+	{
+		this(1024, 256);
+	}
+	
+	/**
+	 * Creates an empty formula with room for a number of literals and
+	 * clauses
+	 * @param literal_capacity The number of literals
+	 * @param clause_capacity The number of clauses
+	 */
+	public CnfFormula(int literal_capacity, int clause_capacity)
+	{
+		super();
+		m_literals = new int[Math.max(literal_capacity, 16)];
+		m_starts = new int[Math.max(clause_capacity, 16) + 1];
+		m_variables = new PropositionalVariable[0];
+	}
+	
+	/**
+	 * Creates a formula with the same clauses as a formula in CNF. The
+	 * variables get the same numbers as in {@link BooleanFormula#getClauses()}.
+	 * @param cnf The formula, made of conjunctions, disjunctions and
+	 * negations of variables
+	 */
+	public CnfFormula(/*@ non_null @*/ BooleanFormula cnf)
+	{
+		this(16, 16);
+		if (cnf instanceof CnfFormula)
+		{
+			CnfFormula f = (CnfFormula) cnf;
+			m_literals = Arrays.copyOf(f.m_literals, Math.max(f.m_literalCount, 16));
+			m_starts = Arrays.copyOf(f.m_starts, f.m_clauseCount + 1);
+			m_literalCount = f.m_literalCount;
+			m_clauseCount = f.m_clauseCount;
+			m_variableCount = f.m_variableCount;
+			m_variables = f.m_variables.clone();
+			return;
+		}
+		Map<String,Integer> var_dict = getExportMap(cnf);
+		if (cnf instanceof And)
+		{
+			for (BooleanFormula clause : ((And) cnf).m_operands)
+			{
+				addTreeClause(clause, var_dict);
+			}
+		}
+		else
+		{
+			addTreeClause(cnf, var_dict);
+		}
+	}
+	
+	/**
+	 * Adds a clause given as a disjunction or a literal
+	 * @param clause The clause
+	 * @param var_dict The numbering of the variables, or <tt>null</tt> for
+	 * registered variables
+	 */
+	protected void addTreeClause(/*@ non_null @*/ BooleanFormula clause, Map<String,Integer> var_dict)
+	{
+		if (clause instanceof Or)
+		{
+			for (BooleanFormula bf : ((Or) clause).m_operands)
+			{
+				addTreeLiteral(bf, var_dict);
+			}
+		}
+		else
+		{
+			addTreeLiteral(clause, var_dict);
+		}
+		endClause();
+	}
+	
+	/**
+	 * Adds a literal given as a variable or a negated variable
+	 * @param atom The literal
+	 * @param var_dict The numbering of the variables, or <tt>null</tt> for
+	 * registered variables
+	 */
+	protected void addTreeLiteral(/*@ non_null @*/ BooleanFormula atom, Map<String,Integer> var_dict)
+	{
+		boolean negated = atom instanceof Not;
+		BooleanFormula f = negated ? ((Not) atom).m_operand : atom;
+		if (!(f instanceof PropositionalVariable))
+		{
+			throw new BooleanFormulaException("Formula is not in CNF");
+		}
+		PropositionalVariable p = (PropositionalVariable) f;
+		int index = p.getIndex(var_dict);
+		setVariable(index, p);
+		addLiteral(negated ? -index : index);
+	}
+	
+	/**
+	 * Adds a clause with a single literal
+	 * @param a The literal
+	 */
+	@Override
+	public void addClause(int a)
+	{
+		reserve(1);
+		m_literals[m_literalCount++] = a;
+		endClause();
+	}
+	
+	/**
+	 * Adds a clause with two literals
+	 * @param a The first literal
+	 * @param b The second literal
+	 */
+	@Override
+	public void addClause(int a, int b)
+	{
+		reserve(2);
+		m_literals[m_literalCount++] = a;
+		m_literals[m_literalCount++] = b;
+		endClause();
+	}
+	
+	/**
+	 * Adds a clause stored in a portion of an array
+	 * @param literals The array containing the literals
+	 * @param start The position of the first literal of the clause
+	 * @param length The number of literals in the clause
+	 */
+	@Override
+	public void addClause(/*@ non_null @*/ int[] literals, int start, int length)
+	{
+		reserve(length);
+		System.arraycopy(literals, start, m_literals, m_literalCount, length);
+		m_literalCount += length;
+		endClause();
+	}
+	
+	/**
+	 * Adds a literal to the current clause, for clauses whose length is
+	 * not known in advance
+	 * @param literal The literal
+	 */
+	@Override
+	public void addLiteral(int literal)
+	{
+		reserve(1);
+		m_literals[m_literalCount++] = literal;
+	}
+	
+	/**
+	 * Ends the current clause
+	 */
+	@Override
+	public void endClause()
+	{
+		for (int i = m_starts[m_clauseCount]; i < m_literalCount; i++)
+		{
+			int var = Math.abs(m_literals[i]);
+			if (var > m_variableCount)
+			{
+				m_variableCount = var;
+			}
+		}
+		if (m_clauseCount + 2 > m_starts.length)
+		{
+			m_starts = Arrays.copyOf(m_starts, m_starts.length * 2);
+		}
+		m_starts[++m_clauseCount] = m_literalCount;
+	}
+	
+	/**
+	 * Reserves variable numbers 1 to <i>n</i>, so that {@link #newVariable()}
+	 * does not give them
+	 * @param n The number of variables
+	 */
+	@Override
+	public void reserveVariables(int n)
+	{
+		if (n > m_variableCount)
+		{
+			m_variableCount = n;
+		}
+	}
+	
+	/**
+	 * Gets a new variable number, after all those used or reserved so far
+	 * @return The number
+	 */
+	@Override
+	public int newVariable()
+	{
+		return ++m_variableCount;
+	}
+	
+	/**
+	 * Associates a variable with a number
+	 * @param index The number
+	 * @param p The variable
+	 */
+	public void setVariable(int index, /*@ non_null @*/ PropositionalVariable p)
+	{
+		if (index >= m_variables.length)
+		{
+			m_variables = Arrays.copyOf(m_variables, Math.max(2 * m_variables.length, index + 1));
+		}
+		m_variables[index] = p;
+	}
+	
+	/**
+	 * Gets the variable associated with a number
+	 * @param index The number
+	 * @return The variable. If none has been associated with the number,
+	 * a variable named after the number is returned.
+	 */
+	/*@ non_null @*/ public PropositionalVariable getVariable(int index)
+	{
+		if (index < m_variables.length && m_variables[index] != null)
+		{
+			return m_variables[index];
+		}
+		PropositionalVariable p = new PropositionalVariable(Integer.toString(index), index);
+		setVariable(index, p);
+		return p;
+	}
+	
+	/**
+	 * Gets the number of clauses
+	 * @return The number of clauses
+	 */
+	public int size()
+	{
+		return m_clauseCount;
+	}
+	
+	/**
+	 * Gets the total number of literals in the clauses
+	 * @return The number of literals
+	 */
+	public int getLiteralCount()
+	{
+		return m_literalCount;
+	}
+	
+	/**
+	 * Gets the largest variable number used or reserved
+	 * @return The number
+	 */
+	public int getVariableCount()
+	{
+		return m_variableCount;
+	}
+	
+	/**
+	 * Gets the position of the first literal of a clause
+	 * @param c The index of the clause
+	 * @return The position in the array returned by {@link #getLiterals()}
+	 */
+	public int getClauseStart(int c)
+	{
+		return m_starts[c];
+	}
+	
+	/**
+	 * Gets the number of literals in a clause
+	 * @param c The index of the clause
+	 * @return The number of literals
+	 */
+	public int getClauseLength(int c)
+	{
+		return m_starts[c + 1] - m_starts[c];
+	}
+	
+	/**
+	 * Gets the array of literals itself, without copying it. Only the
+	 * first {@link #getLiteralCount()} entries are meaningful, and the
+	 * array must not be modified.
+	 * @return The array
+	 */
+	/*@ non_null @*/ public int[] getLiterals()
+	{
+		return m_literals;
+	}
+	
+	@Override
+	public int[][] getClauses()
+	{
+		int[][] clauses = new int[m_clauseCount][];
+		for (int c = 0; c < m_clauseCount; c++)
+		{
+			clauses[c] = Arrays.copyOfRange(m_literals, m_starts[c], m_starts[c + 1]);
+		}
+		return clauses;
+	}
+	
+	@Override
+	public boolean evaluate(/*@ non_null @*/ Valuation v)
+	{
+		for (int c = 0; c < m_clauseCount; c++)
+		{
+			boolean satisfied = false;
+			for (int i = m_starts[c]; i < m_starts[c + 1] && !satisfied; i++)
+			{
+				int literal = m_literals[i];
+				boolean value = getVariable(Math.abs(literal)).evaluate(v);
+				satisfied = literal > 0 ? value : !value;
+			}
+			if (!satisfied)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Gets the same formula as a conjunction of disjunctions
+	 * @return The formula
+	 */
+	/*@ non_null @*/ public BooleanFormula toTree()
+	{
+		And big_and = new And();
+		for (int c = 0; c < m_clauseCount; c++)
+		{
+			Or clause = new Or();
+			for (int i = m_starts[c]; i < m_starts[c + 1]; i++)
+			{
+				int literal = m_literals[i];
+				PropositionalVariable p = getVariable(Math.abs(literal));
+				clause.m_operands.add(literal > 0 ? p : new Not(p));
+			}
+			big_and.m_operands.add(clause.m_operands.size() == 1 ? clause.m_operands.get(0) : clause);
+		}
+		if (big_and.m_operands.size() == 1)
+		{
+			return big_and.m_operands.get(0);
+		}
+		return big_and;
+	}
+	
+	@Override
+	protected void setVariablesMap(/*@ non_null @*/ Map<String,Integer> map)
+	{
+		for (int i = 0; i < m_literalCount; i++)
+		{
+			getVariable(Math.abs(m_literals[i])).setVariablesMap(map);
+		}
+	}
+	
+	@Override
+	public boolean isCnf()
+	{
+		return true;
+	}
+	
+	@Override
+	protected boolean isClause()
+	{
+		// Inside another connective, the formula is first converted with
+		// keepAndOrNot(), like any formula that is not a clause
+		return false;
+	}
+	
+	@Override
+	protected boolean isAtom()
+	{
+		return false;
+	}
+	
+	@Override
+	protected BooleanFormula pushNegations()
+	{
+		return toTree();
+	}
+	
+	@Override
+	protected BooleanFormula keepAndOrNot()
+	{
+		return toTree();
+	}
+	
+	@Override
+	protected BooleanFormula flatten()
+	{
+		return this;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return toTree().toString();
+	}
+	
+	/**
+	 * Makes sure the array of literals has room for more literals
+	 * @param n The number of literals to add
+	 */
+	protected void reserve(int n)
+	{
+		if (m_literalCount + n > m_literals.length)
+		{
+			m_literals = Arrays.copyOf(m_literals, Math.max(m_literals.length * 2, m_literalCount + n));
+		}
+	}
+}
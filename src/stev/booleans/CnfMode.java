@@ -0,0 +1,51 @@
+/*
+    Simple manipulation of Boolean formulas
+    Copyright (C) 2020 Sylvain Hallé
+    
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+    
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package stev.booleans;
+
+/**
+ * The ways {@link BooleanFormula#toCnf(BooleanFormula, CnfMode)} can
+ * convert a formula into conjunctive normal form.
+ */
+public enum CnfMode
+{
+	/**
+	 * Distributes disjunctions over conjunctions. The result is equivalent
+	 * to the input formula and uses the same variables, but its size can
+	 * be exponential in the size of the input.
+	 */
+	EQUIVALENT,
+	
+	/**
+	 * Tseitin encoding: each conjunction and disjunction that is not at
+	 * the top of the formula is replaced by a new auxiliary variable, and
+	 * clauses stating that this variable is equivalent to the subformula
+	 * are added. The result is equisatisfiable with the input formula and
+	 * its size is linear; every model of the input formula extends to
+	 * exactly one model of the result.
+	 */
+	TSEITIN,
+	
+	/**
+	 * Plaisted-Greenbaum encoding: like {@link #TSEITIN}, but since the
+	 * formula is first put in negation normal form, only the implication
+	 * from each auxiliary variable to its subformula is needed. This
+	 * produces about half as many clauses; the result is still
+	 * equisatisfiable with the input formula.
+	 */
+	PLAISTED_GREENBAUM
+}
@@ -0,0 +1,1126 @@
+/*
+    Simple manipulation of Boolean formulas
+    Copyright (C) 2020 Sylvain Hallé
+    
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+    
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package stev.booleans;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Reduces a formula in CNF before it is given to a SAT solver. The
+ * preprocessor applies, in this order:
+ * <ol>
+ * <li>unit propagation until no clause is unit;</li>
+ * <li>failed literal probing: a literal whose propagation leads to a
+ * conflict is set to false;</li>
+ * <li>equivalent literal substitution: literals that imply each other
+ * through binary clauses (a cycle of the implication graph) are replaced
+ * by a single representative;</li>
+ * <li>bounded variable elimination: a variable is replaced by all the
+ * resolvents of its clauses, when this does not increase the number of
+ * clauses;</li>
+ * <li>blocked clause elimination: a clause is removed when it has a
+ * literal <i>l</i> such that all its resolvents on <i>l</i> are
+ * tautologies.</li>
+ * </ol>
+ * The reduced formula has the same variable numbers as the input, minus
+ * the variables that have been fixed or eliminated, and is
+ * satisfiable if and only if the input is. Each step records on a
+ * reconstruction stack what is needed to turn a model of the reduced
+ * formula into a model of the input: see {@link #extend(int[])}.
+ * <p>
+ * Variables that will be used in assumptions, or whose value must
+ * otherwise be visible to the solver, must be declared with
+ * {@link #freeze(int)}: they are never eliminated nor substituted, and
+ * if they are fixed, their unit clause is kept.
+ */
+public class CnfPreprocessor
+{
+	/**
+	 * Maximum number of occurrences of a variable for it to be eliminated
+	 */
+	protected static final int ELIMINATION_OCCURRENCES = 16;
+	
+	/**
+	 * Maximum length of a resolvent added by variable elimination
+	 */
+	protected static final int RESOLVENT_LENGTH = 24;
+	
+	/**
+	 * Maximum number of occurrences of the negation of a literal for a
+	 * clause to be checked for being blocked on this literal
+	 */
+	protected static final int BLOCKED_OCCURRENCES = 64;
+	
+	/**
+	 * Maximum number of clause visits spent on failed literal probing
+	 */
+	protected static final long PROBING_BUDGET = 20000000L;
+	
+	/**
+	 * The clauses, or <tt>null</tt> for removed clauses
+	 */
+	protected List<int[]> m_clauses;
+	
+	/**
+	 * The clauses containing each literal. Lists may contain clauses that
+	 * have been removed or that no longer contain the literal.
+	 */
+	protected int[][] m_occurrences;
+	
+	/**
+	 * The size of each list of {@link #m_occurrences}
+	 */
+	protected int[] m_occurrenceSizes;
+	
+	/**
+	 * The value of each variable: 1 for true, -1 for false, 0 if unknown
+	 */
+	protected int[] m_values;
+	
+	/**
+	 * The literals set to true, in order
+	 */
+	protected int[] m_trail;
+	
+	/**
+	 * The number of literals in {@link #m_trail}
+	 */
+	protected int m_trailSize;
+	
+	/**
+	 * The position in {@link #m_trail} of the next literal to propagate
+	 */
+	protected int m_trailHead;
+	
+	/**
+	 * The number of literals of {@link #m_trail} already recorded on the
+	 * reconstruction stack
+	 */
+	protected int m_recorded;
+	
+	/**
+	 * The variables eliminated or substituted
+	 */
+	protected boolean[] m_eliminated;
+	
+	/**
+	 * The variables declared with {@link #freeze(int)}
+	 */
+	/*@ non_null @*/ protected final BitSet m_frozen;
+	
+	/**
+	 * The reconstruction stack. Each entry is a clause whose first element
+	 * is a literal, the witness: when the entries are read back, a clause
+	 * that is not satisfied gets its witness set to true.
+	 */
+	protected List<int[]> m_stack;
+	
+	/**
+	 * Marks on literals, used when computing resolvents
+	 */
+	protected int[] m_marks;
+	
+	/**
+	 * The current mark
+	 */
+	protected int m_stamp;
+	
+	/**
+	 * The largest variable number
+	 */
+	protected int m_variableCount;
+	
+	/**
+	 * Whether a conflict has been found
+	 */
+	protected boolean m_unsatisfiable;
+	
+	/**
+	 * Number of clause visits left for probing
+	 */
+	protected long m_budget;
+	
+	/**
+	 * Statistics of the last call to {@link #preprocess(CnfFormula)}
+	 */
+	protected int m_fixed, m_failed, m_substituted, m_eliminatedCount, m_blocked;
+	
+	/**
+	 * Creates a preprocessor
+	 */
+	public CnfPreprocessor()
+	{
+		super();
+		m_frozen = new BitSet();
+	}
+	
+	/**
+	 * Prevents a variable from being eliminated or substituted
+	 * @param var The number of the variable
+	 */
+	public void freeze(int var)
+	{
+		m_frozen.set(var);
+	}
+	
+	/**
+	 * Reduces a formula
+	 * @param cnf The formula, which is not modified
+	 * @return The reduced formula. If the input formula is found to be
+	 * unsatisfiable, the result contains a single empty clause.
+	 */
+	/*@ non_null @*/ public CnfFormula preprocess(/*@ non_null @*/ CnfFormula cnf)
+	{
+		load(cnf);
+		if (!m_unsatisfiable)
+		{
+			propagateAndSweep();
+		}
+		if (!m_unsatisfiable)
+		{
+			probe();
+		}
+		if (!m_unsatisfiable)
+		{
+			substitute();
+		}
+		if (!m_unsatisfiable)
+		{
+			eliminate();
+		}
+		if (!m_unsatisfiable)
+		{
+			removeBlocked();
+		}
+		CnfFormula out;
+		if (m_unsatisfiable)
+		{
+			out = new CnfFormula(16, 1);
+			out.endClause();
+		}
+		else
+		{
+			out = new CnfFormula(m_clauses.size() * 3, m_clauses.size());
+			for (int[] clause : m_clauses)
+			{
+				if (clause != null)
+				{
+					out.addClause(clause, 0, clause.length);
+				}
+			}
+			for (int var = m_frozen.nextSetBit(1); var >= 1 && var <= m_variableCount; var = m_frozen.nextSetBit(var + 1))
+			{
+				if (m_values[var] != 0)
+				{
+					out.addClause(m_values[var] * var);
+				}
+			}
+		}
+		out.m_variables = cnf.m_variables.clone();
+		out.reserveVariables(m_variableCount);
+		return out;
+	}
+	
+	/**
+	 * Determines if the last formula preprocessed was found to be
+	 * unsatisfiable
+	 * @return <tt>true</tt> if it is unsatisfiable
+	 */
+	public boolean isUnsatisfiable()
+	{
+		return m_unsatisfiable;
+	}
+	
+	/**
+	 * Turns a model of the reduced formula into a model of the formula
+	 * given to {@link #preprocess(CnfFormula)}
+	 * @param model The model, as DIMACS literals (for example the result
+	 * of SAT4J's <tt>model()</tt>). Variables it does not mention are
+	 * taken as false.
+	 * @return A model of the input formula, with one literal for each
+	 * variable from 1 to the largest variable number, in order
+	 */
+	/*@ non_null @*/ public int[] extend(/*@ non_null @*/ int[] model)
+	{
+		int[] values = new int[m_variableCount + 1];
+		Arrays.fill(values, -1);
+		for (int literal : model)
+		{
+			int var = Math.abs(literal);
+			if (var <= m_variableCount)
+			{
+				values[var] = literal > 0 ? 1 : -1;
+			}
+		}
+		for (int e = m_stack.size() - 1; e >= 0; e--)
+		{
+			int[] entry = m_stack.get(e);
+			boolean satisfied = false;
+			for (int i = 0; i < entry.length && !satisfied; i++)
+			{
+				int literal = entry[i];
+				satisfied = values[Math.abs(literal)] == (literal > 0 ? 1 : -1);
+			}
+			if (!satisfied)
+			{
+				values[Math.abs(entry[0])] = entry[0] > 0 ? 1 : -1;
+			}
+		}
+		int[] full = new int[m_variableCount];
+		for (int var = 1; var <= m_variableCount; var++)
+		{
+			full[var - 1] = values[var] > 0 ? var : -var;
+		}
+		return full;
+	}
+	
+	/**
+	 * Gets the number of variables fixed by unit propagation and probing
+	 * in the last preprocessing
+	 * @return The number of variables
+	 */
+	public int getFixedCount()
+	{
+		return m_fixed;
+	}
+	
+	/**
+	 * Gets the number of failed literals found in the last preprocessing
+	 * @return The number of literals
+	 */
+	public int getFailedLiteralCount()
+	{
+		return m_failed;
+	}
+	
+	/**
+	 * Gets the number of variables replaced by an equivalent literal in
+	 * the last preprocessing
+	 * @return The number of variables
+	 */
+	public int getSubstitutedCount()
+	{
+		return m_substituted;
+	}
+	
+	/**
+	 * Gets the number of variables eliminated in the last preprocessing
+	 * @return The number of variables
+	 */
+	public int getEliminatedCount()
+	{
+		return m_eliminatedCount;
+	}
+	
+	/**
+	 * Gets the number of blocked clauses removed in the last
+	 * preprocessing
+	 * @return The number of clauses
+	 */
+	public int getBlockedCount()
+	{
+		return m_blocked;
+	}
+	
+	/**
+	 * Copies the clauses of a formula, removing duplicate literals and
+	 * tautologies
+	 * @param cnf The formula
+	 */
+	protected void load(CnfFormula cnf)
+	{
+		m_variableCount = cnf.getVariableCount();
+		int n = m_variableCount;
+		m_clauses = new ArrayList<int[]>(cnf.size());
+		m_occurrences = new int[2 * n + 2][];
+		m_occurrenceSizes = new int[2 * n + 2];
+		m_values = new int[n + 1];
+		m_trail = new int[n + 1];
+		m_trailSize = 0;
+		m_trailHead = 0;
+		m_recorded = 0;
+		m_eliminated = new boolean[n + 1];
+		m_stack = new ArrayList<int[]>();
+		m_marks = new int[2 * n + 2];
+		m_stamp = 0;
+		m_unsatisfiable = false;
+		m_budget = PROBING_BUDGET;
+		m_fixed = 0;
+		m_failed = 0;
+		m_substituted = 0;
+		m_eliminatedCount = 0;
+		m_blocked = 0;
+		int[] literals = cnf.getLiterals();
+		int[] buffer = new int[16];
+		for (int c = 0; c < cnf.size(); c++)
+		{
+			int len = cnf.getClauseLength(c);
+			if (len > buffer.length)
+			{
+				buffer = new int[len];
+			}
+			System.arraycopy(literals, cnf.getClauseStart(c), buffer, 0, len);
+			addClause(buffer, len);
+		}
+	}
+	
+	/**
+	 * Adds a clause after removing duplicate literals; tautologies are not
+	 * added, and a unit clause sets its literal to true
+	 * @param literals An array containing the literals
+	 * @param len The number of literals
+	 */
+	protected void addClause(int[] literals, int len)
+	{
+		int stamp = ++m_stamp;
+		int size = 0;
+		for (int i = 0; i < len; i++)
+		{
+			int literal = literals[i];
+			if (m_marks[code(-literal)] == stamp)
+			{
+				return;
+			}
+			if (m_marks[code(literal)] != stamp)
+			{
+				m_marks[code(literal)] = stamp;
+				literals[size++] = literal;
+			}
+		}
+		if (size == 0)
+		{
+			m_unsatisfiable = true;
+			return;
+		}
+		int[] clause = Arrays.copyOf(literals, size);
+		int id = m_clauses.size();
+		m_clauses.add(clause);
+		for (int literal : clause)
+		{
+			addOccurrence(literal, id);
+		}
+		if (size == 1)
+		{
+			fix(clause[0]);
+		}
+	}
+	
+	/**
+	 * Adds a clause to the occurrence list of a literal
+	 * @param literal The literal
+	 * @param id The number of the clause
+	 */
+	protected void addOccurrence(int literal, int id)
+	{
+		int l = code(literal);
+		if (m_occurrences[l] == null)
+		{
+			m_occurrences[l] = new int[4];
+		}
+		else if (m_occurrenceSizes[l] == m_occurrences[l].length)
+		{
+			m_occurrences[l] = Arrays.copyOf(m_occurrences[l], 2 * m_occurrenceSizes[l]);
+		}
+		m_occurrences[l][m_occurrenceSizes[l]++] = id;
+	}
+	
+	/**
+	 * Sets a literal to true permanently. It is propagated and recorded on
+	 * the reconstruction stack by {@link #propagateAndSweep()}.
+	 * @param literal The literal
+	 */
+	protected void fix(int literal)
+	{
+		int current = value(literal);
+		if (current < 0)
+		{
+			m_unsatisfiable = true;
+		}
+		else if (current == 0)
+		{
+			assign(literal);
+		}
+	}
+	
+	/**
+	 * Sets a literal to true and puts it on the trail
+	 * @param literal The literal
+	 */
+	protected void assign(int literal)
+	{
+		m_values[Math.abs(literal)] = literal > 0 ? 1 : -1;
+		m_trail[m_trailSize++] = literal;
+	}
+	
+	/**
+	 * Gets the value of a literal
+	 * @param literal The literal
+	 * @return 1 if it is true, -1 if it is false, 0 if it is unknown
+	 */
+	protected int value(int literal)
+	{
+		int v = m_values[Math.abs(literal)];
+		return literal > 0 ? v : -v;
+	}
+	
+	/**
+	 * Propagates the literals of the trail not propagated yet
+	 * @return <tt>false</tt> if a clause has all its literals false
+	 */
+	protected boolean propagate()
+	{
+		while (m_trailHead < m_trailSize)
+		{
+			int l = code(-m_trail[m_trailHead++]);
+			int[] list = m_occurrences[l];
+			for (int k = 0; k < m_occurrenceSizes[l]; k++)
+			{
+				int[] clause = m_clauses.get(list[k]);
+				if (clause == null)
+				{
+					continue;
+				}
+				m_budget -= 1;
+				int unknown = 0, last = 0;
+				boolean satisfied = false;
+				for (int i = 0; i < clause.length && !satisfied; i++)
+				{
+					int v = value(clause[i]);
+					if (v > 0)
+					{
+						satisfied = true;
+					}
+					else if (v == 0)
+					{
+						unknown++;
+						last = clause[i];
+					}
+				}
+				if (satisfied || unknown > 1)
+				{
+					continue;
+				}
+				if (unknown == 0)
+				{
+					return false;
+				}
+				assign(last);
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Propagates the fixed literals, records the implied ones on the
+	 * reconstruction stack, then removes the satisfied clauses and the
+	 * false literals
+	 */
+	protected void propagateAndSweep()
+	{
+		if (!propagate())
+		{
+			m_unsatisfiable = true;
+			return;
+		}
+		for (; m_recorded < m_trailSize; m_recorded++)
+		{
+			m_stack.add(new int[] {m_trail[m_recorded]});
+		}
+		m_fixed = m_trailSize;
+		int[] buffer = new int[16];
+		for (int id = 0; id < m_clauses.size(); id++)
+		{
+			int[] clause = m_clauses.get(id);
+			if (clause == null)
+			{
+				continue;
+			}
+			if (buffer.length < clause.length)
+			{
+				buffer = new int[clause.length];
+			}
+			int size = 0;
+			boolean satisfied = false;
+			for (int i = 0; i < clause.length && !satisfied; i++)
+			{
+				int v = value(clause[i]);
+				satisfied = v > 0;
+				if (v == 0)
+				{
+					buffer[size++] = clause[i];
+				}
+			}
+			if (satisfied)
+			{
+				m_clauses.set(id, null);
+			}
+			else if (size < clause.length)
+			{
+				// Propagation has reached a fixpoint: the clause still has
+				// at least two unknown literals
+				m_clauses.set(id, Arrays.copyOf(buffer, size));
+			}
+		}
+		rebuildOccurrences();
+	}
+	
+	/**
+	 * Rebuilds the occurrence lists from the remaining clauses
+	 */
+	protected void rebuildOccurrences()
+	{
+		Arrays.fill(m_occurrenceSizes, 0);
+		for (int id = 0; id < m_clauses.size(); id++)
+		{
+			int[] clause = m_clauses.get(id);
+			if (clause != null)
+			{
+				for (int literal : clause)
+				{
+					addOccurrence(literal, id);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Failed literal probing: literals are set to true and propagated; if
+	 * this leads to a conflict, their negation is fixed. Only the roots of
+	 * the implication graph of the binary clauses are tried: literals that
+	 * imply something (their negation is in a binary clause) and that no
+	 * other literal implies (they are in no binary clause). A literal
+	 * implied by a root fails only if the root fails too.
+	 */
+	protected void probe()
+	{
+		boolean found = false;
+		for (int var = 1; var <= m_variableCount && m_budget > 0 && !m_unsatisfiable; var++)
+		{
+			if (m_values[var] != 0 || m_eliminated[var])
+			{
+				continue;
+			}
+			for (int sign = 1; sign >= -1 && m_values[var] == 0; sign -= 2)
+			{
+				int literal = sign * var;
+				if (!inBinaryClause(-literal) || inBinaryClause(literal))
+				{
+					continue;
+				}
+				int mark = m_trailSize;
+				assign(literal);
+				boolean ok = propagate();
+				// Undo the probe
+				for (int i = mark; i < m_trailSize; i++)
+				{
+					m_values[Math.abs(m_trail[i])] = 0;
+				}
+				m_trailSize = mark;
+				m_trailHead = mark;
+				if (!ok)
+				{
+					m_failed++;
+					found = true;
+					fix(-literal);
+					if (!propagate())
+					{
+						m_unsatisfiable = true;
+					}
+				}
+			}
+		}
+		if (found && !m_unsatisfiable)
+		{
+			propagateAndSweep();
+		}
+	}
+	
+	/**
+	 * Determines if a literal occurs in a binary clause
+	 * @param literal The literal
+	 * @return <tt>true</tt> if it does
+	 */
+	protected boolean inBinaryClause(int literal)
+	{
+		int l = code(literal);
+		for (int k = 0; k < m_occurrenceSizes[l]; k++)
+		{
+			int[] clause = m_clauses.get(m_occurrences[l][k]);
+			if (clause != null && clause.length == 2)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Equivalent literal substitution. The binary clauses form an
+	 * implication graph whose strongly connected components are sets of
+	 * equivalent literals; they are found with Tarjan's algorithm, without
+	 * recursion. Each variable of a component is replaced by the
+	 * representative of the component, which is a frozen variable if
+	 * there is one, and otherwise the smallest variable.
+	 */
+	protected void substitute()
+	{
+		int nodes = 2 * m_variableCount + 2;
+		// Implication graph: a clause a | b gives the edges -a -> b and -b -> a
+		int[] starts = new int[nodes + 1];
+		for (int[] clause : m_clauses)
+		{
+			if (clause != null && clause.length == 2)
+			{
+				starts[code(-clause[0]) + 1]++;
+				starts[code(-clause[1]) + 1]++;
+			}
+		}
+		for (int l = 1; l <= nodes; l++)
+		{
+			starts[l] += starts[l - 1];
+		}
+		if (starts[nodes] == 0)
+		{
+			return;
+		}
+		int[] edges = new int[starts[nodes]];
+		int[] fill = Arrays.copyOf(starts, nodes);
+		for (int[] clause : m_clauses)
+		{
+			if (clause != null && clause.length == 2)
+			{
+				edges[fill[code(-clause[0])]++] = code(clause[1]);
+				edges[fill[code(-clause[1])]++] = code(clause[0]);
+			}
+		}
+		int[] components = tarjan(nodes, starts, edges);
+		// Representative of each component
+		int[] representatives = new int[nodes];
+		for (int var = 1; var <= m_variableCount; var++)
+		{
+			for (int literal = var; literal >= -var; literal -= 2 * var)
+			{
+				int c = components[code(literal)];
+				int r = representatives[c];
+				if (r == 0 || (m_frozen.get(var) && !m_frozen.get(Math.abs(r))))
+				{
+					representatives[c] = literal;
+				}
+			}
+			if (components[code(var)] == components[code(-var)])
+			{
+				// x and not x are equivalent
+				m_unsatisfiable = true;
+				return;
+			}
+		}
+		int[] substitutes = new int[m_variableCount + 1];
+		boolean found = false;
+		for (int var = 1; var <= m_variableCount; var++)
+		{
+			int r = representatives[components[code(var)]];
+			if (Math.abs(r) != var && !m_frozen.get(var) && m_values[var] == 0 && !m_eliminated[var])
+			{
+				substitutes[var] = r;
+				found = true;
+				// var takes the value of r: first var is false, then it is
+				// set to true if r is true
+				m_stack.add(new int[] {var, -r});
+				m_stack.add(new int[] {-var});
+				m_eliminated[var] = true;
+				m_substituted++;
+			}
+		}
+		if (!found)
+		{
+			return;
+		}
+		int[] buffer = new int[16];
+		int count = m_clauses.size();
+		for (int id = 0; id < count; id++)
+		{
+			int[] clause = m_clauses.get(id);
+			if (clause == null)
+			{
+				continue;
+			}
+			boolean changed = false;
+			for (int literal : clause)
+			{
+				changed |= substitutes[Math.abs(literal)] != 0;
+			}
+			if (!changed)
+			{
+				continue;
+			}
+			if (buffer.length < clause.length)
+			{
+				buffer = new int[clause.length];
+			}
+			for (int i = 0; i < clause.length; i++)
+			{
+				int literal = clause[i];
+				int r = substitutes[Math.abs(literal)];
+				buffer[i] = r == 0 ? literal : (literal > 0 ? r : -r);
+			}
+			m_clauses.set(id, null);
+			addClause(buffer, clause.length);
+		}
+		if (!m_unsatisfiable)
+		{
+			propagateAndSweep();
+		}
+	}
+	
+	/**
+	 * Finds the strongly connected components of a graph with Tarjan's
+	 * algorithm, using explicit stacks
+	 * @param nodes The number of nodes
+	 * @param starts The position of the first edge of each node in
+	 * <tt>edges</tt>, followed by the number of edges
+	 * @param edges The destinations of the edges
+	 * @return The number of the component of each node
+	 */
+	protected static int[] tarjan(int nodes, int[] starts, int[] edges)
+	{
+		int[] index = new int[nodes];
+		int[] low = new int[nodes];
+		int[] components = new int[nodes];
+		boolean[] on_stack = new boolean[nodes];
+		int[] stack = new int[nodes];
+		int[] calls = new int[nodes];
+		int[] positions = new int[nodes];
+		Arrays.fill(index, -1);
+		int counter = 0, sp = 0, num_components = 0;
+		for (int root = 0; root < nodes; root++)
+		{
+			if (index[root] >= 0)
+			{
+				continue;
+			}
+			int depth = 0;
+			calls[depth] = root;
+			positions[depth++] = starts[root];
+			index[root] = low[root] = counter++;
+			stack[sp++] = root;
+			on_stack[root] = true;
+			while (depth > 0)
+			{
+				int v = calls[depth - 1];
+				if (positions[depth - 1] < starts[v + 1])
+				{
+					int w = edges[positions[depth - 1]++];
+					if (index[w] < 0)
+					{
+						index[w] = low[w] = counter++;
+						stack[sp++] = w;
+						on_stack[w] = true;
+						calls[depth] = w;
+						positions[depth++] = starts[w];
+					}
+					else if (on_stack[w])
+					{
+						low[v] = Math.min(low[v], index[w]);
+					}
+					continue;
+				}
+				depth--;
+				if (depth > 0)
+				{
+					int u = calls[depth - 1];
+					low[u] = Math.min(low[u], low[v]);
+				}
+				if (low[v] == index[v])
+				{
+					int w;
+					do
+					{
+						w = stack[--sp];
+						on_stack[w] = false;
+						components[w] = num_components;
+					} while (w != v);
+					num_components++;
+				}
+			}
+		}
+		return components;
+	}
+	
+	/**
+	 * Bounded variable elimination. Variables are tried from the one with
+	 * the fewest possible resolvents; a variable is eliminated when it
+	 * occurs in few clauses and its resolvents are no more numerous than
+	 * these clauses.
+	 */
+	protected void eliminate()
+	{
+		long[] candidates = new long[m_variableCount];
+		int num_candidates = 0;
+		for (int var = 1; var <= m_variableCount; var++)
+		{
+			if (m_values[var] != 0 || m_eliminated[var] || m_frozen.get(var))
+			{
+				continue;
+			}
+			long pos = m_occurrenceSizes[code(var)];
+			long neg = m_occurrenceSizes[code(-var)];
+			if (pos + neg == 0 || pos + neg > ELIMINATION_OCCURRENCES)
+			{
+				continue;
+			}
+			candidates[num_candidates++] = (pos * neg) << 32 | var;
+		}
+		Arrays.sort(candidates, 0, num_candidates);
+		List<int[]> positive = new ArrayList<int[]>();
+		List<int[]> negative = new ArrayList<int[]>();
+		List<int[]> resolvents = new ArrayList<int[]>();
+		List<Integer> ids = new ArrayList<Integer>();
+		int[] buffer = new int[RESOLVENT_LENGTH];
+		for (int k = 0; k < num_candidates && !m_unsatisfiable; k++)
+		{
+			int var = (int) candidates[k];
+			if (m_values[var] != 0)
+			{
+				continue;
+			}
+			positive.clear();
+			negative.clear();
+			ids.clear();
+			collect(var, positive, ids);
+			collect(-var, negative, ids);
+			int limit = positive.size() + negative.size();
+			if (limit == 0 || limit > ELIMINATION_OCCURRENCES)
+			{
+				continue;
+			}
+			resolvents.clear();
+			boolean ok = true;
+			for (int p = 0; p < positive.size() && ok; p++)
+			{
+				int stamp = ++m_stamp;
+				for (int literal : positive.get(p))
+				{
+					m_marks[code(literal)] = stamp;
+				}
+				for (int n = 0; n < negative.size() && ok; n++)
+				{
+					int size = 0;
+					for (int literal : positive.get(p))
+					{
+						if (literal != var)
+						{
+							buffer[size++] = literal;
+						}
+					}
+					boolean tautology = false;
+					for (int literal : negative.get(n))
+					{
+						if (literal == -var || m_marks[code(literal)] == stamp)
+						{
+							continue;
+						}
+						if (m_marks[code(-literal)] == stamp)
+						{
+							tautology = true;
+							break;
+						}
+						if (size == RESOLVENT_LENGTH)
+						{
+							ok = false;
+							break;
+						}
+						buffer[size++] = literal;
+					}
+					if (tautology || !ok)
+					{
+						continue;
+					}
+					resolvents.add(Arrays.copyOf(buffer, size));
+					ok = resolvents.size() <= limit;
+				}
+			}
+			if (!ok)
+			{
+				continue;
+			}
+			// Keep the clauses of the smaller side, then a unit giving the
+			// variable its value when none of these clauses needs it
+			boolean keep_positive = positive.size() <= negative.size();
+			int witness = keep_positive ? var : -var;
+			for (int[] clause : keep_positive ? positive : negative)
+			{
+				m_stack.add(withWitness(clause, witness));
+			}
+			m_stack.add(new int[] {-witness});
+			for (int id : ids)
+			{
+				m_clauses.set(id, null);
+			}
+			m_eliminated[var] = true;
+			m_eliminatedCount++;
+			for (int[] resolvent : resolvents)
+			{
+				addClause(resolvent, resolvent.length);
+			}
+			if (!m_unsatisfiable && m_trailHead < m_trailSize)
+			{
+				propagateAndSweep();
+			}
+		}
+	}
+	
+	/**
+	 * Gets the remaining clauses that contain a literal
+	 * @param literal The literal
+	 * @param clauses The list receiving the clauses
+	 * @param ids The list receiving the numbers of the clauses
+	 */
+	protected void collect(int literal, List<int[]> clauses, List<Integer> ids)
+	{
+		int l = code(literal);
+		for (int k = 0; k < m_occurrenceSizes[l]; k++)
+		{
+			int id = m_occurrences[l][k];
+			int[] clause = m_clauses.get(id);
+			if (clause != null && contains(clause, literal))
+			{
+				clauses.add(clause);
+				ids.add(id);
+			}
+		}
+	}
+	
+	/**
+	 * Blocked clause elimination. A clause <i>C</i> is blocked on one of
+	 * its literals <i>l</i> if every clause containing &not;<i>l</i> also
+	 * contains the negation of another literal of <i>C</i>; removing it
+	 * preserves satisfiability, and a model is repaired by setting
+	 * <i>l</i> to true if <i>C</i> is false.
+	 */
+	protected void removeBlocked()
+	{
+		for (int id = 0; id < m_clauses.size(); id++)
+		{
+			int[] clause = m_clauses.get(id);
+			if (clause == null)
+			{
+				continue;
+			}
+			int stamp = ++m_stamp;
+			for (int literal : clause)
+			{
+				m_marks[code(literal)] = stamp;
+			}
+			for (int literal : clause)
+			{
+				if (m_frozen.get(Math.abs(literal)) || m_occurrenceSizes[code(-literal)] > BLOCKED_OCCURRENCES)
+				{
+					continue;
+				}
+				if (blocked(literal, stamp))
+				{
+					m_stack.add(withWitness(clause, literal));
+					m_clauses.set(id, null);
+					m_blocked++;
+					break;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Determines if the marked clause is blocked on one of its literals
+	 * @param literal The literal
+	 * @param stamp The mark of the literals of the clause
+	 * @return <tt>true</tt> if all the resolvents on this literal are
+	 * tautologies
+	 */
+	protected boolean blocked(int literal, int stamp)
+	{
+		int l = code(-literal);
+		for (int k = 0; k < m_occurrenceSizes[l]; k++)
+		{
+			int[] other = m_clauses.get(m_occurrences[l][k]);
+			if (other == null || !contains(other, -literal))
+			{
+				continue;
+			}
+			boolean tautology = false;
+			for (int i = 0; i < other.length && !tautology; i++)
+			{
+				tautology = other[i] != -literal && m_marks[code(-other[i])] == stamp;
+			}
+			if (!tautology)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Copies a clause with one of its literals in first position
+	 * @param clause The clause
+	 * @param witness The literal
+	 * @return The copy
+	 */
+	protected static int[] withWitness(int[] clause, int witness)
+	{
+		int[] entry = new int[clause.length];
+		entry[0] = witness;
+		int j = 1;
+		for (int literal : clause)
+		{
+			if (literal != witness)
+			{
+				entry[j++] = literal;
+			}
+		}
+		return entry;
+	}
+	
+	/**
+	 * Determines if a clause contains a literal
+	 * @param clause The clause
+	 * @param literal The literal
+	 * @return <tt>true</tt> if it does
+	 */
+	protected static boolean contains(int[] clause, int literal)
+	{
+		for (int l : clause)
+		{
+			if (l == literal)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Gives a literal a position in the arrays indexed by literal
+	 * @param literal The DIMACS literal
+	 * @return Twice the variable number, plus 1 for a negative literal
+	 */
+	protected static int code(int literal)
+	{
+		return literal > 0 ? 2 * literal : -2 * literal + 1;
+	}
+}
@@ -0,0 +1,575 @@
+/*
+    Simple manipulation of Boolean formulas
+    Copyright (C) 2020 Sylvain Hallé
+    
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+    
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package stev.booleans;
+
+import java.util.Arrays;
+
+/**
+ * Removes redundant clauses from a formula in CNF. The simplifier works
+ * on the DIMACS literals of a {@link CnfFormula} and applies, until
+ * nothing changes:
+ * <ul>
+ * <li>removal of duplicate literals and of tautologies (clauses that
+ * contain a variable both positively and negatively), as
+ * {@link BooleanFormula#simplifyClause(Or)} does;</li>
+ * <li>removal of clauses that appear more than once;</li>
+ * <li>subsumption: a clause that contains all the literals of another
+ * clause is removed. Each clause is checked against the clauses it could
+ * subsume (backward) and, once it has lost a literal, against the clauses
+ * that could subsume it (forward);</li>
+ * <li>self-subsuming resolution: if a clause <i>C</i> &or; <i>l</i> and a
+ * clause <i>D</i> &or; &not;<i>l</i> are such that <i>C</i> is contained in
+ * <i>D</i>, the literal &not;<i>l</i> is removed from the second one.</li>
+ * </ul>
+ * The result is equivalent to the input formula. Candidate clauses are
+ * found with occurrence lists, stored like the clauses in flat arrays of
+ * integers: all the memory is allocated once per call to
+ * {@link #simplify(CnfFormula)}, and nothing per clause.
+ */
+public class CnfSimplifier
+{
+	/**
+	 * The literals of the clauses; clause <i>c</i> starts at
+	 * <tt>m_starts[c]</tt> and has <tt>m_lengths[c]</tt> literals
+	 */
+	protected int[] m_literals;
+	
+	/**
+	 * The position of the first literal of each clause
+	 */
+	protected int[] m_starts;
+	
+	/**
+	 * The current length of each clause, or -1 if it has been removed
+	 */
+	protected int[] m_lengths;
+	
+	/**
+	 * For each clause, a bit set of the variables it contains, modulo 64
+	 */
+	protected long[] m_signatures;
+	
+	/**
+	 * The clauses containing each literal, one list after the other.
+	 * Clauses stay in the list of a literal after this literal has been
+	 * removed from them, so a clause found in a list must be read again.
+	 */
+	protected int[] m_occurrences;
+	
+	/**
+	 * The position of the list of each literal in {@link #m_occurrences}
+	 */
+	protected int[] m_occurrenceStarts;
+	
+	/**
+	 * Marks on the literals of the clause being checked: a literal is
+	 * marked when its entry is equal to {@link #m_stamp}
+	 */
+	protected int[] m_marks;
+	
+	/**
+	 * Same as {@link #m_marks}, for the clause of a forward check
+	 */
+	protected int[] m_forwardMarks;
+	
+	/**
+	 * The current mark
+	 */
+	protected int m_stamp;
+	
+	/**
+	 * The current mark of {@link #m_forwardMarks}
+	 */
+	protected int m_forwardStamp;
+	
+	/**
+	 * The clauses still to check, as a circular queue
+	 */
+	protected int[] m_queue;
+	
+	/**
+	 * Whether each clause is in the queue
+	 */
+	protected boolean[] m_queued;
+	
+	/**
+	 * The position of the first clause in the queue
+	 */
+	protected int m_queueHead;
+	
+	/**
+	 * The number of clauses in the queue
+	 */
+	protected int m_queueSize;
+	
+	/**
+	 * Statistics of the last call to {@link #simplify(CnfFormula)}
+	 */
+	protected int m_tautologies, m_duplicates, m_subsumed, m_strengthened;
+	
+	/**
+	 * Creates a simplifier
+	 */
+	public CnfSimplifier()
+	{
+		super();
+	}
+	
+	/**
+	 * Simplifies a formula in CNF
+	 * @param cnf The formula, which is not modified
+	 * @return A new formula with the remaining clauses, in the same order.
+	 * Its variables have the same numbers as in the input formula.
+	 */
+	/*@ non_null @*/ public CnfFormula simplify(/*@ non_null @*/ CnfFormula cnf)
+	{
+		load(cnf);
+		removeDuplicates();
+		buildOccurrences(cnf.getVariableCount());
+		subsume();
+		int literals = 0, clauses = 0;
+		for (int c = 0; c < m_lengths.length; c++)
+		{
+			if (m_lengths[c] >= 0)
+			{
+				literals += m_lengths[c];
+				clauses++;
+			}
+		}
+		CnfFormula out = new CnfFormula(literals, clauses);
+		for (int c = 0; c < m_lengths.length; c++)
+		{
+			if (m_lengths[c] >= 0)
+			{
+				out.addClause(m_literals, m_starts[c], m_lengths[c]);
+			}
+		}
+		out.m_variables = cnf.m_variables.clone();
+		out.reserveVariables(cnf.getVariableCount());
+		return out;
+	}
+	
+	/**
+	 * Gets the number of tautologies removed by the last simplification
+	 * @return The number of clauses
+	 */
+	public int getTautologyCount()
+	{
+		return m_tautologies;
+	}
+	
+	/**
+	 * Gets the number of duplicate clauses removed by the last
+	 * simplification
+	 * @return The number of clauses
+	 */
+	public int getDuplicateCount()
+	{
+		return m_duplicates;
+	}
+	
+	/**
+	 * Gets the number of subsumed clauses removed by the last
+	 * simplification
+	 * @return The number of clauses
+	 */
+	public int getSubsumedCount()
+	{
+		return m_subsumed;
+	}
+	
+	/**
+	 * Gets the number of literals removed by self-subsuming resolution in
+	 * the last simplification
+	 * @return The number of literals
+	 */
+	public int getStrengthenedCount()
+	{
+		return m_strengthened;
+	}
+	
+	/**
+	 * Copies the clauses of a formula, sorts their literals and removes
+	 * duplicate literals and tautologies
+	 * @param cnf The formula
+	 */
+	protected void load(CnfFormula cnf)
+	{
+		int n = cnf.size();
+		m_literals = Arrays.copyOf(cnf.getLiterals(), Math.max(cnf.getLiteralCount(), 1));
+		m_starts = new int[n];
+		m_lengths = new int[n];
+		m_signatures = new long[n];
+		m_marks = new int[2 * cnf.getVariableCount() + 2];
+		m_forwardMarks = new int[m_marks.length];
+		m_stamp = 0;
+		m_forwardStamp = 0;
+		m_tautologies = 0;
+		m_duplicates = 0;
+		m_subsumed = 0;
+		m_strengthened = 0;
+		for (int c = 0; c < n; c++)
+		{
+			int start = cnf.getClauseStart(c);
+			int end = start + cnf.getClauseLength(c);
+			m_starts[c] = start;
+			Arrays.sort(m_literals, start, end);
+			int stamp = ++m_stamp;
+			int len = 0;
+			boolean tautology = false;
+			for (int i = start; i < end && !tautology; i++)
+			{
+				int literal = m_literals[i];
+				if (m_marks[code(-literal)] == stamp)
+				{
+					tautology = true;
+				}
+				else if (m_marks[code(literal)] != stamp)
+				{
+					m_marks[code(literal)] = stamp;
+					m_literals[start + len++] = literal;
+				}
+			}
+			if (tautology)
+			{
+				m_lengths[c] = -1;
+				m_tautologies++;
+				continue;
+			}
+			m_lengths[c] = len;
+			m_signatures[c] = signature(c);
+		}
+	}
+	
+	/**
+	 * Removes the clauses identical to an earlier clause, using an open
+	 * addressing hash table of clause numbers
+	 */
+	protected void removeDuplicates()
+	{
+		int n = m_lengths.length;
+		int capacity = Integer.highestOneBit(Math.max(2 * n, 2)) << 1;
+		int[] table = new int[capacity];
+		Arrays.fill(table, -1);
+		for (int c = 0; c < n; c++)
+		{
+			if (m_lengths[c] < 0)
+			{
+				continue;
+			}
+			int hash = m_lengths[c];
+			for (int i = m_starts[c]; i < m_starts[c] + m_lengths[c]; i++)
+			{
+				hash = 31 * hash + m_literals[i];
+			}
+			int slot = (hash ^ (hash >>> 16)) & (capacity - 1);
+			while (table[slot] >= 0 && !sameClause(table[slot], c))
+			{
+				slot = (slot + 1) & (capacity - 1);
+			}
+			if (table[slot] >= 0)
+			{
+				m_lengths[c] = -1;
+				m_duplicates++;
+			}
+			else
+			{
+				table[slot] = c;
+			}
+		}
+	}
+	
+	/**
+	 * Determines if two clauses have the same literals; since literals are
+	 * sorted, they must be in the same order
+	 * @param c The first clause
+	 * @param d The second clause
+	 * @return <tt>true</tt> if the clauses are identical
+	 */
+	protected boolean sameClause(int c, int d)
+	{
+		if (m_lengths[c] != m_lengths[d])
+		{
+			return false;
+		}
+		for (int i = 0; i < m_lengths[c]; i++)
+		{
+			if (m_literals[m_starts[c] + i] != m_literals[m_starts[d] + i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Builds the occurrence lists of the remaining clauses
+	 * @param num_variables The largest variable number
+	 */
+	protected void buildOccurrences(int num_variables)
+	{
+		int[] counts = new int[2 * num_variables + 3];
+		int total = 0;
+		for (int c = 0; c < m_lengths.length; c++)
+		{
+			for (int i = m_starts[c]; i < m_starts[c] + m_lengths[c]; i++)
+			{
+				counts[code(m_literals[i]) + 1]++;
+				total++;
+			}
+		}
+		for (int l = 1; l < counts.length; l++)
+		{
+			counts[l] += counts[l - 1];
+		}
+		m_occurrenceStarts = counts.clone();
+		m_occurrences = new int[Math.max(total, 1)];
+		for (int c = 0; c < m_lengths.length; c++)
+		{
+			for (int i = m_starts[c]; i < m_starts[c] + m_lengths[c]; i++)
+			{
+				m_occurrences[counts[code(m_literals[i])]++] = c;
+			}
+		}
+	}
+	
+	/**
+	 * Applies subsumption and self-subsuming resolution until no clause
+	 * changes. Clauses are first checked from the shortest to the longest,
+	 * since short clauses are the most likely to subsume others; a clause
+	 * that loses a literal is checked again.
+	 */
+	protected void subsume()
+	{
+		int n = m_lengths.length;
+		m_queue = new int[Math.max(n, 1)];
+		m_queued = new boolean[n];
+		m_queueHead = 0;
+		m_queueSize = 0;
+		// Counting sort of the clauses by length
+		int max_length = 0;
+		for (int c = 0; c < n; c++)
+		{
+			max_length = Math.max(max_length, m_lengths[c]);
+		}
+		int[] by_length = new int[max_length + 2];
+		for (int c = 0; c < n; c++)
+		{
+			if (m_lengths[c] >= 0)
+			{
+				by_length[m_lengths[c] + 1]++;
+			}
+		}
+		for (int l = 1; l < by_length.length; l++)
+		{
+			by_length[l] += by_length[l - 1];
+		}
+		for (int c = 0; c < n; c++)
+		{
+			if (m_lengths[c] >= 0)
+			{
+				m_queue[by_length[m_lengths[c]]++] = c;
+				m_queued[c] = true;
+				m_queueSize++;
+			}
+		}
+		while (m_queueSize > 0)
+		{
+			int c = m_queue[m_queueHead];
+			m_queueHead = (m_queueHead + 1) % m_queue.length;
+			m_queueSize--;
+			m_queued[c] = false;
+			if (m_lengths[c] > 0)
+			{
+				backward(c);
+			}
+		}
+	}
+	
+	/**
+	 * Checks a clause against the clauses it could subsume or strengthen.
+	 * All of them contain the variable of the clause that occurs least
+	 * often, so only the two lists of this variable are scanned.
+	 * @param c The clause
+	 */
+	protected void backward(int c)
+	{
+		int start = m_starts[c];
+		int len = m_lengths[c];
+		int best = m_literals[start];
+		int best_count = Integer.MAX_VALUE;
+		int stamp = ++m_stamp;
+		for (int i = start; i < start + len; i++)
+		{
+			int literal = m_literals[i];
+			m_marks[code(literal)] = stamp;
+			int count = occurrenceCount(literal) + occurrenceCount(-literal);
+			if (count < best_count)
+			{
+				best = literal;
+				best_count = count;
+			}
+		}
+		for (int sign = 0; sign < 2; sign++)
+		{
+			int literal = sign == 0 ? best : -best;
+			int to = m_occurrenceStarts[code(literal) + 1];
+			for (int k = m_occurrenceStarts[code(literal)]; k < to; k++)
+			{
+				int d = m_occurrences[k];
+				if (d == c || m_lengths[d] < len || (m_signatures[c] & ~m_signatures[d]) != 0)
+				{
+					continue;
+				}
+				int matched = 0, flipped = 0, flipped_literal = 0;
+				for (int i = m_starts[d]; i < m_starts[d] + m_lengths[d]; i++)
+				{
+					int d_literal = m_literals[i];
+					if (m_marks[code(d_literal)] == stamp)
+					{
+						matched++;
+					}
+					else if (m_marks[code(-d_literal)] == stamp)
+					{
+						flipped++;
+						flipped_literal = d_literal;
+					}
+				}
+				if (matched == len)
+				{
+					m_lengths[d] = -1;
+					m_subsumed++;
+				}
+				else if (matched == len - 1 && flipped == 1)
+				{
+					strengthen(d, flipped_literal);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Removes a literal from a clause, then checks whether the shorter
+	 * clause is subsumed, and otherwise puts it back in the queue
+	 * @param d The clause
+	 * @param literal The literal to remove
+	 */
+	protected void strengthen(int d, int literal)
+	{
+		int start = m_starts[d];
+		int len = m_lengths[d];
+		int j = start;
+		for (int i = start; i < start + len; i++)
+		{
+			if (m_literals[i] != literal)
+			{
+				m_literals[j++] = m_literals[i];
+			}
+		}
+		m_lengths[d] = len - 1;
+		m_signatures[d] = signature(d);
+		m_strengthened++;
+		if (forward(d))
+		{
+			m_lengths[d] = -1;
+			m_subsumed++;
+		}
+		else if (!m_queued[d])
+		{
+			m_queue[(m_queueHead + m_queueSize) % m_queue.length] = d;
+			m_queueSize++;
+			m_queued[d] = true;
+		}
+	}
+	
+	/**
+	 * Determines if a clause is subsumed by another one
+	 * @param d The clause
+	 * @return <tt>true</tt> if another clause contains only literals of
+	 * <i>d</i>
+	 */
+	protected boolean forward(int d)
+	{
+		int start = m_starts[d];
+		int len = m_lengths[d];
+		int stamp = ++m_forwardStamp;
+		for (int i = start; i < start + len; i++)
+		{
+			m_forwardMarks[code(m_literals[i])] = stamp;
+		}
+		for (int i = start; i < start + len; i++)
+		{
+			int literal = m_literals[i];
+			int to = m_occurrenceStarts[code(literal) + 1];
+			for (int k = m_occurrenceStarts[code(literal)]; k < to; k++)
+			{
+				int e = m_occurrences[k];
+				if (e == d || m_lengths[e] < 0 || m_lengths[e] > len || (m_signatures[e] & ~m_signatures[d]) != 0)
+				{
+					continue;
+				}
+				boolean contained = true;
+				for (int j = m_starts[e]; j < m_starts[e] + m_lengths[e] && contained; j++)
+				{
+					contained = m_forwardMarks[code(m_literals[j])] == stamp;
+				}
+				if (contained)
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Gets the number of clauses in the occurrence list of a literal,
+	 * including those that no longer contain it
+	 * @param literal The literal
+	 * @return The number of clauses
+	 */
+	protected int occurrenceCount(int literal)
+	{
+		return m_occurrenceStarts[code(literal) + 1] - m_occurrenceStarts[code(literal)];
+	}
+	
+	/**
+	 * Computes the signature of a clause
+	 * @param c The clause
+	 * @return A bit set of its variables, modulo 64
+	 */
+	protected long signature(int c)
+	{
+		long sig = 0;
+		for (int i = m_starts[c]; i < m_starts[c] + m_lengths[c]; i++)
+		{
+			sig |= 1L << (Math.abs(m_literals[i]) & 63);
+		}
+		return sig;
+	}
+	
+	/**
+	 * Gives a literal a position in the arrays indexed by literal
+	 * @param literal The DIMACS literal
+	 * @return Twice the variable number, plus 1 for a negative literal
+	 */
+	protected static int code(int literal)
+	{
+		return literal > 0 ? 2 * literal : -2 * literal + 1;
+	}
+}
@@ -0,0 +1,403 @@
+/*
+    Simple manipulation of Boolean formulas
+    Copyright (C) 2020 Sylvain Hallé
+    
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+    
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package stev.booleans;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Formula compiled into a flat program that evaluates it over a
+ * {@link BitValuation}. Each instruction tests one variable and jumps to
+ * one of two instructions depending on its value, or ends the program
+ * with a result; conjunctions and disjunctions are thus evaluated with
+ * short-circuit, and evaluation is a loop over an array of integers that
+ * creates no object. A compiled formula is immutable and can be used by
+ * several threads at once.
+ * <p>
+ * Variables that come from a {@link VariableRegistry} keep their
+ * identifier as number; other variables are numbered from 1 in the order
+ * the compiler encounters them, and {@link #getIndex(String)} gives the
+ * number of each of them. A {@link CnfFormula} keeps its own numbering.
+ * <p>
+ * The program has one instruction per occurrence of a variable in the
+ * formula once implications and equivalences have been replaced by
+ * conjunctions and disjunctions. Since an equivalence mentions each of its
+ * operands twice, nesting equivalences doubles the size of the program at
+ * each level.
+ */
+public class CompiledFormula
+{
+	/**
+	 * Jump target meaning that the formula is true
+	 */
+	protected static final int TRUE = -1;
+	
+	/**
+	 * Jump target meaning that the formula is false
+	 */
+	protected static final int FALSE = -2;
+	
+	/**
+	 * The program: instruction <i>pc</i> tests variable
+	 * <tt>m_code[3*pc]</tt> and jumps to <tt>m_code[3*pc+1]</tt> if it is
+	 * true, and to <tt>m_code[3*pc+2]</tt> otherwise
+	 */
+	/*@ non_null @*/ protected final int[] m_code;
+	
+	/**
+	 * The first instruction, or {@link #TRUE} or {@link #FALSE} if the
+	 * formula is a constant
+	 */
+	protected final int m_entry;
+	
+	/**
+	 * The number given to each variable
+	 */
+	/*@ non_null @*/ protected final Map<String,Integer> m_indices;
+	
+	/**
+	 * The largest variable number
+	 */
+	protected final int m_variableCount;
+	
+	/**
+	 * Compiles a formula
+	 * @param phi The formula
+	 */
+	public CompiledFormula(/*@ non_null @*/ BooleanFormula phi)
+	{
+		super();
+		Compiler c = new Compiler();
+		int entry;
+		if (phi instanceof CnfFormula)
+		{
+			entry = c.compileCnf((CnfFormula) phi);
+		}
+		else
+		{
+			entry = c.compile(BooleanFormula.normalize(phi));
+		}
+		// Instructions were emitted from the last to the first: reverse them
+		// so that the program mostly jumps forward
+		int n = c.m_size;
+		m_code = new int[3 * n];
+		for (int pc = 0; pc < n; pc++)
+		{
+			int q = n - 1 - pc;
+			m_code[3 * q] = c.m_code[3 * pc];
+			m_code[3 * q + 1] = relocate(c.m_code[3 * pc + 1], n);
+			m_code[3 * q + 2] = relocate(c.m_code[3 * pc + 2], n);
+		}
+		m_entry = relocate(entry, n);
+		m_indices = c.m_indices;
+		m_variableCount = c.m_variableCount;
+	}
+	
+	/**
+	 * Evaluates the formula
+	 * @param v The values of the variables
+	 * @return The value of the formula
+	 */
+	public boolean evaluate(/*@ non_null @*/ BitValuation v)
+	{
+		final int[] code = m_code;
+		int pc = m_entry;
+		while (pc >= 0)
+		{
+			int i = 3 * pc;
+			pc = v.get(code[i]) ? code[i + 1] : code[i + 2];
+		}
+		return pc == TRUE;
+	}
+	
+	/**
+	 * Gets the number given to a variable
+	 * @param var_name The name of the variable
+	 * @return The number, or 0 if the variable does not occur in the
+	 * formula
+	 */
+	public int getIndex(/*@ non_null @*/ String var_name)
+	{
+		Integer index = m_indices.get(var_name);
+		return index == null ? 0 : index;
+	}
+	
+	/**
+	 * Gets the largest variable number
+	 * @return The number
+	 */
+	public int getVariableCount()
+	{
+		return m_variableCount;
+	}
+	
+	/**
+	 * Gets the number of instructions of the program
+	 * @return The number of instructions
+	 */
+	public int size()
+	{
+		return m_code.length / 3;
+	}
+	
+	/**
+	 * Converts a valuation by name into a valuation by number for this
+	 * formula
+	 * @param v The valuation
+	 * @return The valuation by number
+	 */
+	/*@ non_null @*/ public BitValuation toBitValuation(/*@ non_null @*/ Valuation v)
+	{
+		BitValuation bv = new BitValuation(m_variableCount);
+		for (Map.Entry<String,Integer> e : m_indices.entrySet())
+		{
+			Boolean value = v.get(e.getKey());
+			if (value == null)
+			{
+				throw new BooleanFormulaException("No value defined for variable " + e.getKey());
+			}
+			bv.set(e.getValue(), value);
+		}
+		return bv;
+	}
+	
+	/**
+	 * Maps a jump target of the reversed program
+	 * @param target The target in the emitted program
+	 * @param n The number of instructions
+	 * @return The target in the final program
+	 */
+	protected static int relocate(int target, int n)
+	{
+		return target < 0 ? target : n - 1 - target;
+	}
+	
+	/**
+	 * Emits the program. Code is emitted backwards: the continuation of a
+	 * subformula (where to go when it is true or false) is always emitted
+	 * before the subformula itself, so that jump targets are known when an
+	 * instruction is emitted and no patching is needed.
+	 */
+	protected static class Compiler
+	{
+		int[] m_code = new int[48];
+		
+		int m_size = 0;
+		
+		Map<String,Integer> m_indices = new HashMap<String,Integer>();
+		
+		int m_variableCount = 0;
+		
+		/**
+		 * The highest number given to an unregistered variable
+		 */
+		int m_lastIndex = 0;
+		
+		/**
+		 * Emits an instruction
+		 * @param var The variable to test
+		 * @param on_true Where to jump if it is true
+		 * @param on_false Where to jump if it is false
+		 * @return The address of the instruction
+		 */
+		int emit(int var, int on_true, int on_false)
+		{
+			if (3 * m_size + 3 > m_code.length)
+			{
+				m_code = Arrays.copyOf(m_code, 2 * m_code.length);
+			}
+			m_code[3 * m_size] = var;
+			m_code[3 * m_size + 1] = on_true;
+			m_code[3 * m_size + 2] = on_false;
+			return m_size++;
+		}
+		
+		/**
+		 * Gets the number of a variable
+		 * @param p The variable
+		 * @return The number
+		 */
+		int index(PropositionalVariable p)
+		{
+			Integer index = m_indices.get(p.m_variableName);
+			if (index == null)
+			{
+				if (p.m_id > 0)
+				{
+					index = p.m_id;
+				}
+				else
+				{
+					index = ++m_lastIndex;
+				}
+				m_indices.put(p.m_variableName, index);
+				if (index > m_variableCount)
+				{
+					m_variableCount = index;
+				}
+			}
+			return index;
+		}
+		
+		/**
+		 * A connective whose operands are being compiled, from the last to
+		 * the first
+		 */
+		static class Frame
+		{
+			List<BooleanFormula> m_operands;
+			boolean m_and;
+			int m_true;
+			int m_false;
+			int m_next;
+		}
+		
+		/**
+		 * Compiles a formula in flattened negation normal form
+		 * @param phi The formula
+		 * @return The address of its first instruction
+		 */
+		int compile(BooleanFormula phi)
+		{
+			// Indices of unregistered variables are given in order of first
+			// occurrence, which requires a forward traversal
+			number(phi);
+			Deque<Frame> stack = new ArrayDeque<Frame>();
+			int start = push(stack, phi, TRUE, FALSE);
+			while (!stack.isEmpty())
+			{
+				Frame fr = stack.peek();
+				if (fr.m_next < 0)
+				{
+					stack.pop();
+					continue;
+				}
+				// The operand after this one starts at "start"
+				int i = fr.m_next--;
+				boolean last = i == fr.m_operands.size() - 1;
+				int on_true = fr.m_and && !last ? start : fr.m_true;
+				int on_false = !fr.m_and && !last ? start : fr.m_false;
+				start = push(stack, fr.m_operands.get(i), on_true, on_false);
+			}
+			return start;
+		}
+		
+		/**
+		 * Compiles a literal directly, or pushes the frame of a connective
+		 * @param stack The stack of frames
+		 * @param phi The formula
+		 * @param on_true Where to go if the formula is true
+		 * @param on_false Where to go if the formula is false
+		 * @return The address of the literal's instruction, or the address
+		 * to go to if the connective has no operand
+		 */
+		int push(Deque<Frame> stack, BooleanFormula phi, int on_true, int on_false)
+		{
+			if (phi instanceof PropositionalVariable)
+			{
+				return emit(index((PropositionalVariable) phi), on_true, on_false);
+			}
+			if (phi instanceof Not)
+			{
+				return emit(index((PropositionalVariable) ((Not) phi).m_operand), on_false, on_true);
+			}
+			Frame fr = new Frame();
+			fr.m_operands = ((NaryConnective) phi).m_operands;
+			fr.m_and = phi instanceof And;
+			fr.m_true = on_true;
+			fr.m_false = on_false;
+			fr.m_next = fr.m_operands.size() - 1;
+			if (fr.m_next < 0)
+			{
+				// Empty conjunction is true, empty disjunction is false
+				return fr.m_and ? on_true : on_false;
+			}
+			stack.push(fr);
+			// Not emitted yet: the caller's start is overwritten by the
+			// first operand popped from this frame
+			return fr.m_and ? on_true : on_false;
+		}
+		
+		/**
+		 * Numbers the variables of a formula in flattened negation normal
+		 * form in order of first occurrence
+		 * @param phi The formula
+		 */
+		void number(BooleanFormula phi)
+		{
+			Deque<BooleanFormula> stack = new ArrayDeque<BooleanFormula>();
+			stack.push(phi);
+			while (!stack.isEmpty())
+			{
+				BooleanFormula f = stack.pop();
+				if (f instanceof Not)
+				{
+					f = ((Not) f).m_operand;
+				}
+				if (f instanceof PropositionalVariable)
+				{
+					index((PropositionalVariable) f);
+				}
+				else
+				{
+					List<BooleanFormula> ops = ((NaryConnective) f).m_operands;
+					for (int i = ops.size() - 1; i >= 0; i--)
+					{
+						stack.push(ops.get(i));
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Compiles a formula in CNF with its own numbering
+		 * @param cnf The formula
+		 * @return The address of the first instruction
+		 */
+		int compileCnf(CnfFormula cnf)
+		{
+			int[] literals = cnf.getLiterals();
+			for (int i = 0; i < cnf.getLiteralCount(); i++)
+			{
+				PropositionalVariable p = cnf.getVariable(Math.abs(literals[i]));
+				m_indices.put(p.m_variableName, Math.abs(literals[i]));
+			}
+			m_variableCount = cnf.getVariableCount();
+			int start = TRUE;
+			for (int c = cnf.size() - 1; c >= 0; c--)
+			{
+				// A true literal goes to the next clause, a false one to the
+				// next literal of the clause
+				int next_clause = start;
+				start = FALSE;
+				int first = cnf.getClauseStart(c);
+				for (int i = first + cnf.getClauseLength(c) - 1; i >= first; i--)
+				{
+					int literal = literals[i];
+					start = literal > 0 ? emit(literal, next_clause, start) : emit(-literal, start, next_clause);
+				}
+			}
+			return start;
+		}
+	}
+}
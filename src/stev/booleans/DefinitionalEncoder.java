@@ -0,0 +1,382 @@
+/*
+    Simple manipulation of Boolean formulas
+    Copyright (C) 2020 Sylvain Hallé
+    
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+    
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package stev.booleans;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Converts a formula in negation normal form into an equisatisfiable
+ * formula in CNF, by introducing an auxiliary variable for each
+ * subformula that is not a literal. Used by
+ * {@link BooleanFormula#toCnf(BooleanFormula, CnfMode, VariableRegistry)}.
+ */
+class DefinitionalEncoder
+{
+	/**
+	 * The prefix of the names of auxiliary variables
+	 */
+	protected static final String PREFIX = "_t";
+	
+	/**
+	 * Whether both directions of each definition are produced
+	 */
+	protected final boolean m_bothDirections;
+	
+	/**
+	 * The registry giving auxiliary variables, or <tt>null</tt> if the
+	 * formula does not use registered variables
+	 */
+	protected final VariableRegistry m_registry;
+	
+	/**
+	 * The names already used in the formula, when no registry is used
+	 */
+	protected final Set<String> m_names;
+	
+	/**
+	 * The sink receiving the clauses as they are produced, or
+	 * <tt>null</tt> if they are kept in {@link #m_clauses}
+	 */
+	protected final ClauseSink m_sink;
+	
+	/**
+	 * The numbering of the variables of the formula, when the clauses go
+	 * to a sink
+	 */
+	protected final Map<String,Integer> m_dict;
+	
+	/**
+	 * The number of auxiliary variables created so far
+	 */
+	protected int m_counter = 0;
+	
+	/**
+	 * The clauses produced
+	 */
+	/*@ non_null @*/ protected final List<BooleanFormula> m_clauses;
+	
+	/**
+	 * The auxiliary variable standing for each connective already defined
+	 */
+	/*@ non_null @*/ protected final Map<BooleanFormula,PropositionalVariable> m_defined;
+	
+	/**
+	 * Creates a new encoder
+	 * @param mode Either {@link CnfMode#TSEITIN} or
+	 * {@link CnfMode#PLAISTED_GREENBAUM}
+	 * @param registry The registry giving auxiliary variables, or
+	 * <tt>null</tt>
+	 * @param names The variable names used in the formula, if
+	 * <tt>registry</tt> is <tt>null</tt>
+	 */
+	DefinitionalEncoder(/*@ non_null @*/ CnfMode mode, VariableRegistry registry, Set<String> names)
+	{
+		super();
+		m_bothDirections = mode == CnfMode.TSEITIN;
+		m_registry = registry;
+		m_names = names;
+		m_sink = null;
+		m_dict = null;
+		m_clauses = new ArrayList<BooleanFormula>();
+		m_defined = new IdentityHashMap<BooleanFormula,PropositionalVariable>();
+	}
+	
+	/**
+	 * Creates a new encoder that adds its clauses to a sink as soon as
+	 * they are produced, and takes auxiliary variables from the sink
+	 * @param mode Either {@link CnfMode#TSEITIN} or
+	 * {@link CnfMode#PLAISTED_GREENBAUM}
+	 * @param sink The sink
+	 * @param var_dict The numbering of the variables of the formula
+	 */
+	DefinitionalEncoder(/*@ non_null @*/ CnfMode mode, /*@ non_null @*/ ClauseSink sink, /*@ non_null @*/ Map<String,Integer> var_dict)
+	{
+		super();
+		m_bothDirections = mode == CnfMode.TSEITIN;
+		m_registry = null;
+		m_names = null;
+		m_sink = sink;
+		m_dict = var_dict;
+		m_clauses = new ArrayList<BooleanFormula>();
+		m_defined = new IdentityHashMap<BooleanFormula,PropositionalVariable>();
+	}
+	
+	/**
+	 * Encodes a formula in negation normal form that must hold
+	 * @param phi The formula, with only and, or and not as connectives,
+	 * and negations applied to variables only
+	 * @return The conjunction of the clauses produced
+	 */
+	/*@ non_null @*/ BooleanFormula encode(/*@ non_null @*/ BooleanFormula phi)
+	{
+		assertTop(phi);
+		return new And(m_clauses);
+	}
+	
+	/**
+	 * Adds clauses stating that a formula holds. Conjunctions at the top
+	 * are split into separate constraints, and a disjunction at the top
+	 * becomes a clause directly, so that no auxiliary variable is needed
+	 * for them.
+	 * @param phi The formula
+	 */
+	protected void assertTop(/*@ non_null @*/ BooleanFormula phi)
+	{
+		if (phi instanceof And)
+		{
+			for (BooleanFormula op : ((And) phi).m_operands)
+			{
+				assertTop(op);
+			}
+		}
+		else if (phi instanceof Or)
+		{
+			Or clause = new Or();
+			for (BooleanFormula op : ((Or) phi).m_operands)
+			{
+				clause.addOperand(literal(op));
+			}
+			addClause(clause);
+		}
+		else
+		{
+			addClause(literal(phi));
+		}
+	}
+	
+	/**
+	 * Adds the clauses of a cardinality constraint over literals that
+	 * must hold, written with the constraint's encoding. The encoding is
+	 * first produced with its own numbering, where the operands are
+	 * variables 1 to <i>n</i>, and then translated back, with a new
+	 * auxiliary variable for each number above <i>n</i>.
+	 * @param c The constraint
+	 */
+	protected void assertCardinality(/*@ non_null @*/ Cardinality c)
+	{
+		if (m_sink != null)
+		{
+			// The literals already have their final numbers
+			c.encode(c.getLiterals(m_dict), m_sink);
+			return;
+		}
+		List<BooleanFormula> operands = c.m_operands;
+		int n = operands.size();
+		int[] literals = new int[n];
+		for (int i = 0; i < n; i++)
+		{
+			literals[i] = i + 1;
+		}
+		CnfFormula cnf = new CnfFormula();
+		cnf.reserveVariables(n);
+		c.encode(literals, cnf);
+		PropositionalVariable[] auxiliary = new PropositionalVariable[cnf.getVariableCount() - n];
+		int[] lits = cnf.getLiterals();
+		for (int k = 0; k < cnf.size(); k++)
+		{
+			Or clause = new Or();
+			int start = cnf.getClauseStart(k);
+			for (int j = start; j < start + cnf.getClauseLength(k); j++)
+			{
+				int var = Math.abs(lits[j]);
+				BooleanFormula l;
+				if (var <= n)
+				{
+					l = operands.get(var - 1);
+				}
+				else
+				{
+					if (auxiliary[var - n - 1] == null)
+					{
+						auxiliary[var - n - 1] = newVariable();
+					}
+					l = auxiliary[var - n - 1];
+				}
+				clause.m_operands.add(lits[j] > 0 ? l : negate(l));
+			}
+			addClause(clause.m_operands.size() == 1 ? clause.m_operands.get(0) : clause);
+		}
+	}
+	
+	/**
+	 * Gets a literal standing for a formula, adding the clauses that
+	 * define it if the formula is not already a literal. Subformulas are
+	 * visited with an explicit stack, so that the depth of the formula is
+	 * not limited by the size of the call stack, and a subformula that
+	 * appears several times is only defined once.
+	 * @param phi The formula
+	 * @return The literal
+	 */
+	/*@ non_null @*/ protected BooleanFormula literal(/*@ non_null @*/ BooleanFormula phi)
+	{
+		if (phi.isAtom())
+		{
+			return phi;
+		}
+		Deque<BooleanFormula> nodes = new ArrayDeque<BooleanFormula>();
+		Deque<Integer> positions = new ArrayDeque<Integer>();
+		nodes.push(phi);
+		positions.push(0);
+		while (true)
+		{
+			BooleanFormula node = nodes.peek();
+			if (!(node instanceof NaryConnective))
+			{
+				throw new BooleanFormulaException("Error converting to CNF");
+			}
+			List<BooleanFormula> operands = ((NaryConnective) node).m_operands;
+			int i = positions.pop();
+			// Skip operands that are literals or already defined
+			while (i < operands.size() && (operands.get(i).isAtom() || m_defined.containsKey(operands.get(i))))
+			{
+				i++;
+			}
+			if (i < operands.size())
+			{
+				positions.push(i + 1);
+				nodes.push(operands.get(i));
+				positions.push(0);
+				continue;
+			}
+			nodes.pop();
+			PropositionalVariable t = define(node);
+			if (nodes.isEmpty())
+			{
+				return t;
+			}
+		}
+	}
+	
+	/**
+	 * Adds the clauses defining an auxiliary variable for a connective
+	 * whose operands are all literals or already defined
+	 * @param phi The connective
+	 * @return The auxiliary variable
+	 */
+	/*@ non_null @*/ protected PropositionalVariable define(/*@ non_null @*/ BooleanFormula phi)
+	{
+		PropositionalVariable t = m_defined.get(phi);
+		if (t != null)
+		{
+			return t;
+		}
+		List<BooleanFormula> operands = ((NaryConnective) phi).m_operands;
+		List<BooleanFormula> lits = new ArrayList<BooleanFormula>(operands.size());
+		for (BooleanFormula op : operands)
+		{
+			lits.add(op.isAtom() ? op : m_defined.get(op));
+		}
+		t = newVariable();
+		m_defined.put(phi, t);
+		if (phi instanceof And)
+		{
+			// t -> l_i for every i, and optionally (l_1 & ... & l_n) -> t
+			Or reverse = new Or(t);
+			for (BooleanFormula l : lits)
+			{
+				addClause(new Or(new Not(t), l));
+				reverse.addOperand(negate(l));
+			}
+			if (m_bothDirections)
+			{
+				addClause(reverse);
+			}
+		}
+		else
+		{
+			// t -> (l_1 | ... | l_n), and optionally l_i -> t for every i
+			Or forward = new Or(new Not(t));
+			for (BooleanFormula l : lits)
+			{
+				forward.addOperand(l);
+				if (m_bothDirections)
+				{
+					addClause(new Or(negate(l), t));
+				}
+			}
+			addClause(forward);
+		}
+		return t;
+	}
+	
+	/**
+	 * Adds a clause to the result
+	 * @param clause The clause, a disjunction of literals or a literal
+	 */
+	protected void addClause(/*@ non_null @*/ BooleanFormula clause)
+	{
+		if (m_sink == null)
+		{
+			m_clauses.add(clause);
+			return;
+		}
+		if (clause instanceof Or)
+		{
+			// The clauses do not go through simplify()
+			clause = BooleanFormula.simplifyClause((Or) clause);
+			if (clause == null)
+			{
+				return;
+			}
+		}
+		BooleanFormula.writeClause(clause, m_dict, m_sink);
+	}
+	
+	/**
+	 * Negates a literal
+	 * @param l The literal
+	 * @return The opposite literal
+	 */
+	/*@ non_null @*/ protected static BooleanFormula negate(/*@ non_null @*/ BooleanFormula l)
+	{
+		if (l instanceof Not)
+		{
+			return ((Not) l).m_operand;
+		}
+		return new Not(l);
+	}
+	
+	/**
+	 * Creates a new auxiliary variable whose name is not used elsewhere
+	 * @return The variable
+	 */
+	/*@ non_null @*/ protected PropositionalVariable newVariable()
+	{
+		if (m_sink != null)
+		{
+			int index = m_sink.newVariable();
+			return new PropositionalVariable(PREFIX + index, index);
+		}
+		if (m_registry != null)
+		{
+			return m_registry.fresh(PREFIX);
+		}
+		String name;
+		do
+		{
+			name = PREFIX + (++m_counter);
+		} while (m_names.contains(name));
+		return new PropositionalVariable(name);
+	}
+}
@@ -0,0 +1,342 @@
+/*
+    Simple manipulation of Boolean formulas
+    Copyright (C) 2020 Sylvain Hallé
+    
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+    
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package stev.booleans;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads clauses in DIMACS format from a byte channel, one clause at a time.
+ * The parser works directly on the bytes of a buffer, and each clause is
+ * returned in an array that is reused from one clause to the next, so
+ * that a file of any size can be read without holding it in memory.
+ * <p>
+ * Typical use:
+ * <pre>
+ * try (DimacsParser parser = new DimacsParser(path))
+ * {
+ *   int len;
+ *   while ((len = parser.nextClause()) &gt;= 0)
+ *   {
+ *     int[] clause = parser.getClause(); // literals 0 to len-1
+ *     ...
+ *   }
+ * }
+ * </pre>
+ * Comment lines are skipped, and a line starting with <tt>%</tt> marks the
+ * end of the clauses, as in the files of the SATLIB benchmark collection.
+ */
+public class DimacsParser implements Closeable
+{
+	/**
+	 * The channel to read from
+	 */
+	/*@ non_null @*/ protected ReadableByteChannel m_channel;
+	
+	/**
+	 * The bytes read from the channel and not parsed yet
+	 */
+	/*@ non_null @*/ protected ByteBuffer m_buffer;
+	
+	/**
+	 * Whether the end of the clauses has been reached
+	 */
+	protected boolean m_end = false;
+	
+	/**
+	 * The literals of the last clause read
+	 */
+	/*@ non_null @*/ protected int[] m_clause = new int[16];
+	
+	/**
+	 * The number of variables declared in the header, or -1 if no header
+	 * has been read
+	 */
+	protected int m_headerVariables = -1;
+	
+	/**
+	 * The number of clauses declared in the header, or -1 if no header
+	 * has been read
+	 */
+	protected int m_headerClauses = -1;
+	
+	/**
+	 * The number of clauses read so far
+	 */
+	protected int m_clauseCount = 0;
+	
+	/**
+	 * The largest variable read so far
+	 */
+	protected int m_variableCount = 0;
+	
+	/**
+	 * Creates a parser on an existing channel
+	 * @param channel The channel. It is closed along with the parser.
+	 */
+	public DimacsParser(/*@ non_null @*/ ReadableByteChannel channel)
+	{
+		super();
+		m_channel = channel;
+		m_buffer = ByteBuffer.allocateDirect(1 << 16);
+		m_buffer.flip();
+	}
+	
+	/**
+	 * Creates a parser on a file
+	 * @param path The path of the file
+	 * @throws IOException If the file cannot be opened
+	 */
+	public DimacsParser(/*@ non_null @*/ Path path) throws IOException
+	{
+		this(FileChannel.open(path, StandardOpenOption.READ));
+	}
+	
+	/**
+	 * Reads the next clause.
+	 * @return The number of literals in the clause, which are stored at
+	 * the start of the array returned by {@link #getClause()}, or -1 if
+	 * there are no more clauses
+	 * @throws IOException If the channel cannot be read
+	 */
+	public int nextClause() throws IOException
+	{
+		int len = 0;
+		while (!m_end)
+		{
+			int b = read();
+			if (b < 0 || b == '%')
+			{
+				m_end = true;
+				if (len == 0)
+				{
+					return -1;
+				}
+				// A last clause without its terminating 0
+				break;
+			}
+			if (b == ' ' || b == '\t' || b == '\r' || b == '\n')
+			{
+				continue;
+			}
+			if (b == 'c')
+			{
+				skipLine();
+				continue;
+			}
+			if (b == 'p')
+			{
+				readHeader();
+				continue;
+			}
+			int literal = readInt(b);
+			if (literal == 0)
+			{
+				break;
+			}
+			if (len == m_clause.length)
+			{
+				m_clause = Arrays.copyOf(m_clause, 2 * len);
+			}
+			m_clause[len++] = literal;
+			int var = literal < 0 ? -literal : literal;
+			if (var > m_variableCount)
+			{
+				m_variableCount = var;
+			}
+		}
+		if (m_end && len == 0)
+		{
+			return -1;
+		}
+		m_clauseCount++;
+		return len;
+	}
+	
+	/**
+	 * Gets the literals of the last clause read. The array is overwritten
+	 * by the next call to {@link #nextClause()}, and may be longer than the
+	 * clause.
+	 * @return The array
+	 */
+	/*@ non_null @*/ public int[] getClause()
+	{
+		return m_clause;
+	}
+	
+	/**
+	 * Gets the number of variables declared in the header
+	 * @return The number of variables, or -1 if no header has been read
+	 * yet
+	 */
+	public int getHeaderVariableCount()
+	{
+		return m_headerVariables;
+	}
+	
+	/**
+	 * Gets the number of clauses declared in the header
+	 * @return The number of clauses, or -1 if no header has been read yet
+	 */
+	public int getHeaderClauseCount()
+	{
+		return m_headerClauses;
+	}
+	
+	/**
+	 * Gets the number of clauses read so far
+	 * @return The number of clauses
+	 */
+	public int getClauseCount()
+	{
+		return m_clauseCount;
+	}
+	
+	/**
+	 * Gets the largest variable read so far
+	 * @return The variable
+	 */
+	public int getVariableCount()
+	{
+		return m_variableCount;
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		m_channel.close();
+	}
+	
+	/**
+	 * Reads the problem line, whose first character has already been read
+	 * @throws IOException If the channel cannot be read
+	 */
+	protected void readHeader() throws IOException
+	{
+		int b = skipSpaces(read());
+		if (b != 'c' || read() != 'n' || read() != 'f')
+		{
+			throw new BooleanFormulaException("Invalid DIMACS header: only the cnf format is supported");
+		}
+		m_headerVariables = readInt(skipSpaces(read()));
+		m_headerClauses = readInt(skipSpaces(read()));
+		if (m_headerVariables < 0 || m_headerClauses < 0)
+		{
+			throw new BooleanFormulaException("Invalid DIMACS header: negative count");
+		}
+	}
+	
+	/**
+	 * Reads an integer
+	 * @param first The first character of the integer, already read
+	 * @return The integer
+	 * @throws IOException If the channel cannot be read
+	 */
+	protected int readInt(int first) throws IOException
+	{
+		boolean negative = first == '-';
+		int b = negative ? read() : first;
+		if (b < '0' || b > '9')
+		{
+			throw new BooleanFormulaException("Invalid DIMACS input: unexpected character " + describe(b));
+		}
+		long n = 0;
+		while (b >= '0' && b <= '9')
+		{
+			n = 10 * n + (b - '0');
+			if (n > Integer.MAX_VALUE)
+			{
+				throw new BooleanFormulaException("Invalid DIMACS input: number too large");
+			}
+			b = read();
+		}
+		if (b >= 0 && b != ' ' && b != '\t' && b != '\r' && b != '\n')
+		{
+			throw new BooleanFormulaException("Invalid DIMACS input: unexpected character " + describe(b));
+		}
+		return negative ? (int) -n : (int) n;
+	}
+	
+	/**
+	 * Skips spaces and tabs
+	 * @param b The current character
+	 * @return The first character that is not a space or a tab
+	 * @throws IOException If the channel cannot be read
+	 */
+	protected int skipSpaces(int b) throws IOException
+	{
+		while (b == ' ' || b == '\t')
+		{
+			b = read();
+		}
+		return b;
+	}
+	
+	/**
+	 * Skips the rest of the current line
+	 * @throws IOException If the channel cannot be read
+	 */
+	protected void skipLine() throws IOException
+	{
+		int b;
+		do
+		{
+			b = read();
+		} while (b >= 0 && b != '\n');
+	}
+	
+	/**
+	 * Reads the next byte, refilling the buffer from the channel if needed
+	 * @return The byte, or -1 at the end of the channel
+	 * @throws IOException If the channel cannot be read
+	 */
+	protected int read() throws IOException
+	{
+		if (!m_buffer.hasRemaining())
+		{
+			m_buffer.clear();
+			int n;
+			do
+			{
+				n = m_channel.read(m_buffer);
+			} while (n == 0);
+			m_buffer.flip();
+			if (n < 0)
+			{
+				return -1;
+			}
+		}
+		return m_buffer.get() & 0xFF;
+	}
+	
+	/**
+	 * Describes a character for an error message
+	 * @param b The character, or -1
+	 * @return The description
+	 */
+	protected static String describe(int b)
+	{
+		return b < 0 ? "end of input" : "'" + (char) b + "'";
+	}
+}
@@ -0,0 +1,540 @@
+/*
+    Simple manipulation of Boolean formulas
+    Copyright (C) 2020 Sylvain Hallé
+    
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+    
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package stev.booleans;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Writes clauses in DIMACS format to a byte channel, one clause at a time.
+ * Literals are formatted directly into a byte buffer, so that no string
+ * is created for each of them, and nothing else than the buffer is kept
+ * in memory: arbitrarily large CNFs can be written this way.
+ * <p>
+ * If the number of variables and clauses is known in advance, it can be
+ * given to {@link #writeHeader(int, int)} before the first clause.
+ * Otherwise, the writer reserves a fixed-width header at the start of the
+ * channel and fills it in when {@link #close()} is called; this requires
+ * the channel to be seekable, which is the case of the channel opened by
+ * {@link #DimacsWriter(Path)}.
+ */
+public class DimacsWriter implements Closeable
+{
+	/**
+	 * The width of each number in a header that is filled in on close
+	 */
+	protected static final int HEADER_WIDTH = 10;
+	
+	/**
+	 * The channel to write to
+	 */
+	/*@ non_null @*/ protected WritableByteChannel m_channel;
+	
+	/**
+	 * The bytes not yet written to the channel
+	 */
+	/*@ non_null @*/ protected ByteBuffer m_buffer;
+	
+	/**
+	 * The position of the reserved header in the channel, or -1 if the
+	 * header has been written with its final values or not at all
+	 */
+	protected long m_headerPosition = -1;
+	
+	/**
+	 * Whether a header has already been written
+	 */
+	protected boolean m_headerWritten = false;
+	
+	/**
+	 * Whether literals have been added since the last end of clause
+	 */
+	protected boolean m_openClause = false;
+	
+	/**
+	 * The number of clauses written so far
+	 */
+	protected int m_clauseCount = 0;
+	
+	/**
+	 * The largest variable seen so far
+	 */
+	protected int m_variableCount = 0;
+	
+	/**
+	 * Creates a writer on an existing channel
+	 * @param channel The channel. It is closed along with the writer.
+	 */
+	public DimacsWriter(/*@ non_null @*/ WritableByteChannel channel)
+	{
+		super();
+		m_channel = channel;
+		m_buffer = ByteBuffer.allocateDirect(1 << 16);
+	}
+	
+	/**
+	 * Creates a writer on a file, replacing its contents if it exists
+	 * @param path The path of the file
+	 * @throws IOException If the file cannot be opened
+	 */
+	public DimacsWriter(/*@ non_null @*/ Path path) throws IOException
+	{
+		this(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+	}
+	
+	/**
+	 * Writes a comment line. Comments must be written before the header or
+	 * between two clauses.
+	 * @param comment The comment; it must not contain line breaks
+	 * @throws IOException If the channel cannot be written to
+	 */
+	public void writeComment(/*@ non_null @*/ String comment) throws IOException
+	{
+		if (m_openClause)
+		{
+			throw new BooleanFormulaException("Cannot write a comment inside a clause");
+		}
+		byte[] bytes = ("c " + comment + "\n").getBytes(StandardCharsets.UTF_8);
+		for (int i = 0; i < bytes.length; i += m_buffer.capacity())
+		{
+			int len = Math.min(bytes.length - i, m_buffer.capacity());
+			reserve(len);
+			m_buffer.put(bytes, i, len);
+		}
+	}
+	
+	/**
+	 * Writes the problem line with its final values.
+	 * @param num_variables The number of variables
+	 * @param num_clauses The number of clauses
+	 * @throws IOException If the channel cannot be written to
+	 */
+	public void writeHeader(int num_variables, int num_clauses) throws IOException
+	{
+		if (m_headerWritten)
+		{
+			throw new BooleanFormulaException("The header has already been written");
+		}
+		m_headerWritten = true;
+		reserve(6 + 2 * 12);
+		putAscii("p cnf ");
+		putInt(num_variables);
+		m_buffer.put((byte) ' ');
+		putInt(num_clauses);
+		m_buffer.put((byte) '\n');
+	}
+	
+	/**
+	 * Adds a literal to the current clause
+	 * @param literal The literal, a non-zero integer
+	 * @throws IOException If the channel cannot be written to
+	 */
+	public void addLiteral(int literal) throws IOException
+	{
+		if (literal == 0)
+		{
+			throw new BooleanFormulaException("0 is not a valid literal");
+		}
+		if (!m_headerWritten)
+		{
+			reserveHeader();
+		}
+		reserve(12);
+		putInt(literal);
+		m_buffer.put((byte) ' ');
+		m_openClause = true;
+		int var = literal < 0 ? -literal : literal;
+		if (var > m_variableCount)
+		{
+			m_variableCount = var;
+		}
+	}
+	
+	/**
+	 * Ends the current clause. Calling this method without adding literals
+	 * first writes the empty clause.
+	 * @throws IOException If the channel cannot be written to
+	 */
+	public void endClause() throws IOException
+	{
+		if (!m_headerWritten)
+		{
+			reserveHeader();
+		}
+		reserve(2);
+		m_buffer.put((byte) '0');
+		m_buffer.put((byte) '\n');
+		m_openClause = false;
+		m_clauseCount++;
+	}
+	
+	/**
+	 * Writes a whole clause
+	 * @param clause The literals of the clause
+	 * @throws IOException If the channel cannot be written to
+	 */
+	public void addClause(/*@ non_null @*/ int ... clause) throws IOException
+	{
+		addClause(clause, 0, clause.length);
+	}
+	
+	/**
+	 * Writes a clause stored in a portion of an array
+	 * @param literals The array containing the literals
+	 * @param start The position of the first literal of the clause
+	 * @param length The number of literals in the clause
+	 * @throws IOException If the channel cannot be written to
+	 */
+	public void addClause(/*@ non_null @*/ int[] literals, int start, int length) throws IOException
+	{
+		for (int i = start; i < start + length; i++)
+		{
+			addLiteral(literals[i]);
+		}
+		endClause();
+	}
+	
+	/**
+	 * Writes all the clauses of a formula in conjunctive normal form. The
+	 * clauses are the same as those returned by {@link BooleanFormula#getClauses()},
+	 * but they are written one by one instead of being stored in an array.
+	 * @param cnf The formula
+	 * @throws IOException If the channel cannot be written to
+	 */
+	public void write(/*@ non_null @*/ BooleanFormula cnf) throws IOException
+	{
+		if (!cnf.isCnf())
+		{
+			throw new BooleanFormulaException("Formula is not in CNF");
+		}
+		if (cnf instanceof CnfFormula)
+		{
+			CnfFormula f = (CnfFormula) cnf;
+			for (int c = 0; c < f.size(); c++)
+			{
+				addClause(f.getLiterals(), f.getClauseStart(c), f.getClauseLength(c));
+			}
+			return;
+		}
+		Map<String,Integer> var_dict = BooleanFormula.getExportMap(cnf);
+		if (cnf instanceof And)
+		{
+			for (BooleanFormula clause : ((And) cnf).m_operands)
+			{
+				writeClause(clause, var_dict);
+			}
+		}
+		else
+		{
+			writeClause(cnf, var_dict);
+		}
+	}
+	
+	/**
+	 * Writes a single clause of a formula in CNF
+	 * @param clause The clause
+	 * @param var_dict The mapping between variable names and integers,
+	 * or <tt>null</tt> for registered variables
+	 * @throws IOException If the channel cannot be written to
+	 */
+	protected void writeClause(/*@ non_null @*/ BooleanFormula clause, Map<String,Integer> var_dict) throws IOException
+	{
+		if (clause instanceof Or)
+		{
+			for (BooleanFormula bf : ((Or) clause).m_operands)
+			{
+				addLiteral(toLiteral(bf, var_dict));
+			}
+		}
+		else
+		{
+			addLiteral(toLiteral(clause, var_dict));
+		}
+		endClause();
+	}
+	
+	/**
+	 * Gets the DIMACS literal corresponding to an atom
+	 * @param atom A variable or a negated variable
+	 * @param var_dict The mapping between variable names and integers,
+	 * or <tt>null</tt> for registered variables
+	 * @return The literal
+	 */
+	protected static int toLiteral(/*@ non_null @*/ BooleanFormula atom, Map<String,Integer> var_dict)
+	{
+		if (atom instanceof PropositionalVariable)
+		{
+			return ((PropositionalVariable) atom).getIndex(var_dict);
+		}
+		return -((PropositionalVariable) ((Not) atom).m_operand).getIndex(var_dict);
+	}
+	
+	/**
+	 * Reserves variable numbers 1 to <i>n</i>: they are counted in a
+	 * header filled in on close, and {@link #newVariable()} does not give
+	 * them
+	 * @param n The number of variables
+	 */
+	public void reserveVariables(int n)
+	{
+		if (n > m_variableCount)
+		{
+			m_variableCount = n;
+		}
+	}
+	
+	/**
+	 * Gets a new variable number, after all those written or reserved so
+	 * far
+	 * @return The number
+	 */
+	public int newVariable()
+	{
+		return ++m_variableCount;
+	}
+	
+	/**
+	 * Gets a view of this writer as a {@link ClauseSink}, so that an
+	 * encoder can write its clauses directly to the channel. Since a sink
+	 * does not throw checked exceptions, an error writing to the channel
+	 * is thrown as an {@link UncheckedIOException}.
+	 * @return The sink
+	 */
+	/*@ non_null @*/ public ClauseSink asClauseSink()
+	{
+		return new ClauseSink()
+		{
+			@Override
+			public void addLiteral(int literal)
+			{
+				try
+				{
+					DimacsWriter.this.addLiteral(literal);
+				}
+				catch (IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			}
+			
+			@Override
+			public void endClause()
+			{
+				try
+				{
+					DimacsWriter.this.endClause();
+				}
+				catch (IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			}
+			
+			@Override
+			public void reserveVariables(int n)
+			{
+				DimacsWriter.this.reserveVariables(n);
+			}
+			
+			@Override
+			public int newVariable()
+			{
+				return DimacsWriter.this.newVariable();
+			}
+		};
+	}
+	
+	/**
+	 * Gets the number of clauses written so far
+	 * @return The number of clauses
+	 */
+	public int getClauseCount()
+	{
+		return m_clauseCount;
+	}
+	
+	/**
+	 * Gets the largest variable written so far
+	 * @return The variable
+	 */
+	public int getVariableCount()
+	{
+		return m_variableCount;
+	}
+	
+	/**
+	 * Writes the remaining bytes to the channel, fills in the reserved
+	 * header if there is one, and closes the channel.
+	 * @throws IOException If the channel cannot be written to
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			if (m_openClause)
+			{
+				endClause();
+			}
+			if (!m_headerWritten)
+			{
+				writeHeader(0, 0);
+			}
+			flush();
+			if (m_headerPosition >= 0)
+			{
+				SeekableByteChannel channel = (SeekableByteChannel) m_channel;
+				long end = channel.position();
+				channel.position(m_headerPosition);
+				m_buffer.clear();
+				putHeader(m_variableCount, m_clauseCount);
+				flush();
+				channel.position(end);
+			}
+		}
+		finally
+		{
+			m_channel.close();
+		}
+	}
+	
+	/**
+	 * Reserves room for a header that will be filled in on close
+	 * @throws IOException If the channel cannot be written to
+	 */
+	protected void reserveHeader() throws IOException
+	{
+		if (!(m_channel instanceof SeekableByteChannel))
+		{
+			throw new BooleanFormulaException("The header must be written first when the channel is not seekable");
+		}
+		flush();
+		m_headerWritten = true;
+		m_headerPosition = ((SeekableByteChannel) m_channel).position();
+		putHeader(0, 0);
+	}
+	
+	/**
+	 * Puts a header whose numbers are padded to a fixed width
+	 * @param num_variables The number of variables
+	 * @param num_clauses The number of clauses
+	 */
+	protected void putHeader(int num_variables, int num_clauses)
+	{
+		putAscii("p cnf ");
+		putPadded(num_variables);
+		m_buffer.put((byte) ' ');
+		putPadded(num_clauses);
+		m_buffer.put((byte) '\n');
+	}
+	
+	/**
+	 * Puts a non-negative number followed by spaces up to {@link #HEADER_WIDTH}
+	 * characters
+	 * @param n The number
+	 */
+	protected void putPadded(int n)
+	{
+		int start = m_buffer.position();
+		putInt(n);
+		while (m_buffer.position() - start < HEADER_WIDTH)
+		{
+			m_buffer.put((byte) ' ');
+		}
+	}
+	
+	/**
+	 * Puts the decimal digits of an integer in the buffer, which must have
+	 * room for at least 11 bytes
+	 * @param n The integer
+	 */
+	protected void putInt(int n)
+	{
+		if (n == Integer.MIN_VALUE)
+		{
+			putAscii(Integer.toString(n));
+			return;
+		}
+		if (n < 0)
+		{
+			m_buffer.put((byte) '-');
+			n = -n;
+		}
+		int digits = 1;
+		for (int p = n; p >= 10; p /= 10)
+		{
+			digits++;
+		}
+		int end = m_buffer.position() + digits;
+		for (int i = end - 1; i >= end - digits; i--)
+		{
+			m_buffer.put(i, (byte) ('0' + n % 10));
+			n /= 10;
+		}
+		m_buffer.position(end);
+	}
+	
+	/**
+	 * Puts a string made only of ASCII characters in the buffer
+	 * @param s The string
+	 */
+	protected void putAscii(/*@ non_null @*/ String s)
+	{
+		for (int i = 0; i < s.length(); i++)
+		{
+			m_buffer.put((byte) s.charAt(i));
+		}
+	}
+	
+	/**
+	 * Makes sure the buffer has room for a number of bytes, writing its
+	 * contents to the channel if needed
+	 * @param n The number of bytes
+	 * @throws IOException If the channel cannot be written to
+	 */
+	protected void reserve(int n) throws IOException
+	{
+		if (m_buffer.remaining() < n)
+		{
+			flush();
+		}
+	}
+	
+	/**
+	 * Writes the contents of the buffer to the channel
+	 * @throws IOException If the channel cannot be written to
+	 */
+	protected void flush() throws IOException
+	{
+		m_buffer.flip();
+		while (m_buffer.hasRemaining())
+		{
+			m_channel.write(m_buffer);
+		}
+		m_buffer.clear();
+	}
+}
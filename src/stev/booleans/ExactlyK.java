@@ -0,0 +1,81 @@
+/*
+    Simple manipulation of Boolean formulas
+    Copyright (C) 2020 Sylvain Hallé
+    
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+    
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package stev.booleans;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Constraint stating that exactly <i>k</i> of its operands are true.
+ */
+public class ExactlyK extends Cardinality
+{
+	/**
+	 * Creates a new constraint
+	 * @param k The bound, between 0 and the number of operands
+	 * @param operands The operands, at least one
+	 */
+	public ExactlyK(int k, /*@ non_null @*/ List<BooleanFormula> operands)
+	{
+		super(k, operands);
+	}
+	
+	/**
+	 * Creates a new constraint
+	 * @param k The bound, between 0 and the number of operands
+	 * @param operands The operands, at least one
+	 */
+	public ExactlyK(int k, /*@ non_null @*/ BooleanFormula ... operands)
+	{
+		super(k, Arrays.asList(operands));
+	}
+	
+	@Override
+	public void encode(/*@ non_null @*/ int[] literals, /*@ non_null @*/ ClauseSink sink)
+	{
+		m_encoding.exactly(literals, literals.length, m_bound, sink);
+	}
+	
+	@Override
+	protected void addExpansion(/*@ non_null @*/ List<BooleanFormula> clauses)
+	{
+		// At most k, then at least k
+		addSubsetClauses(negatedOperands(), m_bound + 1, clauses);
+		addSubsetClauses(m_operands, m_operands.size() - m_bound + 1, clauses);
+	}
+	
+	@Override
+	protected ExactlyK withOperands(/*@ non_null @*/ List<BooleanFormula> operands)
+	{
+		ExactlyK c = new ExactlyK(m_bound, operands);
+		c.m_encoding = m_encoding;
+		return c;
+	}
+	
+	@Override
+	protected boolean holds(int count)
+	{
+		return count == m_bound;
+	}
+	
+	@Override
+	protected String getSymbol()
+	{
+		return "=";
+	}
+}
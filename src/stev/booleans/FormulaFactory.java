@@ -0,0 +1,364 @@
+/*
+    Simple manipulation of Boolean formulas
+    Copyright (C) 2020 Sylvain Hallé
+    
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+    
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package stev.booleans;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Creates formulas whose structurally equal subformulas are a single
+ * shared instance ("hash-consing"). Asking the factory twice for
+ * <tt>not(x)</tt>, or for the conjunction of the same operands in the
+ * same order, returns the same object. Comparing two formulas created
+ * by the same factory therefore amounts to comparing references, and
+ * a large formula with many repeated subformulas is stored as a graph
+ * with no duplicate nodes.
+ * <p>
+ * Since they may be shared, formulas returned by a factory must not be
+ * modified with methods such as {@link NaryConnective#addOperand(BooleanFormula)}
+ * or {@link Not#setOperand(BooleanFormula)}. The factory keeps every node
+ * it creates for as long as it is itself reachable.
+ * <p>
+ * Using a factory is optional. The conversions into CNF build new
+ * formulas directly, except
+ * {@link BooleanFormula#toCnf(BooleanFormula, FormulaFactory)}, which
+ * builds the normalized formula through a factory.
+ */
+public class FormulaFactory
+{
+	/**
+	 * The registry giving the variables, or <tt>null</tt> if variables are
+	 * created directly
+	 */
+	protected final VariableRegistry m_registry;
+	
+	/**
+	 * The variables, when no registry is used
+	 */
+	/*@ non_null @*/ protected final Map<String,PropositionalVariable> m_variables;
+	
+	/**
+	 * The unique instance of each connective node, indexed by its type
+	 * and (unique) operands
+	 */
+	/*@ non_null @*/ protected final Map<Node,BooleanFormula> m_nodes;
+	
+	/**
+	 * Creates a factory whose variables are created directly
+	 */
+	public FormulaFactory()
+	{
+		this(null);
+	}
+	
+	/**
+	 * Creates a factory whose variables come from a registry
+	 * @param registry The registry, or <tt>null</tt>
+	 */
+	public FormulaFactory(VariableRegistry registry)
+	{
+		super();
+		m_registry = registry;
+		m_variables = new HashMap<String,PropositionalVariable>();
+		m_nodes = new HashMap<Node,BooleanFormula>();
+	}
+	
+	/**
+	 * Gets the variable with a given name
+	 * @param var_name The name
+	 * @return The variable
+	 */
+	/*@ non_null @*/ public PropositionalVariable variable(/*@ non_null @*/ String var_name)
+	{
+		if (m_registry != null)
+		{
+			return m_registry.get(var_name);
+		}
+		PropositionalVariable p = m_variables.get(var_name);
+		if (p == null)
+		{
+			p = new PropositionalVariable(var_name);
+			m_variables.put(var_name, p);
+		}
+		return p;
+	}
+	
+	/**
+	 * Gets the negation of a formula
+	 * @param f The formula, created by this factory
+	 * @return The negation
+	 */
+	/*@ non_null @*/ public Not not(/*@ non_null @*/ BooleanFormula f)
+	{
+		Node key = new Node(Not.class, f);
+		BooleanFormula n = m_nodes.get(key);
+		if (n == null)
+		{
+			n = new Not(f);
+			m_nodes.put(key, n);
+		}
+		return (Not) n;
+	}
+	
+	/**
+	 * Gets the conjunction of formulas. Repeated operands are only kept
+	 * once, as with {@link NaryConnective#addOperand(BooleanFormula)}.
+	 * @param operands The operands, created by this factory
+	 * @return The conjunction
+	 */
+	/*@ non_null @*/ public And and(/*@ non_null @*/ BooleanFormula ... operands)
+	{
+		return and(Arrays.asList(operands));
+	}
+	
+	/**
+	 * Gets the conjunction of formulas.
+	 * @param operands The operands, created by this factory
+	 * @return The conjunction
+	 */
+	/*@ non_null @*/ public And and(/*@ non_null @*/ List<BooleanFormula> operands)
+	{
+		BooleanFormula[] ops = distinct(operands);
+		Node key = new Node(And.class, ops);
+		BooleanFormula n = m_nodes.get(key);
+		if (n == null)
+		{
+			n = new And(ops);
+			m_nodes.put(key, n);
+		}
+		return (And) n;
+	}
+	
+	/**
+	 * Gets the disjunction of formulas. Repeated operands are only kept
+	 * once, as with {@link NaryConnective#addOperand(BooleanFormula)}.
+	 * @param operands The operands, created by this factory
+	 * @return The disjunction
+	 */
+	/*@ non_null @*/ public Or or(/*@ non_null @*/ BooleanFormula ... operands)
+	{
+		return or(Arrays.asList(operands));
+	}
+	
+	/**
+	 * Gets the disjunction of formulas.
+	 * @param operands The operands, created by this factory
+	 * @return The disjunction
+	 */
+	/*@ non_null @*/ public Or or(/*@ non_null @*/ List<BooleanFormula> operands)
+	{
+		BooleanFormula[] ops = distinct(operands);
+		Node key = new Node(Or.class, ops);
+		BooleanFormula n = m_nodes.get(key);
+		if (n == null)
+		{
+			n = new Or(ops);
+			m_nodes.put(key, n);
+		}
+		return (Or) n;
+	}
+	
+	/**
+	 * Gets the implication between two formulas
+	 * @param left The left operand, created by this factory
+	 * @param right The right operand, created by this factory
+	 * @return The implication
+	 */
+	/*@ non_null @*/ public Implies implies(/*@ non_null @*/ BooleanFormula left, /*@ non_null @*/ BooleanFormula right)
+	{
+		Node key = new Node(Implies.class, left, right);
+		BooleanFormula n = m_nodes.get(key);
+		if (n == null)
+		{
+			n = new Implies(left, right);
+			m_nodes.put(key, n);
+		}
+		return (Implies) n;
+	}
+	
+	/**
+	 * Gets the equivalence between two formulas
+	 * @param left The left operand, created by this factory
+	 * @param right The right operand, created by this factory
+	 * @return The equivalence
+	 */
+	/*@ non_null @*/ public Equivalence equivalence(/*@ non_null @*/ BooleanFormula left, /*@ non_null @*/ BooleanFormula right)
+	{
+		Node key = new Node(Equivalence.class, left, right);
+		BooleanFormula n = m_nodes.get(key);
+		if (n == null)
+		{
+			n = new Equivalence(left, right);
+			m_nodes.put(key, n);
+		}
+		return (Equivalence) n;
+	}
+	
+	/**
+	 * Gets the formula of this factory that is structurally equal to an
+	 * arbitrary formula. This can be used to remove the duplicate
+	 * subformulas of a formula produced by another method, such as
+	 * {@link BooleanFormula#toCnf(BooleanFormula)}.
+	 * @param phi The formula
+	 * @return The shared formula
+	 */
+	/*@ non_null @*/ public BooleanFormula intern(/*@ non_null @*/ BooleanFormula phi)
+	{
+		return intern(phi, new IdentityHashMap<BooleanFormula,BooleanFormula>());
+	}
+	
+	/**
+	 * Gets the number of distinct connective nodes created by this factory
+	 * @return The number of nodes, not counting variables
+	 */
+	public int size()
+	{
+		return m_nodes.size();
+	}
+	
+	/**
+	 * Recursively interns a formula
+	 * @param phi The formula
+	 * @param done The nodes of the input already interned, so that a
+	 * subformula shared in the input is only visited once
+	 * @return The shared formula
+	 */
+	/*@ non_null @*/ protected BooleanFormula intern(/*@ non_null @*/ BooleanFormula phi, /*@ non_null @*/ Map<BooleanFormula,BooleanFormula> done)
+	{
+		BooleanFormula f = done.get(phi);
+		if (f != null)
+		{
+			return f;
+		}
+		if (phi instanceof PropositionalVariable)
+		{
+			f = variable(((PropositionalVariable) phi).m_variableName);
+		}
+		else if (phi instanceof Not)
+		{
+			f = not(intern(((Not) phi).m_operand, done));
+		}
+		else if (phi instanceof NaryConnective)
+		{
+			List<BooleanFormula> ops = new ArrayList<BooleanFormula>(((NaryConnective) phi).m_operands.size());
+			for (BooleanFormula op : ((NaryConnective) phi).m_operands)
+			{
+				ops.add(intern(op, done));
+			}
+			f = phi instanceof And ? and(ops) : or(ops);
+		}
+		else if (phi instanceof Implies)
+		{
+			f = implies(intern(((Implies) phi).m_left, done), intern(((Implies) phi).m_right, done));
+		}
+		else if (phi instanceof Equivalence)
+		{
+			f = equivalence(intern(((Equivalence) phi).m_left, done), intern(((Equivalence) phi).m_right, done));
+		}
+		else if (phi instanceof Cardinality)
+		{
+			// Not shared: only the operands are interned
+			List<BooleanFormula> ops = new ArrayList<BooleanFormula>(((Cardinality) phi).m_operands.size());
+			for (BooleanFormula op : ((Cardinality) phi).m_operands)
+			{
+				ops.add(intern(op, done));
+			}
+			f = ((Cardinality) phi).withOperands(ops);
+		}
+		else
+		{
+			throw new BooleanFormulaException("Cannot intern formula of type " + phi.getClass().getSimpleName());
+		}
+		done.put(phi, f);
+		return f;
+	}
+	
+	/**
+	 * Removes repeated operands, keeping the first occurrence of each
+	 * @param operands The operands
+	 * @return The distinct operands, in order
+	 */
+	/*@ non_null @*/ protected static BooleanFormula[] distinct(/*@ non_null @*/ List<BooleanFormula> operands)
+	{
+		// Shared nodes are equal only if they are the same object, and
+		// variables compare by name: a hash set finds duplicates directly
+		Set<BooleanFormula> set = new LinkedHashSet<BooleanFormula>(operands);
+		return set.toArray(new BooleanFormula[set.size()]);
+	}
+	
+	/**
+	 * Key of a connective node in the table: its type and the identity of
+	 * its operands, which are themselves unique. The hash code is computed
+	 * once, when the key is created.
+	 */
+	protected static final class Node
+	{
+		/*@ non_null @*/ private final Class<?> m_type;
+		
+		/*@ non_null @*/ private final BooleanFormula[] m_operands;
+		
+		private final int m_hashCode;
+		
+		Node(/*@ non_null @*/ Class<?> type, /*@ non_null @*/ BooleanFormula ... operands)
+		{
+			super();
+			m_type = type;
+			m_operands = operands;
+			int h = type.hashCode();
+			for (BooleanFormula op : operands)
+			{
+				h = 31 * h + op.hashCode();
+			}
+			m_hashCode = h;
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return m_hashCode;
+		}
+		
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Node))
+			{
+				return false;
+			}
+			Node n = (Node) o;
+			if (n.m_hashCode != m_hashCode || n.m_type != m_type || n.m_operands.length != m_operands.length)
+			{
+				return false;
+			}
+			for (int i = 0; i < m_operands.length; i++)
+			{
+				if (!n.m_operands[i].equals(m_operands[i]))
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -18,13 +18,29 @@
 package stev.booleans;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public abstract class NaryConnective extends BooleanFormula
 {
 	/*@ non_null @*/ protected List<BooleanFormula> m_operands;
 	
+	/**
+	 * The same operands as {@link #m_operands}, used to check membership
+	 * in constant time. It is only created once the connective has enough
+	 * operands for a linear search to become costly, and set back to
+	 * <tt>null</tt> when operands are added without being checked.
+	 */
+	protected Set<BooleanFormula> m_operandSet = null;
+	
+	/**
+	 * Number of operands from which {@link #m_operandSet} is used
+	 */
+	protected static final int SET_THRESHOLD = 8;
+	
 	/**
 	 * Creates a new empty connective.
 	 */
@@ -60,17 +76,55 @@ public abstract class NaryConnective extends BooleanFormula
 	}
 	
 	/**
-	 * Adds an operand to the connective
+	 * Adds an operand to the connective, unless it is already present
 	 * @param f The operand
 	 */
 	public void addOperand(/*@ non_null @*/ BooleanFormula f)
 	{
-		if (!m_operands.contains(f))
+		if (m_operandSet == null)
+		{
+			if (m_operands.size() < SET_THRESHOLD)
+			{
+				if (!m_operands.contains(f))
+				{
+					m_operands.add(f);
+				}
+				return;
+			}
+			m_operandSet = new HashSet<BooleanFormula>(m_operands);
+		}
+		if (m_operandSet.add(f))
 		{
 			m_operands.add(f);
 		}
 	}
 	
+	/**
+	 * Adds operands to the connective, skipping those that are already
+	 * present
+	 * @param operands The operands
+	 */
+	public void addOperands(/*@ non_null @*/ Collection<? extends BooleanFormula> operands)
+	{
+		for (BooleanFormula f : operands)
+		{
+			addOperand(f);
+		}
+	}
+	
+	/**
+	 * Adds operands to the connective without checking whether they are
+	 * already present. The caller guarantees that the operands are
+	 * distinct from each other and from the current operands; this makes
+	 * building a connective with many operands linear.
+	 * @param operands The operands
+	 */
+	public void addDistinctOperands(/*@ non_null @*/ Collection<? extends BooleanFormula> operands)
+	{
+		m_operands.addAll(operands);
+		m_operandSet = null;
+	}
+	
 	@Override
 	protected void setVariablesMap(Map<String, Integer> map)
 	{
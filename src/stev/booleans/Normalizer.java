@@ -0,0 +1,380 @@
+/*
+    Simple manipulation of Boolean formulas
+    Copyright (C) 2020 Sylvain Hallé
+    
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+    
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package stev.booleans;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Puts a formula in flattened negation normal form in a single traversal:
+ * implications and equivalences are replaced by conjunctions and
+ * disjunctions, negations are pushed down to the variables, and nested
+ * connectives of the same kind are merged. This does in one pass what
+ * {@link BooleanFormula#keepAndOrNot()}, {@link BooleanFormula#pushNegations()}
+ * and {@link BooleanFormula#flatten()} do in three.
+ * <p>
+ * The traversal uses an explicit stack instead of recursion, so that
+ * formulas of any depth can be normalized. A subformula that needs no
+ * change is returned as is rather than copied, and a subformula that
+ * appears several times in the input (for example in a formula built
+ * by a {@link FormulaFactory}) is only normalized once for each polarity.
+ * When the normalizer is given a factory, the connectives it builds come
+ * from that factory: if the input was also built by the factory, the
+ * result has no duplicate subformulas either.
+ * Along the way, the normalizer records the names of the variables it
+ * encounters.
+ */
+class Normalizer
+{
+	/**
+	 * The result for each subformula already visited without negation
+	 */
+	/*@ non_null @*/ protected final Map<BooleanFormula,BooleanFormula> m_positive;
+	
+	/**
+	 * The result for each subformula already visited under a negation
+	 */
+	/*@ non_null @*/ protected final Map<BooleanFormula,BooleanFormula> m_negative;
+	
+	/**
+	 * The names of the variables encountered
+	 */
+	/*@ non_null @*/ protected final Set<String> m_names;
+	
+	/**
+	 * Whether a variable coming from a {@link VariableRegistry} was
+	 * encountered
+	 */
+	protected boolean m_registered = false;
+	
+	/**
+	 * The factory building the connectives of the result, or <tt>null</tt>
+	 * to create them directly
+	 */
+	protected final FormulaFactory m_factory;
+	
+	/**
+	 * Creates a new normalizer
+	 */
+	Normalizer()
+	{
+		this(null);
+	}
+	
+	/**
+	 * Creates a new normalizer whose connectives come from a factory
+	 * @param factory The factory, or <tt>null</tt> to create them directly
+	 */
+	Normalizer(FormulaFactory factory)
+	{
+		super();
+		m_factory = factory;
+		m_positive = new IdentityHashMap<BooleanFormula,BooleanFormula>();
+		m_negative = new IdentityHashMap<BooleanFormula,BooleanFormula>();
+		m_names = new HashSet<String>();
+	}
+	
+	/**
+	 * A connective waiting for the normalization of its operands
+	 */
+	protected static class Frame
+	{
+		/**
+		 * The input subformula
+		 */
+		BooleanFormula m_node;
+		
+		/**
+		 * Whether the subformula is under a negation
+		 */
+		boolean m_negated;
+		
+		/**
+		 * Whether the result is a conjunction (otherwise a disjunction)
+		 */
+		boolean m_conjunction;
+		
+		/**
+		 * The operands of the result, before normalization
+		 */
+		BooleanFormula[] m_children;
+		
+		/**
+		 * Whether each operand is under a negation
+		 */
+		boolean[] m_childNegated;
+		
+		/**
+		 * The normalized operands
+		 */
+		BooleanFormula[] m_results;
+		
+		/**
+		 * The index of the next operand to normalize
+		 */
+		int m_next = 0;
+	}
+	
+	/**
+	 * Normalizes a formula
+	 * @param phi The formula
+	 * @return The formula in flattened negation normal form, made only of
+	 * {@link And}, {@link Or}, and {@link Not} applied to variables
+	 */
+	/*@ non_null @*/ BooleanFormula normalize(/*@ non_null @*/ BooleanFormula phi)
+	{
+		BooleanFormula result = leaf(phi, false);
+		if (result != null)
+		{
+			return result;
+		}
+		Deque<Frame> stack = new ArrayDeque<Frame>();
+		stack.push(newFrame(phi, false));
+		while (true)
+		{
+			Frame top = stack.peek();
+			if (top.m_next < top.m_children.length)
+			{
+				int i = top.m_next++;
+				BooleanFormula child = top.m_children[i];
+				boolean negated = top.m_childNegated[i];
+				BooleanFormula r = leaf(child, negated);
+				if (r != null)
+				{
+					top.m_results[i] = r;
+				}
+				else
+				{
+					stack.push(newFrame(child, negated));
+				}
+				continue;
+			}
+			stack.pop();
+			result = build(top);
+			(top.m_negated ? m_negative : m_positive).put(top.m_node, result);
+			Frame parent = stack.peek();
+			if (parent == null)
+			{
+				return result;
+			}
+			parent.m_results[parent.m_next - 1] = result;
+		}
+	}
+	
+	/**
+	 * Gets the names of the variables encountered so far
+	 * @return The set of names
+	 */
+	/*@ non_null @*/ Set<String> getNames()
+	{
+		return m_names;
+	}
+	
+	/**
+	 * Determines if a variable coming from a registry was encountered
+	 * @return <tt>true</tt> if so
+	 */
+	boolean hasRegisteredVariables()
+	{
+		return m_registered;
+	}
+	
+	/**
+	 * Gets the result for a subformula that does not need a frame: a
+	 * literal, possibly under several negations, or a connective that has
+	 * already been normalized with the same polarity
+	 * @param phi The subformula
+	 * @param negated Whether the subformula is under a negation
+	 * @return The result, or <tt>null</tt> if the subformula needs a frame
+	 */
+	protected BooleanFormula leaf(/*@ non_null @*/ BooleanFormula phi, boolean negated)
+	{
+		BooleanFormula f = phi;
+		boolean neg = negated;
+		while (f instanceof Not)
+		{
+			f = ((Not) f).m_operand;
+			neg = !neg;
+		}
+		Map<BooleanFormula,BooleanFormula> done = neg ? m_negative : m_positive;
+		BooleanFormula r = done.get(f);
+		if (r != null || !(f instanceof PropositionalVariable))
+		{
+			return r;
+		}
+		PropositionalVariable p = (PropositionalVariable) f;
+		m_names.add(p.m_variableName);
+		m_registered |= p.m_id > 0;
+		if (!neg)
+		{
+			return p;
+		}
+		if (!negated && phi instanceof Not && ((Not) phi).m_operand == p)
+		{
+			// Already a negated variable
+			r = phi;
+		}
+		else
+		{
+			r = not(p);
+		}
+		done.put(p, r);
+		return r;
+	}
+	
+	/**
+	 * Creates the frame of a connective
+	 * @param phi The connective, possibly under several negations
+	 * @param negated Whether the connective is under a negation
+	 * @return The frame
+	 */
+	/*@ non_null @*/ protected Frame newFrame(/*@ non_null @*/ BooleanFormula phi, boolean negated)
+	{
+		Frame fr = new Frame();
+		BooleanFormula f = phi;
+		boolean neg = negated;
+		while (f instanceof Not)
+		{
+			f = ((Not) f).m_operand;
+			neg = !neg;
+		}
+		if (f instanceof CnfFormula)
+		{
+			f = ((CnfFormula) f).toTree();
+		}
+		fr.m_node = f;
+		fr.m_negated = neg;
+		if (f instanceof And || f instanceof Or)
+		{
+			// De Morgan: a negated conjunction is a disjunction, and vice versa
+			fr.m_conjunction = (f instanceof And) != neg;
+			List<BooleanFormula> ops = ((NaryConnective) f).m_operands;
+			fr.m_children = ops.toArray(new BooleanFormula[ops.size()]);
+			fr.m_childNegated = new boolean[ops.size()];
+			if (neg)
+			{
+				Arrays.fill(fr.m_childNegated, true);
+			}
+		}
+		else if (f instanceof Implies)
+		{
+			// a -> b is !a | b, and its negation is a & !b
+			BooleanFormula a = ((Implies) f).m_left;
+			BooleanFormula b = ((Implies) f).m_right;
+			fr.m_conjunction = neg;
+			fr.m_children = new BooleanFormula[] {a, b};
+			fr.m_childNegated = new boolean[] {!neg, neg};
+		}
+		else if (f instanceof Equivalence)
+		{
+			// a <-> b is (!a | b) & (a | !b), and its negation is
+			// (a | b) & (!a | !b)
+			BooleanFormula a = ((Equivalence) f).m_left;
+			BooleanFormula b = ((Equivalence) f).m_right;
+			fr.m_conjunction = true;
+			if (neg)
+			{
+				fr.m_children = new BooleanFormula[] {or(a, b), or(not(a), not(b))};
+			}
+			else
+			{
+				fr.m_children = new BooleanFormula[] {or(not(a), b), or(a, not(b))};
+			}
+			fr.m_childNegated = new boolean[2];
+		}
+		else if (f instanceof Cardinality)
+		{
+			// Replaced by its expansion, itself normalized as a single operand
+			fr.m_conjunction = !neg;
+			fr.m_children = new BooleanFormula[] {((Cardinality) f).expand()};
+			fr.m_childNegated = new boolean[] {neg};
+		}
+		else
+		{
+			throw new BooleanFormulaException("Unknown connective: " + f);
+		}
+		fr.m_results = new BooleanFormula[fr.m_children.length];
+		return fr;
+	}
+	
+	/**
+	 * Builds the result of a frame once all its operands are normalized
+	 * @param fr The frame
+	 * @return The result
+	 */
+	/*@ non_null @*/ protected BooleanFormula build(/*@ non_null @*/ Frame fr)
+	{
+		boolean unchanged = !fr.m_negated && (fr.m_node instanceof And || fr.m_node instanceof Or);
+		List<BooleanFormula> ops = new ArrayList<BooleanFormula>(fr.m_results.length);
+		for (int i = 0; i < fr.m_results.length; i++)
+		{
+			BooleanFormula r = fr.m_results[i];
+			if (fr.m_conjunction ? r instanceof And : r instanceof Or)
+			{
+				// Merge nested connectives of the same kind
+				ops.addAll(((NaryConnective) r).m_operands);
+				unchanged = false;
+			}
+			else
+			{
+				ops.add(r);
+				unchanged &= r == fr.m_children[i];
+			}
+		}
+		if (ops.size() == 1)
+		{
+			return ops.get(0);
+		}
+		if (unchanged)
+		{
+			return fr.m_node;
+		}
+		if (m_factory != null)
+		{
+			return fr.m_conjunction ? m_factory.and(ops) : m_factory.or(ops);
+		}
+		return fr.m_conjunction ? new And(ops) : new Or(ops);
+	}
+	
+	/**
+	 * Creates a negation, through the factory if there is one
+	 * @param f The operand
+	 * @return The negation
+	 */
+	/*@ non_null @*/ protected Not not(/*@ non_null @*/ BooleanFormula f)
+	{
+		return m_factory == null ? new Not(f) : m_factory.not(f);
+	}
+	
+	/**
+	 * Creates a disjunction, through the factory if there is one
+	 * @param operands The operands
+	 * @return The disjunction
+	 */
+	/*@ non_null @*/ protected Or or(/*@ non_null @*/ BooleanFormula ... operands)
+	{
+		return m_factory == null ? new Or(operands) : m_factory.or(operands);
+	}
+}
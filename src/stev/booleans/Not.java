@@ -50,8 +50,7 @@ public class Not extends BooleanFormula
 	@Override
 	public int[][] getClauses()
 	{
-		Map<String,Integer> var_dict = getVariablesMap();
-		int[] clause = toClause(var_dict);
+		int[] clause = toClause(getExportMap(this));
 		int[][] clauses = new int[1][];
 		clauses[0] = clause;
 		return clauses;
@@ -68,8 +67,7 @@ public class Not extends BooleanFormula
 			throw new BooleanFormulaException("Formula is not in CNF");
 		}
 		PropositionalVariable p = (PropositionalVariable) m_operand;
-		int index = var_dict.get(p.m_variableName);
-		return new int[] {-index};
+		return new int[] {-p.getIndex(var_dict)};
 	}
 	
 	@Override
@@ -58,8 +58,7 @@ public class Or extends NaryConnective
 	@Override
 	public int[][] getClauses()
 	{
-		Map<String,Integer> var_dict = getVariablesMap();
-		int[] clause = toClause(var_dict);
+		int[] clause = toClause(getExportMap(this));
 		int[][] clauses = new int[1][];
 		clauses[0] = clause;
 		return clauses;
@@ -79,12 +78,12 @@ public class Or extends NaryConnective
 			if (bf instanceof PropositionalVariable)
 			{
 				PropositionalVariable p = (PropositionalVariable) bf;
-				clause[i] = var_dict.get(p.m_variableName);
+				clause[i] = p.getIndex(var_dict);
 			}
 			else if (bf instanceof Not && ((Not) bf).m_operand instanceof PropositionalVariable)
 			{
 				PropositionalVariable p = (PropositionalVariable) ((Not) bf).m_operand;
-				clause[i] = -var_dict.get(p.m_variableName);
+				clause[i] = -p.getIndex(var_dict);
 			}
 			else
 			{
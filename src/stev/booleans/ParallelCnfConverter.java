@@ -0,0 +1,158 @@
+/*
+    Simple manipulation of Boolean formulas
+    Copyright (C) 2020 Sylvain Hallé
+    
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+    
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package stev.booleans;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Converts a large conjunction into CNF on several threads. The operands
+ * of the conjunction are independent: each one is converted by
+ * {@link BooleanFormula#toCnfRecursive(BooleanFormula)} in a fork/join
+ * task, and the clauses obtained are then simplified the same way. The
+ * results are stored by position and put together in the order of the
+ * operands, so the output is exactly the one of
+ * {@link BooleanFormula#toCnf(BooleanFormula)}, whatever the number of
+ * threads.
+ */
+class ParallelCnfConverter
+{
+	/**
+	 * Number of operands below which a range is not split any further
+	 */
+	protected static final int GRAIN = 256;
+	
+	/**
+	 * The pool running the tasks
+	 */
+	/*@ non_null @*/ protected final ForkJoinPool m_pool;
+	
+	/**
+	 * Creates a new converter
+	 * @param pool The pool running the tasks
+	 */
+	ParallelCnfConverter(/*@ non_null @*/ ForkJoinPool pool)
+	{
+		super();
+		m_pool = pool;
+	}
+	
+	/**
+	 * Converts a formula in negation normal form into CNF, then simplifies
+	 * it as {@link BooleanFormula#simplify(BooleanFormula)} does
+	 * @param n_phi The formula
+	 * @return The simplified formula in CNF, or <tt>null</tt> if it is a
+	 * tautology
+	 */
+	BooleanFormula convert(/*@ non_null @*/ BooleanFormula n_phi)
+	{
+		if (!(n_phi instanceof And) || ((And) n_phi).m_operands.size() <= GRAIN)
+		{
+			return BooleanFormula.simplify(BooleanFormula.toCnfRecursive(n_phi));
+		}
+		// Same as the And case of toCnfRecursive, with the operands
+		// converted and flattened in parallel
+		final List<BooleanFormula> operands = BooleanFormula.distinctOperands((And) n_phi);
+		final BooleanFormula[] flattened = new BooleanFormula[operands.size()];
+		// Each range of operands has its own cache; the output does not
+		// depend on what they contain
+		final CnfCache cache = new CnfCache(n_phi, CnfCache.DEFAULT_CAPACITY);
+		m_pool.invoke(new RangeTask(0, flattened.length, (from, to) -> {
+			CnfCache range_cache = new CnfCache(cache);
+			for (int i = from; i < to; i++)
+			{
+				flattened[i] = BooleanFormula.toCnfRecursive(operands.get(i), range_cache).flatten();
+			}
+		}));
+		BooleanFormula cnf = BooleanFormula.conjunction(Arrays.asList(flattened));
+		if (!(cnf instanceof And))
+		{
+			return BooleanFormula.simplify(cnf);
+		}
+		// Same as the And case of simplify, with the clauses simplified in
+		// parallel
+		final List<BooleanFormula> clauses = ((And) cnf).m_operands;
+		final BooleanFormula[] simplified = new BooleanFormula[clauses.size()];
+		m_pool.invoke(new RangeTask(0, simplified.length, (from, to) -> {
+			for (int i = from; i < to; i++)
+			{
+				simplified[i] = BooleanFormula.simplifyOperand(clauses.get(i));
+			}
+		}));
+		return BooleanFormula.joinSimplified(Arrays.asList(simplified));
+	}
+	
+	/**
+	 * Processing applied to a range of positions
+	 */
+	protected interface RangeProcessor
+	{
+		/**
+		 * Processes a range of at most {@link #GRAIN} positions
+		 * @param from The first position
+		 * @param to The position after the last one
+		 */
+		void process(int from, int to);
+	}
+	
+	/**
+	 * Task processing a range of positions, split in halves until it has
+	 * at most {@link #GRAIN} positions
+	 */
+	protected static class RangeTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		/**
+		 * The first position of the range
+		 */
+		protected final int m_from;
+		
+		/**
+		 * The position after the last one of the range
+		 */
+		protected final int m_to;
+		
+		/**
+		 * The processing applied to the positions
+		 */
+		/*@ non_null @*/ protected final transient RangeProcessor m_processor;
+		
+		RangeTask(int from, int to, /*@ non_null @*/ RangeProcessor processor)
+		{
+			super();
+			m_from = from;
+			m_to = to;
+			m_processor = processor;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if (m_to - m_from <= GRAIN)
+			{
+				m_processor.process(m_from, m_to);
+				return;
+			}
+			int middle = (m_from + m_to) >>> 1;
+			invokeAll(new RangeTask(m_from, middle, m_processor), new RangeTask(middle, m_to, m_processor));
+		}
+	}
+}
@@ -31,14 +31,69 @@ public class PropositionalVariable extends BooleanFormula
 	 */
 	/*@ non_null @*/ protected String m_variableName;
 	
+	/**
+	 * The identifier given to the variable by a {@link VariableRegistry},
+	 * or 0 if the variable does not come from a registry.
+	 */
+	protected final int m_id;
+	
 	/**
 	 * Creates a new propositional variable
 	 * @param var_name The name of the variable
 	 */
 	public PropositionalVariable(/*@ non_null @*/ String var_name)
+	{
+		this(var_name, 0);
+	}
+	
+	/**
+	 * Creates a new propositional variable with a fixed identifier
+	 * @param var_name The name of the variable
+	 * @param id The identifier
+	 */
+	protected PropositionalVariable(/*@ non_null @*/ String var_name, int id)
 	{
 		super();
 		m_variableName = var_name;
+		m_id = id;
+	}
+	
+	/**
+	 * Gets the name of the variable
+	 * @return The name
+	 */
+	/*@ non_null @*/ public String getName()
+	{
+		return m_variableName;
+	}
+	
+	/**
+	 * Gets the identifier given to the variable by a {@link VariableRegistry}
+	 * @return The identifier, or 0 if the variable does not come from a
+	 * registry
+	 */
+	public int getId()
+	{
+		return m_id;
+	}
+	
+	/**
+	 * Gets the DIMACS index of this variable
+	 * @param var_dict The mapping between variable names and indices, used
+	 * only if the variable does not come from a registry
+	 * @return The index
+	 */
+	protected int getIndex(Map<String,Integer> var_dict)
+	{
+		if (m_id > 0)
+		{
+			return m_id;
+		}
+		if (var_dict == null)
+		{
+			throw new BooleanFormulaException("Variable " + m_variableName + " does not come from the same registry as the rest of the formula");
+		}
+		return var_dict.get(m_variableName);
 	}
 
 	@Override
@@ -72,23 +127,12 @@ public class PropositionalVariable extends BooleanFormula
 	@Override
 	public int[][] getClauses()
 	{
-		Map<String,Integer> var_dict = getVariablesMap();
-		int[] clause = toClause(var_dict);
+		int[] clause = new int[] {getIndex(getExportMap(this))};
 		int[][] clauses = new int[1][];
 		clauses[0] = clause;
 		return clauses;
 	}
 	
-	/**
-	 * Gets the DIMACS clause associated to this formula
-	 * @return The DIMACS clause in the form of an array of integers
-	 */
-	protected int[] toClause(Map<String,Integer> var_dict)
-	{
-		int index = var_dict.get(m_variableName);
-		return new int[] {index};
-	}
-	
 	@Override
 	protected PropositionalVariable pushNegations()
 	{
@@ -118,7 +162,7 @@ public class PropositionalVariable extends BooleanFormula
 	{
 		if (!map.containsKey(m_variableName))
 		{
-			int index = map.size() + 1;
+			int index = m_id > 0 ? m_id : map.size() + 1;
 			map.put(m_variableName, index);
 		}
 	}
@@ -0,0 +1,116 @@
+/*
+    Simple manipulation of Boolean formulas
+    Copyright (C) 2020 Sylvain Hallé
+    
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+    
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package stev.booleans;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates propositional variables and gives each of them a stable integer
+ * identifier, starting at 1, in order of creation. Formulas built only
+ * from variables of the same registry can be exported to DIMACS clauses
+ * by copying these identifiers, without computing a variable map.
+ * Variables from a registry cannot be mixed in the same formula with
+ * variables created directly with the {@link PropositionalVariable}
+ * constructor, or with variables from another registry: exporting such
+ * a formula throws a {@link BooleanFormulaException}.
+ * @author Sylvain Hallé
+ */
+public class VariableRegistry
+{
+	/**
+	 * The variables, the one at index <i>i</i> having identifier <i>i</i>+1
+	 */
+	/*@ non_null @*/ protected List<PropositionalVariable> m_variables;
+	
+	/**
+	 * The variables, indexed by name
+	 */
+	/*@ non_null @*/ protected Map<String,PropositionalVariable> m_names;
+	
+	/**
+	 * Creates a new empty registry
+	 */
+	public VariableRegistry()
+	{
+		super();
+		m_variables = new ArrayList<PropositionalVariable>();
+		m_names = new HashMap<String,PropositionalVariable>();
+	}
+	
+	/**
+	 * Gets the variable with a given name, creating it with the next free
+	 * identifier if it does not exist yet.
+	 * @param var_name The name of the variable
+	 * @return The variable
+	 */
+	/*@ non_null @*/ public PropositionalVariable get(/*@ non_null @*/ String var_name)
+	{
+		PropositionalVariable p = m_names.get(var_name);
+		if (p == null)
+		{
+			p = new PropositionalVariable(var_name, m_variables.size() + 1);
+			m_variables.add(p);
+			m_names.put(var_name, p);
+		}
+		return p;
+	}
+	
+	/**
+	 * Creates a new variable whose name starts with a given prefix and is
+	 * not used by any other variable of the registry. This is used for
+	 * the auxiliary variables introduced by some CNF conversions.
+	 * @param prefix The prefix of the name
+	 * @return The new variable
+	 */
+	/*@ non_null @*/ public PropositionalVariable fresh(/*@ non_null @*/ String prefix)
+	{
+		int suffix = m_variables.size() + 1;
+		while (m_names.containsKey(prefix + suffix))
+		{
+			suffix++;
+		}
+		return get(prefix + suffix);
+	}
+	
+	/**
+	 * Gets the variable with a given identifier.
+	 * @param id The identifier, between 1 and {@link #size()}
+	 * @return The variable
+	 */
+	/*@ non_null @*/ public PropositionalVariable get(int id)
+	{
+		if (id < 1 || id > m_variables.size())
+		{
+			throw new BooleanFormulaException("No variable with identifier " + id);
+		}
+		return m_variables.get(id - 1);
+	}
+	
+	/**
+	 * Gets the number of variables created by this registry, which is also
+	 * the largest identifier in use.
+	 * @return The number of variables
+	 */
+	public int size()
+	{
+		return m_variables.size();
+	}
+}
@@ -0,0 +1,111 @@
+package stev.sudoku;
+
+import stev.booleans.ClauseSink;
+
+/**
+ * Encodages de la contrainte "au plus une des variables est vraie".
+ * PAIRWISE n'ajoute aucune variable mais génère m(m-1)/2 clauses ; les trois autres
+ * ajoutent des variables auxiliaires (demandées à la destination des clauses) et restent linéaires en m.
+ */
+public enum AtMostOne {
+    // Toutes les paires (¬x ∨ ¬y)
+    PAIRWISE {
+        @Override
+        public void encode(int[] variables, int longueur, ClauseSink sortie) {
+            for (int a = 0; a < longueur; a++)
+                for (int b = a + 1; b < longueur; b++)
+                    sortie.addClause(-variables[a], -variables[b]);
+        }
+    },
+
+    // Compteur séquentiel de Sinz : s_i vaut vrai dès qu'une des variables x_1..x_i est vraie
+    SEQUENTIAL {
+        @Override
+        public void encode(int[] variables, int longueur, ClauseSink sortie) {
+            if (longueur <= SEUIL) {
+                PAIRWISE.encode(variables, longueur, sortie);
+                return;
+            }
+            int precedent = sortie.newVariable();
+            sortie.addClause(-variables[0], precedent);
+            for (int a = 1; a < longueur - 1; a++) {
+                int courant = sortie.newVariable();
+                sortie.addClause(-variables[a], courant);
+                sortie.addClause(-precedent, courant);
+                sortie.addClause(-variables[a], -precedent);
+                precedent = courant;
+            }
+            sortie.addClause(-variables[longueur - 1], -precedent);
+        }
+    },
+
+    // Encodage commandant de Klieber et Kwon : groupes de trois, un commandant par groupe,
+    // puis la même contrainte appliquée récursivement aux commandants
+    COMMANDER {
+        @Override
+        public void encode(int[] variables, int longueur, ClauseSink sortie) {
+            if (longueur <= SEUIL) {
+                PAIRWISE.encode(variables, longueur, sortie);
+                return;
+            }
+            int nbGroupes = (longueur + 2) / 3;
+            int commandants[] = new int[nbGroupes];
+            for (int g = 0; g < nbGroupes; g++) {
+                int debut = 3 * g;
+                int fin = Math.min(debut + 3, longueur);
+                commandants[g] = sortie.newVariable();
+                for (int a = debut; a < fin; a++) {
+                    sortie.addClause(-variables[a], commandants[g]);
+                    for (int b = a + 1; b < fin; b++)
+                        sortie.addClause(-variables[a], -variables[b]);
+                }
+            }
+            encode(commandants, nbGroupes, sortie);
+        }
+    },
+
+    // Encodage produit de Chen : les variables sont rangées dans une matrice p x q, une variable
+    // est vraie seulement si sa ligne et sa colonne le sont, et au plus une ligne et une colonne le sont
+    PRODUCT {
+        @Override
+        public void encode(int[] variables, int longueur, ClauseSink sortie) {
+            if (longueur <= SEUIL) {
+                PAIRWISE.encode(variables, longueur, sortie);
+                return;
+            }
+            int p = (int) Math.ceil(Math.sqrt(longueur));
+            int q = (longueur + p - 1) / p;
+            int lignes[] = new int[p];
+            int colonnes[] = new int[q];
+            for (int r = 0; r < p; r++)
+                lignes[r] = sortie.newVariable();
+            for (int c = 0; c < q; c++)
+                colonnes[c] = sortie.newVariable();
+            for (int a = 0; a < longueur; a++) {
+                sortie.addClause(-variables[a], lignes[a / q]);
+                sortie.addClause(-variables[a], colonnes[a % q]);
+            }
+            encode(lignes, p, sortie);
+            encode(colonnes, q, sortie);
+        }
+    };
+
+    // En dessous de cette taille, l'encodage par paires est le plus compact
+    private static final int SEUIL = 4;
+
+    /**
+     * Ajoute à l'arène les clauses imposant qu'au plus une des variables soit vraie.
+     * @param variables Numéros DIMACS (positifs) des variables
+     * @param longueur Nombre de variables à prendre en compte dans le tableau
+     * @param sortie L'arène, le solveur ou le fichier qui reçoit les clauses et fournit les variables auxiliaires
+     */
+    public abstract void encode(int[] variables, int longueur, ClauseSink sortie);
+
+    public void encode(int[] variables, ClauseSink sortie) {
+        encode(variables, variables.length, sortie);
+    }
+
+    public static AtMostOne parse(String nom) {
+        return valueOf(nom.toUpperCase());
+    }
+}
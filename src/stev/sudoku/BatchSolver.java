@@ -0,0 +1,143 @@
+package stev.sudoku;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Résolution en lot : les grilles (une par ligne) sont réparties par paquets sur plusieurs
+ * threads, chacun avec son propre moteur, et les résultats sont écrits dans l'ordre d'entrée.
+ */
+public class BatchSolver {
+    private static final int TAILLE_PAQUET = 256;
+
+    private final int hauteurBloc;
+    private final int largeurBloc;
+    private final int nbThreads;
+    private final ThreadLocal<SudokuSolver> moteurs;
+
+    private long latences[] = new long[1024];
+    private int nbGrilles;
+    private int nbResolues;
+
+    public BatchSolver(int hauteurBloc, int largeurBloc, AtMostOne auPlusUn, int nbThreads) {
+        this(hauteurBloc, largeurBloc, () -> new SudokuSession(hauteurBloc, largeurBloc, auPlusUn), nbThreads);
+    }
+
+    // La fabrique est appelée une fois par thread
+    public BatchSolver(int hauteurBloc, int largeurBloc, Supplier<SudokuSolver> fabrique, int nbThreads) {
+        this.hauteurBloc = hauteurBloc;
+        this.largeurBloc = largeurBloc;
+        this.nbThreads = nbThreads;
+        moteurs = ThreadLocal.withInitial(fabrique);
+    }
+
+    private static class Paquet {
+        String resultats[];
+        long latences[];
+        int nbResolues;
+    }
+
+    public void run(BufferedReader entree, PrintStream sortie, PrintStream stats) throws IOException {
+        ExecutorService executeur = Executors.newFixedThreadPool(nbThreads);
+        // Fenêtre bornée de paquets en cours, pour ne pas charger tout le fichier en mémoire
+        ArrayDeque<Future<Paquet>> enCours = new ArrayDeque<>();
+        long debut = System.nanoTime();
+        try {
+            List<String> lignes = new ArrayList<>(TAILLE_PAQUET);
+            String ligne;
+            while ((ligne = entree.readLine()) != null) {
+                ligne = ligne.trim();
+                if (ligne.isEmpty())
+                    continue;
+                lignes.add(ligne);
+                if (lignes.size() == TAILLE_PAQUET) {
+                    enCours.add(soumettre(executeur, lignes));
+                    lignes = new ArrayList<>(TAILLE_PAQUET);
+                    if (enCours.size() >= 4 * nbThreads)
+                        ecrire(enCours.poll(), sortie);
+                }
+            }
+            if (!lignes.isEmpty())
+                enCours.add(soumettre(executeur, lignes));
+            while (!enCours.isEmpty())
+                ecrire(enCours.poll(), sortie);
+        } finally {
+            executeur.shutdownNow();
+        }
+        sortie.flush();
+        afficherStatistiques(stats, System.nanoTime() - debut);
+    }
+
+    private Future<Paquet> soumettre(ExecutorService executeur, List<String> lignes) {
+        return executeur.submit(() -> {
+            SudokuSolver moteur = moteurs.get();
+            Paquet paquet = new Paquet();
+            paquet.resultats = new String[lignes.size()];
+            paquet.latences = new long[lignes.size()];
+            for (int p = 0; p < lignes.size(); p++) {
+                long t0 = System.nanoTime();
+                Sudoku sudoku = new Sudoku(hauteurBloc, largeurBloc);
+                try {
+                    sudoku.initialize(lignes.get(p));
+                    Sudoku solution = moteur.solve(sudoku);
+                    if (solution == null) {
+                        paquet.resultats[p] = "Grille non satisfiable";
+                    } else {
+                        paquet.resultats[p] = solution.toLine();
+                        paquet.nbResolues++;
+                    }
+                } catch (IllegalArgumentException e) {
+                    paquet.resultats[p] = "Grille invalide";
+                }
+                paquet.latences[p] = System.nanoTime() - t0;
+            }
+            return paquet;
+        });
+    }
+
+    private void ecrire(Future<Paquet> future, PrintStream sortie) throws IOException {
+        Paquet paquet;
+        try {
+            paquet = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        for (String resultat : paquet.resultats)
+            sortie.println(resultat);
+        if (nbGrilles + paquet.latences.length > latences.length)
+            latences = Arrays.copyOf(latences, Math.max(2 * latences.length, nbGrilles + paquet.latences.length));
+        System.arraycopy(paquet.latences, 0, latences, nbGrilles, paquet.latences.length);
+        nbGrilles += paquet.latences.length;
+        nbResolues += paquet.nbResolues;
+    }
+
+    private void afficherStatistiques(PrintStream stats, long duree) {
+        stats.println("Grilles : " + nbGrilles + " (" + nbResolues + " résolues) sur " + nbThreads + " thread(s)");
+        stats.printf("Durée : %.3f s, débit : %.1f grilles/s%n", duree / 1e9, nbGrilles / (duree / 1e9));
+        if (nbGrilles == 0)
+            return;
+        long tri[] = Arrays.copyOf(latences, nbGrilles);
+        Arrays.sort(tri);
+        long total = 0;
+        for (long l : tri)
+            total += l;
+        stats.printf("Latence (µs) : moyenne %.1f, p50 %.1f, p99 %.1f, max %.1f%n",
+                total / (double) nbGrilles / 1e3,
+                tri[nbGrilles / 2] / 1e3,
+                tri[Math.min(nbGrilles - 1, (int) (nbGrilles * 0.99))] / 1e3,
+                tri[nbGrilles - 1] / 1e3);
+    }
+}
@@ -0,0 +1,174 @@
+package stev.sudoku;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Résolution native, sans SAT : un masque de bits des chiffres déjà utilisés par ligne, par colonne
+ * et par sous grille, et un retour arrière itératif qui choisit toujours la case vide ayant le
+ * moins de candidats. Les tableaux sont alloués une fois par taille de grille ; la recherche
+ * elle-même n'alloue rien. Limité aux grilles d'au plus 64 chiffres.
+ */
+public class BitboardSudokuSolver implements SudokuSolver {
+    private int taille;
+    private int hauteurBloc;
+    private long complet;
+    private int ligneDe[];
+    private int colonneDe[];
+    private int blocDe[];
+
+    private long lignes[];
+    private long colonnes[];
+    private long blocs[];
+    private int valeurs[];
+
+    // Cases vides ; les d premières sont celles déjà remplies par la recherche, dans l'ordre
+    private int vides[];
+    private int nbVides;
+    private long restants[];
+    private long places[];
+
+    // Indicateur de la résolution en cours, remplacé à chaque appel ; cancel() le lève
+    private final AtomicReference<AtomicBoolean> annulationCourante = new AtomicReference<>(new AtomicBoolean());
+
+    @Override
+    public Sudoku solve(Sudoku sudoku) {
+        return solve(sudoku, new AtomicBoolean());
+    }
+
+    @Override
+    public Sudoku solve(Sudoku sudoku, AtomicBoolean annulation) {
+        annulationCourante.set(annulation);
+        if (!initialiser(sudoku) || !rechercher(annulation))
+            return null;
+        int grille[][] = new int[taille][taille];
+        for (int c = 0; c < taille * taille; c++)
+            grille[c / taille][c % taille] = valeurs[c];
+        return new Sudoku(grille, sudoku.getHauteurBloc(), sudoku.getLargeurBloc());
+    }
+
+    private boolean initialiser(Sudoku sudoku) {
+        int n = sudoku.getTaille();
+        if (n > 64)
+            throw new IllegalArgumentException("Grille trop grande pour le moteur natif : " + n);
+        if (n != taille || sudoku.getHauteurBloc() != hauteurBloc) {
+            taille = n;
+            hauteurBloc = sudoku.getHauteurBloc();
+            complet = n == 64 ? -1L : (1L << n) - 1;
+            ligneDe = new int[n * n];
+            colonneDe = new int[n * n];
+            blocDe = new int[n * n];
+            for (int c = 0; c < n * n; c++) {
+                int i = c / n, j = c % n;
+                ligneDe[c] = i;
+                colonneDe[c] = j;
+                blocDe[c] = (i / sudoku.getHauteurBloc()) * (n / sudoku.getLargeurBloc()) + j / sudoku.getLargeurBloc();
+            }
+            lignes = new long[n];
+            colonnes = new long[n];
+            blocs = new long[n];
+            valeurs = new int[n * n];
+            vides = new int[n * n];
+            restants = new long[n * n];
+            places = new long[n * n];
+        }
+
+        Arrays.fill(lignes, 0);
+        Arrays.fill(colonnes, 0);
+        Arrays.fill(blocs, 0);
+        nbVides = 0;
+        for (int c = 0; c < n * n; c++) {
+            int v = sudoku.get(c / n, c % n);
+            valeurs[c] = v;
+            if (v == 0) {
+                vides[nbVides++] = c;
+                continue;
+            }
+            long bit = 1L << (v - 1);
+            if (((lignes[ligneDe[c]] | colonnes[colonneDe[c]] | blocs[blocDe[c]]) & bit) != 0)
+                return false;
+            lignes[ligneDe[c]] |= bit;
+            colonnes[colonneDe[c]] |= bit;
+            blocs[blocDe[c]] |= bit;
+        }
+        return true;
+    }
+
+    private boolean rechercher(AtomicBoolean annulation) {
+        if (nbVides == 0)
+            return true;
+        int d = 0;
+        int iterations = 0;
+        places[0] = 0;
+        restants[0] = choisir(0);
+        while (d >= 0) {
+            // L'annulation n'est vérifiée que de temps en temps pour ne pas ralentir la boucle,
+            // mais dès la première itération pour une annulation arrivée avant la recherche
+            if ((iterations++ & 0xFFF) == 0 && annulation.get())
+                return false;
+            int c = vides[d];
+            if (places[d] != 0) {
+                retirer(c, places[d]);
+                places[d] = 0;
+            }
+            long r = restants[d];
+            if (r == 0) {
+                d--;
+                continue;
+            }
+            long bit = r & -r;
+            restants[d] = r ^ bit;
+            poser(c, bit);
+            places[d] = bit;
+            if (d + 1 == nbVides)
+                return true;
+            d++;
+            places[d] = 0;
+            restants[d] = choisir(d);
+        }
+        return false;
+    }
+
+    @Override
+    public void cancel() {
+        annulationCourante.get().set(true);
+    }
+
+    // Amène en position d la case vide restante qui a le moins de candidats, et retourne ses candidats
+    private long choisir(int d) {
+        int meilleure = d;
+        int minimum = Integer.MAX_VALUE;
+        long candidatsMeilleure = 0;
+        for (int p = d; p < nbVides; p++) {
+            int c = vides[p];
+            long candidats = ~(lignes[ligneDe[c]] | colonnes[colonneDe[c]] | blocs[blocDe[c]]) & complet;
+            int nb = Long.bitCount(candidats);
+            if (nb < minimum) {
+                minimum = nb;
+                meilleure = p;
+                candidatsMeilleure = candidats;
+                if (nb <= 1)
+                    break;
+            }
+        }
+        int c = vides[meilleure];
+        vides[meilleure] = vides[d];
+        vides[d] = c;
+        return candidatsMeilleure;
+    }
+
+    private void poser(int c, long bit) {
+        lignes[ligneDe[c]] |= bit;
+        colonnes[colonneDe[c]] |= bit;
+        blocs[blocDe[c]] |= bit;
+        valeurs[c] = Long.numberOfTrailingZeros(bit) + 1;
+    }
+
+    private void retirer(int c, long bit) {
+        lignes[ligneDe[c]] &= ~bit;
+        colonnes[colonneDe[c]] &= ~bit;
+        blocs[blocDe[c]] &= ~bit;
+        valeurs[c] = 0;
+    }
+}
@@ -0,0 +1,87 @@
+package stev.sudoku;
+
+import org.sat4j.core.VecInt;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.ISolver;
+import stev.booleans.And;
+import stev.booleans.AtLeastK;
+import stev.booleans.AtMostK;
+import stev.booleans.BooleanFormula;
+import stev.booleans.Cardinality;
+import stev.booleans.CnfFormula;
+import stev.booleans.DimacsParser;
+import stev.booleans.DimacsWriter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ensemble de clauses DIMACS stockées dans un seul tableau d'entiers (voir CnfFormula),
+ * avec le chargement dans SAT4J et la lecture/écriture de fichiers DIMACS.
+ */
+public class ClauseArena extends CnfFormula {
+    public ClauseArena() {
+        super();
+    }
+
+    public ClauseArena(int capaciteLitteraux, int capaciteClauses) {
+        super(capaciteLitteraux, capaciteClauses);
+    }
+
+    public void addTo(ISolver solver) throws ContradictionException {
+        addTo(this, solver);
+    }
+
+    // Charge les clauses dans le solveur avec un seul vecteur réutilisé : SAT4J copie les littéraux
+    public static void addTo(CnfFormula cnf, ISolver solver) throws ContradictionException {
+        int litteraux[] = cnf.getLiterals();
+        VecInt clause = new VecInt(16);
+        for (int c = 0; c < cnf.size(); c++) {
+            clause.clear();
+            int debut = cnf.getClauseStart(c);
+            for (int p = debut; p < debut + cnf.getClauseLength(c); p++)
+                clause.push(litteraux[p]);
+            solver.addClause(clause);
+        }
+    }
+
+    // Charge une formule dont les variables viennent d'un registre : les contraintes de cardinalité
+    // du premier niveau sont passées à SAT4J sans encodage (addAtMost, addAtLeast, addExactly),
+    // le reste de la formule est converti en CNF
+    public static void addTo(BooleanFormula formule, ISolver solver) throws ContradictionException {
+        List<BooleanFormula> reste = new ArrayList<>();
+        for (Cardinality contrainte : Cardinality.extract(formule, reste)) {
+            VecInt litteraux = new VecInt(contrainte.getLiterals(null));
+            if (contrainte instanceof AtMostK)
+                solver.addAtMost(litteraux, contrainte.getBound());
+            else if (contrainte instanceof AtLeastK)
+                solver.addAtLeast(litteraux, contrainte.getBound());
+            else
+                solver.addExactly(litteraux, contrainte.getBound());
+        }
+        if (!reste.isEmpty())
+            addTo(BooleanFormula.toCnf(reste.size() == 1 ? reste.get(0) : new And(reste)), solver);
+    }
+
+    // Écriture au format DIMACS, directement depuis le tableau de littéraux
+    public void writeDimacs(Path fichier) throws IOException {
+        try (DimacsWriter sortie = new DimacsWriter(fichier)) {
+            sortie.writeHeader(getVariableCount(), size());
+            sortie.write(this);
+        }
+    }
+
+    public static ClauseArena readDimacs(Path fichier) throws IOException {
+        try (DimacsParser entree = new DimacsParser(fichier)) {
+            ClauseArena arena = new ClauseArena();
+            int longueur;
+            while ((longueur = entree.nextClause()) >= 0)
+                arena.addClause(entree.getClause(), 0, longueur);
+            // Les variables déclarées mais absentes des clauses restent réservées
+            arena.reserveVariables(entree.getHeaderVariableCount());
+            return arena;
+        }
+    }
+}
@@ -1,5 +1,19 @@
 package stev.sudoku;
 
+import stev.booleans.DimacsWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+
 /**
  * Travail de :
  * Diallo Mamadou Sounoussy - DIAM13049900
@@ -8,23 +22,211 @@ package stev.sudoku;
  */
 
 public class Main {
-    private static String sudokus[] = {
+    static String sudokus[] = {
             "3##8#1##22#1#3#6#4###2#4###8#9###1#6#6#####5#7#2###4#9###5#9###9#4#8#7#56##1#7##3",
             "1#######6##6#2#7##78945#1#3###8#7##4####3#####9###42#131297##4##4##12#789#8######",
             "#####28#########1##75##3#4###9#6######4#######3######7#######2######8#399#17#####",
             "#################################################################################"
     };
 
-    public static void main(String[] args){
-        // Initialisation de la grille de départ
-        Sudoku sudoku = new Sudoku(9);
-        sudoku.initialize(args[0]);
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage : Main grille [--box HxL] [--amo pairwise|sequential|commander|product]",
+            "                    [--engine sat|native|portfolio|cardinality|stream] [--dimacs fichier] [--count N]",
+            "        Main --batch [fichier|-] [--threads N] [--box HxL] [--amo encodage] [--engine sat|native|portfolio]",
+            "        Main --generate N [--clues C] [--symmetry none|rotational|mirror|diagonal] [--threads T] [--box HxL]");
+
+    // Taille maximale de la première grille d'un lot, relue après en avoir déduit la taille des sous grilles
+    private static final int LIMITE_PREMIERE_LIGNE = 1 << 20;
+
+    public static void main(String[] args) throws IOException {
+        // Une option sans valeur, un nombre ou une grille invalide arrête le programme avec l'usage
+        try {
+            if (args.length == 0)
+                throw new IllegalArgumentException("Aucune grille donnée");
+            if (args[0].equals("--batch"))
+                batch(args);
+            else if (args[0].equals("--generate"))
+                generate(args);
+            else
+                resoudre(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+    }
+
+    private static void resoudre(String[] args) throws IOException {
+        // Initialisation de la grille de départ, la taille est déduite du nombre de cases
+        // Options : --box HxL pour des sous grilles non carrées, --amo pairwise|sequential|commander|product,
+        // --engine sat|native|portfolio|cardinality|stream pour choisir le moteur de résolution,
+        // --dimacs fichier pour écrire l'encodage complet de la grille au format DIMACS,
+        // --count N pour compter les solutions de la grille, jusqu'à N
+        Sudoku sudoku = Sudoku.parse(args[0]);
+        AtMostOne auPlusUn = AtMostOne.PAIRWISE;
+        String moteur = "sat";
+        String dimacs = null;
+        int limite = 0;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--box")) {
+                int bloc[] = parseBloc(option(args, ++i));
+                sudoku = new Sudoku(bloc[0], bloc[1]);
+                sudoku.initialize(args[0]);
+            } else if (args[i].equals("--amo")) {
+                auPlusUn = AtMostOne.parse(option(args, ++i));
+            } else if (args[i].equals("--engine")) {
+                moteur = option(args, ++i);
+            } else if (args[i].equals("--dimacs")) {
+                dimacs = option(args, ++i);
+            } else if (args[i].equals("--count")) {
+                limite = Integer.parseInt(option(args, ++i));
+            }
+        }
         System.out.println(sudoku);
 
-        // Modélisation des contraintes sous forme de clauses
-        int[][] clauses = sudoku.modelize().getClauses();
+        // Les clauses sont écrites dans le fichier au fur et à mesure de l'encodage
+        if (dimacs != null) {
+            try (DimacsWriter sortie = new DimacsWriter(Paths.get(dimacs))) {
+                sudoku.encode(auPlusUn, sortie.asClauseSink());
+            }
+        }
+
+        if (limite > 0) {
+            int nbSolutions = sudoku.countSolutions(limite);
+            System.out.println("Solutions : " + nbSolutions + (nbSolutions == limite ? " ou plus" : ""));
+        }
+
+        if (moteur.equals("native")) {
+            Sudoku solution = new BitboardSudokuSolver().solve(sudoku);
+            System.out.println(solution == null ? "Grille non satisfiable" : solution);
+            return;
+        }
+        if (moteur.equals("stream")) {
+            // Clauses envoyées directement au solveur, sans arène intermédiaire
+            System.out.println(sudoku.solveStreaming(auPlusUn));
+            return;
+        }
+        if (moteur.equals("cardinality")) {
+            // Contraintes "exactement un" et "au plus un" passées directement à SAT4J
+            System.out.println(sudoku.solveCardinality());
+            return;
+        }
+        if (moteur.equals("portfolio")) {
+            try (PortfolioSudokuSolver portefeuille = PortfolioSudokuSolver.standard()) {
+                Sudoku solution = portefeuille.solve(sudoku);
+                System.out.println(solution == null ? "Grille non satisfiable" : solution);
+                System.out.println("Victoires : " + portefeuille.getWins());
+            }
+            return;
+        }
+
+        // Modélisation des contraintes sous forme de clauses, sans les cases déjà décidées
+        ReducedEncoding clauses = sudoku.encodeReduced(auPlusUn);
 
         // Résolution de la grille
         System.out.println(sudoku.solve(clauses));
     }
+
+    // Mode lot : --batch [fichier|-] [--threads N] [--box HxL] [--amo encodage] [--engine sat|native|portfolio]
+    // Une grille par ligne, lue dans le fichier ou sur l'entrée standard ; une solution par ligne en sortie.
+    // Sans --box, la taille des sous grilles est déduite de la première grille, comme dans Sudoku.parse
+    private static void batch(String[] args) throws IOException {
+        String fichier = "-";
+        int nbThreads = Runtime.getRuntime().availableProcessors();
+        int bloc[] = null;
+        AtMostOne auPlusUn = AtMostOne.PAIRWISE;
+        String moteur = "sat";
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--threads"))
+                nbThreads = Integer.parseInt(option(args, ++i));
+            else if (args[i].equals("--box"))
+                bloc = parseBloc(option(args, ++i));
+            else if (args[i].equals("--amo"))
+                auPlusUn = AtMostOne.parse(option(args, ++i));
+            else if (args[i].equals("--engine"))
+                moteur = option(args, ++i);
+            else
+                fichier = args[i];
+        }
+
+        BufferedReader entree = fichier.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(fichier), StandardCharsets.UTF_8);
+        PrintStream sortie = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false);
+        // Un seul pool borné pour les portefeuilles de tous les threads du lot
+        ExecutorService pool = moteur.equals("portfolio") ? PortfolioSudokuSolver.newPool(nbThreads) : null;
+        try (entree) {
+            if (bloc == null)
+                bloc = blocPremiereGrille(entree);
+            BatchSolver lot;
+            if (moteur.equals("native"))
+                lot = new BatchSolver(bloc[0], bloc[1], BitboardSudokuSolver::new, nbThreads);
+            else if (pool != null)
+                lot = new BatchSolver(bloc[0], bloc[1], () -> PortfolioSudokuSolver.standard(pool), nbThreads);
+            else
+                lot = new BatchSolver(bloc[0], bloc[1], auPlusUn, nbThreads);
+            lot.run(entree, sortie, System.err);
+        } finally {
+            if (pool != null)
+                pool.shutdown();
+        }
+    }
+
+    // Mode génération : --generate N [--clues C] [--symmetry none|rotational|mirror|diagonal] [--threads T] [--box HxL]
+    // N grilles à solution unique, une par ligne ; sans --clues, autant de cases que possible sont vidées
+    private static void generate(String[] args) {
+        int nbGrilles = Integer.parseInt(option(args, 1));
+        int nbThreads = Runtime.getRuntime().availableProcessors();
+        int bloc[] = {3, 3};
+        int cibleIndices = 0;
+        Symmetry symetrie = Symmetry.NONE;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--threads"))
+                nbThreads = Integer.parseInt(option(args, ++i));
+            else if (args[i].equals("--box"))
+                bloc = parseBloc(option(args, ++i));
+            else if (args[i].equals("--clues"))
+                cibleIndices = Integer.parseInt(option(args, ++i));
+            else if (args[i].equals("--symmetry"))
+                symetrie = Symmetry.parse(option(args, ++i));
+        }
+
+        PrintStream sortie = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false);
+        new SudokuGenerator(bloc[0], bloc[1], cibleIndices, symetrie, nbThreads).run(nbGrilles, sortie, System.err);
+    }
+
+    // Valeur de l'option args[i - 1], qui doit être suivie d'un argument
+    private static String option(String[] args, int i) {
+        if (i >= args.length)
+            throw new IllegalArgumentException("Valeur manquante après " + args[i - 1]);
+        return args[i];
+    }
+
+    // Sous grilles de la première grille non vide, sans la consommer : le lecteur revient au début.
+    // Une entrée vide garde la taille 3x3
+    private static int[] blocPremiereGrille(BufferedReader entree) throws IOException {
+        entree.mark(LIMITE_PREMIERE_LIGNE);
+        String ligne;
+        do {
+            ligne = entree.readLine();
+        } while (ligne != null && ligne.trim().isEmpty());
+        entree.reset();
+        if (ligne == null)
+            return new int[] {3, 3};
+        Sudoku premiere;
+        try {
+            premiere = Sudoku.parse(ligne.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Taille de la première grille inconnue (" + e.getMessage() + "), préciser --box HxL");
+        }
+        return new int[] {premiere.getHauteurBloc(), premiere.getLargeurBloc()};
+    }
+
+    // "HxL" : hauteur et largeur d'une sous grille, par exemple 2x3 pour une grille 6x6
+    private static int[] parseBloc(String bloc) {
+        String dimensions[] = bloc.toLowerCase().split("x");
+        if (dimensions.length != 2)
+            throw new IllegalArgumentException("Taille de sous grille invalide : " + bloc);
+        return new int[] {Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1])};
+    }
 }
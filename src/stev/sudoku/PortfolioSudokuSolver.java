@@ -0,0 +1,173 @@
+package stev.sudoku;
+
+import org.sat4j.minisat.SolverFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Portefeuille de moteurs lancés en parallèle sur la même grille : la première réponse
+ * est retenue et les autres moteurs sont annulés par l'indicateur propre à la course,
+ * passé à chacun, puis par SudokuSolver.cancel(). Un moteur en échec (exception) est ignoré
+ * tant qu'une autre stratégie peut encore répondre.
+ * Le nombre de victoires de chaque stratégie est comptabilisé.
+ * Comme les moteurs qu'il contient, un portefeuille ne doit être utilisé que par un thread à la fois.
+ * Les moteurs tournent sur un pool borné : celui du portefeuille, arrêté par close(), ou un pool
+ * partagé entre plusieurs portefeuilles (un par thread en mode lot), qui reste à la charge de l'appelant.
+ */
+public class PortfolioSudokuSolver implements SudokuSolver, AutoCloseable {
+    private final List<String> noms = new ArrayList<>();
+    private final List<SudokuSolver> moteurs = new ArrayList<>();
+    private AtomicLongArray victoires = new AtomicLongArray(0);
+    private final ExecutorService executeur;
+    private final boolean proprietaire;
+
+    // Courses précédentes dont les perdants n'ont peut-être pas encore rendu la main
+    private final List<Future<Sudoku>> enCours = new ArrayList<>();
+    // Indicateur de la course en cours, remplacé à chaque course ; cancel() le lève
+    private final AtomicReference<AtomicBoolean> termine = new AtomicReference<>(new AtomicBoolean(true));
+
+    // Pool propre au portefeuille, d'un thread par processeur
+    public PortfolioSudokuSolver() {
+        this(newPool(Runtime.getRuntime().availableProcessors()), true);
+    }
+
+    // Pool partagé, que close() n'arrête pas
+    public PortfolioSudokuSolver(ExecutorService executeur) {
+        this(executeur, false);
+    }
+
+    private PortfolioSudokuSolver(ExecutorService executeur, boolean proprietaire) {
+        this.executeur = executeur;
+        this.proprietaire = proprietaire;
+    }
+
+    // Pool borné pour un ou plusieurs portefeuilles. Threads démons : un pool oublié n'empêche pas
+    // la JVM de s'arrêter
+    public static ExecutorService newPool(int nbThreads) {
+        return Executors.newFixedThreadPool(nbThreads, r -> {
+            Thread t = new Thread(r, "portfolio");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Moteur natif, plus trois configurations SAT4J avec des encodages différents
+    public static PortfolioSudokuSolver standard() {
+        return ajouterStandard(new PortfolioSudokuSolver());
+    }
+
+    // Mêmes stratégies, sur un pool partagé
+    public static PortfolioSudokuSolver standard(ExecutorService executeur) {
+        return ajouterStandard(new PortfolioSudokuSolver(executeur));
+    }
+
+    private static PortfolioSudokuSolver ajouterStandard(PortfolioSudokuSolver portefeuille) {
+        portefeuille.addStrategy("native", new BitboardSudokuSolver());
+        portefeuille.addStrategy("sat-default-pairwise", new SatSudokuSolver(AtMostOne.PAIRWISE, SolverFactory::newDefault));
+        portefeuille.addStrategy("sat-glucose-sequential", new SatSudokuSolver(AtMostOne.SEQUENTIAL, SolverFactory::newGlucose21));
+        portefeuille.addStrategy("sat-minisat-product", new SatSudokuSolver(AtMostOne.PRODUCT, SolverFactory::newMiniSATHeap));
+        return portefeuille;
+    }
+
+    public void addStrategy(String nom, SudokuSolver moteur) {
+        noms.add(nom);
+        moteurs.add(moteur);
+        victoires = new AtomicLongArray(noms.size());
+    }
+
+    @Override
+    public Sudoku solve(Sudoku sudoku) {
+        attendrePerdants();
+
+        AtomicBoolean termine = new AtomicBoolean(false);
+        this.termine.set(termine);
+        CompletionService<Sudoku> course = new ExecutorCompletionService<>(executeur);
+        Map<Future<Sudoku>, Integer> strategies = new LinkedHashMap<>();
+        for (int s = 0; s < moteurs.size(); s++) {
+            SudokuSolver moteur = moteurs.get(s);
+            // L'indicateur de la course est passé au moteur : une annulation arrivée avant son démarrage,
+            // ou pendant son encodage, n'est pas perdue
+            strategies.put(course.submit(() -> moteur.solve(sudoku, termine)), s);
+        }
+        enCours.addAll(strategies.keySet());
+
+        // La première stratégie terminée normalement gagne ; une exception n'est relancée
+        // que si toutes les stratégies ont échoué
+        Throwable echec = null;
+        try {
+            for (int reponses = 0; reponses < strategies.size(); reponses++) {
+                Future<Sudoku> future = course.take();
+                try {
+                    Sudoku solution = future.get();
+                    terminer(termine);
+                    victoires.incrementAndGet(strategies.get(future));
+                    return solution;
+                } catch (ExecutionException e) {
+                    if (echec == null)
+                        echec = e.getCause();
+                }
+            }
+        } catch (InterruptedException e) {
+            terminer(termine);
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        terminer(termine);
+        if (echec instanceof RuntimeException)
+            throw (RuntimeException) echec;
+        throw new IllegalStateException(echec);
+    }
+
+    @Override
+    public void cancel() {
+        terminer(termine.get());
+    }
+
+    // Attend la fin des perdants de la dernière course, puis arrête le pool s'il appartient au portefeuille
+    @Override
+    public void close() {
+        attendrePerdants();
+        if (proprietaire)
+            executeur.shutdown();
+    }
+
+    private void terminer(AtomicBoolean termine) {
+        if (termine.compareAndSet(false, true))
+            for (SudokuSolver moteur : moteurs)
+                moteur.cancel();
+    }
+
+    private void attendrePerdants() {
+        for (Future<Sudoku> future : enCours) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                // Déjà signalé, ou sans importance pour une stratégie perdante
+            }
+        }
+        enCours.clear();
+    }
+
+    // Nombre de victoires par stratégie, dans l'ordre d'ajout
+    public Map<String, Long> getWins() {
+        Map<String, Long> resultat = new LinkedHashMap<>();
+        for (int s = 0; s < noms.size(); s++)
+            resultat.put(noms.get(s), victoires.get(s));
+        return resultat;
+    }
+}
@@ -0,0 +1,49 @@
+package stev.sudoku;
+
+/**
+ * Encodage d'une grille dont les cases pré-remplies et les candidats qu'elles éliminent
+ * ont été retirés avant la génération des clauses. Les variables restantes sont
+ * renumérotées de 1 à getVariableCount() ; chaque variable désigne un couple (case, chiffre).
+ */
+public class ReducedEncoding {
+    private final int grille[][];
+    private final int taille;
+    private final int hauteurBloc;
+    private final int largeurBloc;
+    private final ClauseArena clauses;
+    private final int cases[];
+    private final int chiffres[];
+
+    ReducedEncoding(int[][] grille, int hauteurBloc, int largeurBloc, ClauseArena clauses, int[] cases, int[] chiffres) {
+        this.grille = grille;
+        this.taille = hauteurBloc * largeurBloc;
+        this.hauteurBloc = hauteurBloc;
+        this.largeurBloc = largeurBloc;
+        this.clauses = clauses;
+        this.cases = cases;
+        this.chiffres = chiffres;
+    }
+
+    public ClauseArena getClauses() {
+        return clauses;
+    }
+
+    // Nombre de variables (case, chiffre), sans les variables auxiliaires des contraintes "au plus un"
+    public int getVariableCount() {
+        return cases.length - 1;
+    }
+
+    // Complète la grille de départ avec les variables vraies du modèle, sans les variables auxiliaires
+    public Sudoku decode(int[] model) {
+        int grilleSol[][] = new int[taille][taille];
+        for (int i = 0; i < taille; i++)
+            grilleSol[i] = grille[i].clone();
+        for (int literal : model) {
+            if (literal > 0 && literal < cases.length) {
+                int c = cases[literal];
+                grilleSol[c / taille][c % taille] = chiffres[literal] + 1;
+            }
+        }
+        return new Sudoku(grilleSol, hauteurBloc, largeurBloc);
+    }
+}
@@ -0,0 +1,84 @@
+package stev.sudoku;
+
+import org.sat4j.minisat.SolverFactory;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.ISolver;
+import org.sat4j.specs.ISolverService;
+import org.sat4j.specs.SearchListener;
+import org.sat4j.specs.TimeoutException;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Résolution par SAT4J : chaque grille est encodée avec encodeReduced() et confiée à un nouveau solveur.
+ * Pour résoudre beaucoup de grilles de même taille, SudokuSession évite de recharger les clauses de base.
+ */
+public class SatSudokuSolver implements SudokuSolver {
+    private final AtMostOne auPlusUn;
+    private final Supplier<ISolver> fabrique;
+    private volatile ISolver courant;
+    // Indicateur de la résolution en cours, remplacé à chaque appel ; cancel() le lève
+    private final AtomicReference<AtomicBoolean> annulationCourante = new AtomicReference<>(new AtomicBoolean());
+
+    public SatSudokuSolver() {
+        this(AtMostOne.PAIRWISE, SolverFactory::newDefault);
+    }
+
+    public SatSudokuSolver(AtMostOne auPlusUn, Supplier<ISolver> fabrique) {
+        this.auPlusUn = auPlusUn;
+        this.fabrique = fabrique;
+    }
+
+    @Override
+    public Sudoku solve(Sudoku sudoku) {
+        return solve(sudoku, new AtomicBoolean());
+    }
+
+    @Override
+    public Sudoku solve(Sudoku sudoku, AtomicBoolean annulation) {
+        annulationCourante.set(annulation);
+        ReducedEncoding encodage = sudoku.encodeReduced(auPlusUn);
+        ISolver solver = fabrique.get();
+        solver.newVar(encodage.getClauses().getVariableCount());
+        surveiller(solver, annulation::get);
+        courant = solver;
+        try {
+            encodage.getClauses().addTo(solver);
+            if (annulation.get())
+                return null;
+            if (solver.isSatisfiable())
+                return encodage.decode(solver.model());
+        } catch (ContradictionException e) {
+            return null;
+        } catch (TimeoutException e) {
+            if (!annulation.get())
+                e.printStackTrace();
+        } finally {
+            courant = null;
+        }
+        return null;
+    }
+
+    @Override
+    public void cancel() {
+        annulationCourante.get().set(true);
+        ISolver solver = courant;
+        if (solver != null)
+            solver.expireTimeout();
+    }
+
+    // Arrête la recherche à la décision suivante dès que annule() devient vrai. expireTimeout() seul ne suffit
+    // pas : appelé avant le début de la recherche, il est oublié quand isSatisfiable() arme son propre délai
+    static void surveiller(ISolver solver, BooleanSupplier annule) {
+        solver.setSearchListener(new SearchListener<ISolverService>() {
+            @Override
+            public void assuming(int p) {
+                if (annule.getAsBoolean())
+                    solver.expireTimeout();
+            }
+        });
+    }
+}
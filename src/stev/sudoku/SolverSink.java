@@ -0,0 +1,72 @@
+package stev.sudoku;
+
+import org.sat4j.core.VecInt;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.ISolver;
+import stev.booleans.ClauseSink;
+
+/**
+ * Envoie les clauses directement à un solveur SAT4J, une à la fois, sans les garder en mémoire.
+ * Une contradiction détectée à l'ajout (clause vide, ou clause unitaire opposée à une autre)
+ * est mémorisée : la formule est alors non satisfiable et les clauses suivantes sont ignorées.
+ */
+public class SolverSink implements ClauseSink {
+    private final ISolver solver;
+    // SAT4J copie les littéraux : un seul vecteur suffit
+    private final VecInt clause = new VecInt(16);
+    private int nbVariables;
+    private int nbDeclarees;
+    private boolean contradiction;
+
+    public SolverSink(ISolver solver) {
+        this.solver = solver;
+    }
+
+    @Override
+    public void addLiteral(int literal) {
+        clause.push(literal);
+        int variable = Math.abs(literal);
+        if (variable > nbVariables)
+            nbVariables = variable;
+    }
+
+    @Override
+    public void endClause() {
+        if (!contradiction) {
+            declarer();
+            try {
+                solver.addClause(clause);
+            } catch (ContradictionException e) {
+                contradiction = true;
+            }
+        }
+        clause.clear();
+    }
+
+    @Override
+    public void reserveVariables(int n) {
+        if (n > nbVariables)
+            nbVariables = n;
+    }
+
+    @Override
+    public int newVariable() {
+        return ++nbVariables;
+    }
+
+    // Le solveur doit connaître toutes les variables avant de recevoir une clause qui les utilise
+    private void declarer() {
+        if (nbVariables > nbDeclarees) {
+            solver.newVar(nbVariables);
+            nbDeclarees = nbVariables;
+        }
+    }
+
+    public boolean isContradiction() {
+        return contradiction;
+    }
+
+    public int getVariableCount() {
+        return nbVariables;
+    }
+}
@@ -2,37 +2,121 @@ package stev.sudoku;
 
 import org.sat4j.core.VecInt;
 import org.sat4j.minisat.SolverFactory;
-import org.sat4j.reader.DimacsReader;
-import org.sat4j.reader.Reader;
 import org.sat4j.specs.ContradictionException;
 import org.sat4j.specs.IProblem;
 import org.sat4j.specs.ISolver;
+import org.sat4j.specs.IVecInt;
 import org.sat4j.specs.TimeoutException;
 import stev.booleans.*;
-import java.math.*;
 
-import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 public class Sudoku {
-    private char grille[][];
+    // Symboles des chiffres 1 à 35 dans le format à un caractère par case ; au-delà, ou si
+    // les cases sont séparées par des espaces ou des virgules, chaque case est un nombre
+    private static final String SYMBOLES = "123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    // 0 pour une case vide, sinon le chiffre de 1 à taille
+    private int grille[][];
     private int taille;
+    private int hauteurBloc;
+    private int largeurBloc;
 
     public Sudoku(){
         this(9);
     }
 
+    // Sous grilles les plus carrées possible : 3x3 pour 9, 4x4 pour 16, 2x3 pour 6, 3x4 pour 12...
     public Sudoku(int t) {
-        grille = new char[t][t];
-        taille = t;
+        this(hauteurParDefaut(t), t / hauteurParDefaut(t));
+    }
+
+    public Sudoku(int hauteurBloc, int largeurBloc) {
+        this(new int[hauteurBloc * largeurBloc][hauteurBloc * largeurBloc], hauteurBloc, largeurBloc);
     }
 
-    public Sudoku(char[][] g, int t){ grille = g; taille = t; }
+    public Sudoku(char[][] g, int t){
+        this(t);
+        for (int i = 0; i < taille; i++)
+            for (int j = 0; j < taille; j++)
+                grille[i][j] = valeur(g[i][j]);
+    }
+
+    Sudoku(int[][] g, int hauteurBloc, int largeurBloc) {
+        grille = g;
+        taille = hauteurBloc * largeurBloc;
+        this.hauteurBloc = hauteurBloc;
+        this.largeurBloc = largeurBloc;
+    }
+
+    private static int hauteurParDefaut(int t) {
+        int h = (int) Math.sqrt(t);
+        while (t % h != 0)
+            h--;
+        return h;
+    }
+
+    // Taille de grille déduite du nombre de cases de la chaîne
+    public static Sudoku parse(String sudoku) {
+        int nbCases = estSepare(sudoku) ? sudoku.trim().split("[\\s,]+").length : sudoku.length();
+        int t = (int) Math.round(Math.sqrt(nbCases));
+        if (t * t != nbCases)
+            throw new IllegalArgumentException("Nombre de cases invalide : " + nbCases);
+        Sudoku s = new Sudoku(t);
+        s.initialize(sudoku);
+        return s;
+    }
+
+    private static boolean estSepare(String sudoku) {
+        for (int p = 0; p < sudoku.length(); p++) {
+            char c = sudoku.charAt(p);
+            if (c == ',' || Character.isWhitespace(c))
+                return true;
+        }
+        return false;
+    }
 
     public void initialize(String sudoku) {
-        for (int i=0;i<taille;i++)
-            for (int j=0;j<taille;j++)
-                this.grille[i][j]=sudoku.charAt(i*taille+j);
+        if (estSepare(sudoku)) {
+            String cases[] = sudoku.trim().split("[\\s,]+");
+            if (cases.length != taille * taille)
+                throw new IllegalArgumentException("La grille doit contenir " + taille * taille + " cases");
+            for (int i = 0; i < taille; i++) {
+                for (int j = 0; j < taille; j++) {
+                    String c = cases[i * taille + j];
+                    this.grille[i][j] = c.equals("#") || c.equals(".") ? 0 : verifier(Integer.parseInt(c));
+                }
+            }
+        } else {
+            if (sudoku.length() != taille * taille)
+                throw new IllegalArgumentException("La grille doit contenir " + taille * taille + " cases");
+            for (int i=0;i<taille;i++)
+                for (int j=0;j<taille;j++)
+                    this.grille[i][j]=verifier(valeur(sudoku.charAt(i*taille+j)));
+        }
+    }
+
+    private static int valeur(char c) {
+        if (c == '#' || c == '.' || c == '0')
+            return 0;
+        int v = SYMBOLES.indexOf(Character.toUpperCase(c));
+        if (v < 0)
+            throw new IllegalArgumentException("Symbole invalide : " + c);
+        return v + 1;
+    }
+
+    private int verifier(int v) {
+        if (v < 0 || v > taille)
+            throw new IllegalArgumentException("Chiffre hors de la grille : " + v);
+        return v;
+    }
+
+    private String symbole(int v) {
+        if (v == 0)
+            return "#";
+        return taille <= SYMBOLES.length() ? String.valueOf(SYMBOLES.charAt(v - 1)) : String.valueOf(v);
     }
 
     @Override
@@ -40,23 +124,57 @@ public class Sudoku {
         StringBuilder stringBuilder = new StringBuilder();
         stringBuilder.append("Sudoku :\n");
 
+        int largeurCase = symbole(taille).length() + 1;
+        int largeurLigne = largeurCase * taille + taille / largeurBloc - 2;
         for (int i=0;i<taille;i++) {
-            for (int j = 0; j < taille / 3; j++)
-                stringBuilder.append(grille[i][j]+" ");
-            stringBuilder.append("|");
-            for (int j = taille / 3; j < 2 * taille / 3; j++)
-                stringBuilder.append(grille[i][j]+" ");
-            stringBuilder.append("|");
-            for (int j = 2 * taille / 3; j < taille; j++)
-                stringBuilder.append(grille[i][j]+" ");
+            for (int j = 0; j < taille; j++) {
+                if (j > 0 && j % largeurBloc == 0)
+                    stringBuilder.append("|");
+                String c = symbole(grille[i][j]);
+                for (int p = c.length() + 1; p < largeurCase; p++)
+                    stringBuilder.append(' ');
+                stringBuilder.append(c+" ");
+            }
             stringBuilder.append('\n');
-            if (i==taille/3 - 1||i==2 * taille / 3 -1)
-                stringBuilder.append("-------------------\n");
+            if ((i + 1) % hauteurBloc == 0 && i < taille - 1) {
+                for (int p = 0; p < largeurLigne; p++)
+                    stringBuilder.append('-');
+                stringBuilder.append('\n');
+            }
         }
 
         return stringBuilder.toString();
     }
 
+    // La grille sur une seule ligne, dans un format accepté par initialize()
+    public String toLine() {
+        StringBuilder stringBuilder = new StringBuilder(taille * taille);
+        for (int i = 0; i < taille; i++) {
+            for (int j = 0; j < taille; j++) {
+                if (taille > SYMBOLES.length() && (i > 0 || j > 0))
+                    stringBuilder.append(' ');
+                stringBuilder.append(symbole(grille[i][j]));
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    public int getTaille() {
+        return taille;
+    }
+
+    public int getHauteurBloc() {
+        return hauteurBloc;
+    }
+
+    public int getLargeurBloc() {
+        return largeurBloc;
+    }
+
+    public int get(int i, int j) {
+        return grille[i][j];
+    }
+
     private int factorielle(int n){
         if(n<=1){
             return 1;
@@ -64,115 +182,475 @@ public class Sudoku {
         return n * factorielle(n - 1);
     }
 
-    public BooleanFormula modelize() {
+    public CnfFormula modelize() {
+        // Conversion de la formule en CNF, les sous-formules de la conjonction étant
+        // converties en parallèle, puis retrait des clauses redondantes
+        // (doublons, clauses subsumées, résolution auto-subsumante)
+        CnfFormula cnf = new CnfSimplifier().simplify(BooleanFormula.toCnf(formule(), ForkJoinPool.commonPool()));
+
+        // Affichage de la formule CNF
+        //System.out.println(cnf);
+
+        return cnf;
+    }
+
+    // Même formule que modelize(), convertie et envoyée clause par clause à la destination,
+    // sans la simplification qui a besoin de toutes les clauses
+    public void modelize(ClauseSink sortie) {
+        BooleanFormula.writeCnf(formule(), CnfMode.EQUIVALENT, sortie);
+    }
+
+    // Les cinq propriétés sous forme de formule, avant la conversion en CNF
+    BooleanFormula formule() {
         PropositionalVariable variables[][][] = new PropositionalVariable[taille][taille][taille];
 
         //initialisation des variables
         //une variable pour chaque nombre possible dans chaque case, donc 9 par case, soit 9 * 9 * 9 pour une grille de taille 9
+        //créées dans l'ordre (i, j, k), le registre leur donne l'identifiant variable(i, j, k) utilisé par decode()
+        // La fabrique partage les sous-formules identiques : chaque ¬x n'est créé qu'une fois
+        VariableRegistry registre = new VariableRegistry();
+        FormulaFactory fabrique = new FormulaFactory(registre);
         for (int i = 0; i < taille; i++) {
             for (int j = 0; j < taille; j++) {
                 for (int k = 0; k < taille; k++) {
-                    variables[i][j][k] = new PropositionalVariable(i + "" + j + "" + k);
+                    variables[i][j][k] = fabrique.variable(i + "," + j + "," + k);
                 }
             }
         }
 
         // Modélisation de la première propriété
-        //On crée les couples de non-variables pour tester qu'il peut y avoir au plus un chiffre
-        //On crée la liste de variables pour tester qu'il y a au moins un chiffre par case
-        ArrayList<BooleanFormula> auPlus1ChiffreParCase = new ArrayList<>();
-        ArrayList<BooleanFormula> auMoins1ChiffreParCase = new ArrayList<>();
+        // Exactement un chiffre par case : contrainte de cardinalité sur les variables de la case,
+        // développée en "au moins un" et en couples (¬x ∨ ¬y) lors de la conversion en CNF
+        ArrayList<BooleanFormula> unChiffreParCase = new ArrayList<>();
         for (int i = 0; i < taille; i++) {
             for (int j = 0; j < taille; j++) {
                 ArrayList<BooleanFormula> tousLesChiffresPossiblesParCase = new ArrayList<>();
                 for (int k = 0; k < taille; k++) {
                     tousLesChiffresPossiblesParCase.add(variables[i][j][k]);
-                    for (int l = k + 1; l < taille; l++) {
-                        auPlus1ChiffreParCase.add(new Or(new Not(variables[i][j][k]), new Not(variables[i][j][l])));
-                    }
                 }
-                auMoins1ChiffreParCase.add(new Or(tousLesChiffresPossiblesParCase));
+                unChiffreParCase.add(new ExactlyK(1, tousLesChiffresPossiblesParCase));
             }
         }
-
-        BooleanFormula prop1 = new And(new And(auPlus1ChiffreParCase), new And(auMoins1ChiffreParCase));
+        BooleanFormula prop1 = fabrique.and(unChiffreParCase);
 
         // Modélisation de la deuxième propriété
-        // On crée la liste de couple possible pour chaque ligne
-        // l etant la 2eme position à tester, on test seulement les j+1 car ceux avant on déjà été testé
-        // Exemple pour case de 3, il a 5 couple possible pour tester toutes les possibilités
-        // (¬000&¬010)|(¬000&¬020)|(¬000&¬030)|(¬010&¬020)|(¬020&¬030)
+        // Au plus une fois chaque chiffre sur une même ligne
+        // Exemple pour la ligne 0 et le chiffre 0 : au plus un parmi 0,0,0|0,1,0|...|0,8,0
         ArrayList<BooleanFormula> pas2FoisLeMemeChiffreSurUneMemeLigne = new ArrayList<>();
         for (int i = 0; i < taille; i++) {
             for (int k = 0; k < taille; k++) {
+                ArrayList<BooleanFormula> toutesLesCasesDeLaLigne = new ArrayList<>();
                 for (int j = 0; j < taille; j++) {
-                    for (int l = j + 1; l < taille; l++) {
-                        pas2FoisLeMemeChiffreSurUneMemeLigne.add(new Or(new Not(variables[i][j][k]), new Not(variables[i][l][k])));
-                    }
+                    toutesLesCasesDeLaLigne.add(variables[i][j][k]);
                 }
+                pas2FoisLeMemeChiffreSurUneMemeLigne.add(new AtMostK(1, toutesLesCasesDeLaLigne));
             }
         }
-        BooleanFormula prop2 = new And(pas2FoisLeMemeChiffreSurUneMemeLigne);
+        BooleanFormula prop2 = fabrique.and(pas2FoisLeMemeChiffreSurUneMemeLigne);
 
 
         // Modélisation de la troisième propriété
-        // Pareil que pour les ligne, on fait chaque couple possible pour chaque colonne
+        // Pareil que pour les lignes, pour chaque colonne
         ArrayList<BooleanFormula> pas2FoisLeMemeChiffreSurUneMemeColonne = new ArrayList<>();
         for (int j = 0; j < taille; j++) {
             for (int k = 0; k < taille; k++) {
+                ArrayList<BooleanFormula> toutesLesCasesDeLaColonne = new ArrayList<>();
                 for (int i = 0; i < taille; i++) {
-                    for (int l = i + 1; l < taille; l++) {
-                        pas2FoisLeMemeChiffreSurUneMemeColonne.add(new Or(new Not(variables[i][j][k]), new Not(variables[l][j][k])));
-                    }
+                    toutesLesCasesDeLaColonne.add(variables[i][j][k]);
                 }
+                pas2FoisLeMemeChiffreSurUneMemeColonne.add(new AtMostK(1, toutesLesCasesDeLaColonne));
             }
         }
-        BooleanFormula prop3 = new And(pas2FoisLeMemeChiffreSurUneMemeColonne);
+        BooleanFormula prop3 = fabrique.and(pas2FoisLeMemeChiffreSurUneMemeColonne);
 
         // Modélisation de la quatrième propriété
-        // On test dans chaque sous grille de taille 3 avec les grilles de 0-2 3-6 et 7-9 (pour (bi ou bj)*taille/3)
-        // (001|011|021|101|111|121|201|211|221)&(002|012|022|102|112|122|202|212|222)&(pareil pour chaque chiffre et chaque sous grille)
+        // On test dans chaque sous grille de hauteurBloc x largeurBloc cases (0-2 3-5 et 6-8 pour une grille 9x9)
+        // (0,0,1|0,1,1|0,2,1|1,0,1|...|2,2,1)&(0,0,2|0,1,2|...|2,2,2)&(pareil pour chaque chiffre et chaque sous grille)
         ArrayList<BooleanFormula> auMoinsUneFoisChaqueChiffreDansChaqueSousGrille = new ArrayList<>();
-        for (int bi = 0; bi < taille / 3; bi++) {
-            for (int bj = 0; bj < taille / 3; bj++) {
+        for (int bi = 0; bi < taille / hauteurBloc; bi++) {
+            for (int bj = 0; bj < taille / largeurBloc; bj++) {
                 for (int k = 0; k < taille; k++) {
                     ArrayList<BooleanFormula> toutesLesCasesDeLaSousGrille = new ArrayList<>();
-                    for (int i = bi * taille / 3; i < (bi + 1) * taille / 3; i++) {
-                        for (int j = bj * taille / 3; j < (bj + 1) * (taille / 3); j++) {
+                    for (int i = bi * hauteurBloc; i < (bi + 1) * hauteurBloc; i++) {
+                        for (int j = bj * largeurBloc; j < (bj + 1) * largeurBloc; j++) {
                             toutesLesCasesDeLaSousGrille.add(variables[i][j][k]);
                         }
                     }
-                    auMoinsUneFoisChaqueChiffreDansChaqueSousGrille.add(new Or(toutesLesCasesDeLaSousGrille));
+                    auMoinsUneFoisChaqueChiffreDansChaqueSousGrille.add(fabrique.or(toutesLesCasesDeLaSousGrille));
                 }
             }
         }
-        BooleanFormula prop4 = new And(auMoinsUneFoisChaqueChiffreDansChaqueSousGrille);
+        BooleanFormula prop4 = fabrique.and(auMoinsUneFoisChaqueChiffreDansChaqueSousGrille);
 
         //Lecture de l'entrée pour respect de la grille de départ
         ArrayList<BooleanFormula> casesPréRemplies = new ArrayList<>();
         for(int i = 0; i < taille; i++){
             for(int j = 0; j < taille; j++){
-                if(grille[i][j] != '#'){
-                    int valeur = Character.getNumericValue(grille[i][j]);
-                    casesPréRemplies.add(variables[i][j][valeur-1]);
+                if(grille[i][j] != 0){
+                    casesPréRemplies.add(variables[i][j][grille[i][j]-1]);
                 }
             }
         }
-        BooleanFormula prop5 = new And(casesPréRemplies);
+        BooleanFormula prop5 = fabrique.and(casesPréRemplies);
 
         // Combinaison de toutes les propriétés
-        BooleanFormula bigFormula = new And(prop1, prop2, prop3, prop4, prop5);
+        BooleanFormula bigFormula = fabrique.and(prop1, prop2, prop3, prop4, prop5);
 
         // Affichage de la formule
         //System.out.println(bigFormula);
 
-        // Conversion de la formule en CNF
-        BooleanFormula cnf = BooleanFormula.toCnf(bigFormula);
+        return bigFormula;
+    }
 
-        // Affichage de la formule CNF
-        //System.out.println(cnf);
+    // Numéro DIMACS de la variable "la case (i, j) contient le chiffre k + 1"
+    private int variable(int i, int j, int k) {
+        return i * taille * taille + j * taille + k + 1;
+    }
 
-        return cnf;
+    // Numéro de la sous grille contenant la case (i, j)
+    private int sousGrille(int i, int j) {
+        return (i / hauteurBloc) * (taille / largeurBloc) + j / largeurBloc;
+    }
+
+    // Mêmes propriétés que modelize(), mais les clauses sont écrites directement
+    // sous forme de littéraux DIMACS, sans construire de formule
+    public ClauseArena encode() {
+        return encode(AtMostOne.PAIRWISE);
+    }
+
+    public ClauseArena encode(AtMostOne auPlusUn) {
+        ClauseArena arena = nouvelleArene();
+        encode(auPlusUn, arena);
+        return arena;
+    }
+
+    // Écrit les clauses une à une dans une destination quelconque (arène, solveur, fichier DIMACS),
+    // sans les garder en mémoire si la destination ne le fait pas
+    public void encode(AtMostOne auPlusUn, ClauseSink sortie) {
+        encodeBase(auPlusUn, sortie);
+
+        // Propriété 5 : respect de la grille de départ
+        for (int i = 0; i < taille; i++)
+            for (int j = 0; j < taille; j++)
+                if (grille[i][j] != 0)
+                    sortie.addClause(variable(i, j, grille[i][j] - 1));
+    }
+
+    // Propriétés 1 à 4, qui ne dépendent que de la taille de la grille
+    public ClauseArena encodeBase() {
+        return encodeBase(AtMostOne.PAIRWISE);
+    }
+
+    public ClauseArena encodeBase(AtMostOne auPlusUn) {
+        ClauseArena arena = nouvelleArene();
+        encodeBase(auPlusUn, arena);
+        return arena;
+    }
+
+    public void encodeBase(AtMostOne auPlusUn, ClauseSink sortie) {
+        int n = taille;
+        sortie.reserveVariables(n * n * n);
+        int groupe[] = new int[n];
+
+        // Propriété 1 : au moins un et au plus un chiffre par case
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                for (int k = 0; k < n; k++) {
+                    groupe[k] = variable(i, j, k);
+                    sortie.addLiteral(groupe[k]);
+                }
+                sortie.endClause();
+                auPlusUn.encode(groupe, n, sortie);
+            }
+        }
+
+        // Propriété 2 : pas deux fois le même chiffre sur une même ligne
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < n; k++) {
+                for (int j = 0; j < n; j++)
+                    groupe[j] = variable(i, j, k);
+                auPlusUn.encode(groupe, n, sortie);
+            }
+        }
+
+        // Propriété 3 : pas deux fois le même chiffre sur une même colonne
+        for (int j = 0; j < n; j++) {
+            for (int k = 0; k < n; k++) {
+                for (int i = 0; i < n; i++)
+                    groupe[i] = variable(i, j, k);
+                auPlusUn.encode(groupe, n, sortie);
+            }
+        }
+
+        // Propriété 4 : chaque chiffre au moins une fois dans chaque sous grille
+        for (int bi = 0; bi < n; bi += hauteurBloc) {
+            for (int bj = 0; bj < n; bj += largeurBloc) {
+                for (int k = 0; k < n; k++) {
+                    for (int i = bi; i < bi + hauteurBloc; i++)
+                        for (int j = bj; j < bj + largeurBloc; j++)
+                            sortie.addLiteral(variable(i, j, k));
+                    sortie.endClause();
+                }
+            }
+        }
+    }
+
+    // Capacité prévue pour l'encodage par paires d'une grille complète
+    private ClauseArena nouvelleArene() {
+        int n = taille;
+        return new ClauseArena(4 * n * n * n * n, 2 * n * n * n * n);
+    }
+
+    // Encodage réduit : les cases pré-remplies et les chiffres qu'elles interdisent sur leur
+    // ligne, leur colonne et leur sous grille ne génèrent aucune variable ni aucune clause
+    public ReducedEncoding encodeReduced() {
+        return encodeReduced(AtMostOne.PAIRWISE);
+    }
+
+    public ReducedEncoding encodeReduced(AtMostOne auPlusUn) {
+        int n = taille;
+        boolean ligneOccupee[][] = new boolean[n][n];
+        boolean colonneOccupee[][] = new boolean[n][n];
+        boolean sousGrilleOccupee[][] = new boolean[n][n];
+        boolean contradiction = false;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (grille[i][j] == 0)
+                    continue;
+                int k = grille[i][j] - 1;
+                int s = sousGrille(i, j);
+                if (ligneOccupee[i][k] || colonneOccupee[j][k] || sousGrilleOccupee[s][k])
+                    contradiction = true;
+                ligneOccupee[i][k] = colonneOccupee[j][k] = sousGrilleOccupee[s][k] = true;
+            }
+        }
+
+        // Numérotation compacte des candidats restants
+        int variables[][][] = new int[n][n][n];
+        int cases[] = new int[n * n * n + 1];
+        int chiffres[] = new int[n * n * n + 1];
+        int nbVariables = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (grille[i][j] != 0)
+                    continue;
+                int s = sousGrille(i, j);
+                for (int k = 0; k < n; k++) {
+                    if (!ligneOccupee[i][k] && !colonneOccupee[j][k] && !sousGrilleOccupee[s][k]) {
+                        variables[i][j][k] = ++nbVariables;
+                        cases[nbVariables] = i * n + j;
+                        chiffres[nbVariables] = k;
+                    }
+                }
+            }
+        }
+
+        ClauseArena arena = new ClauseArena(8 * nbVariables, 4 * nbVariables);
+        arena.reserveVariables(nbVariables);
+        if (contradiction)
+            arena.endClause();
+        int groupe[] = new int[n];
+        int m;
+
+        // Propriété 1 : au moins un et au plus un des chiffres encore possibles par case vide
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (grille[i][j] != 0)
+                    continue;
+                m = 0;
+                for (int k = 0; k < n; k++)
+                    if (variables[i][j][k] != 0)
+                        groupe[m++] = variables[i][j][k];
+                arena.addClause(groupe, 0, m);
+                auPlusUn.encode(groupe, m, arena);
+            }
+        }
+
+        // Propriétés 2 et 3 : seulement pour les chiffres absents de la ligne ou de la colonne
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < n; k++) {
+                if (ligneOccupee[i][k])
+                    continue;
+                m = 0;
+                for (int j = 0; j < n; j++)
+                    if (variables[i][j][k] != 0)
+                        groupe[m++] = variables[i][j][k];
+                auPlusUn.encode(groupe, m, arena);
+            }
+        }
+        for (int j = 0; j < n; j++) {
+            for (int k = 0; k < n; k++) {
+                if (colonneOccupee[j][k])
+                    continue;
+                m = 0;
+                for (int i = 0; i < n; i++)
+                    if (variables[i][j][k] != 0)
+                        groupe[m++] = variables[i][j][k];
+                auPlusUn.encode(groupe, m, arena);
+            }
+        }
+
+        // Propriété 4 : seulement pour les chiffres absents de la sous grille
+        for (int bi = 0; bi < n; bi += hauteurBloc) {
+            for (int bj = 0; bj < n; bj += largeurBloc) {
+                for (int k = 0; k < n; k++) {
+                    if (sousGrilleOccupee[sousGrille(bi, bj)][k])
+                        continue;
+                    for (int i = bi; i < bi + hauteurBloc; i++)
+                        for (int j = bj; j < bj + largeurBloc; j++)
+                            if (variables[i][j][k] != 0)
+                                arena.addLiteral(variables[i][j][k]);
+                    arena.endClause();
+                }
+            }
+        }
+
+        return new ReducedEncoding(grille, hauteurBloc, largeurBloc, arena,
+                Arrays.copyOf(cases, nbVariables + 1), Arrays.copyOf(chiffres, nbVariables + 1));
+    }
+
+    // Les cases pré-remplies sous forme d'hypothèses, pour un solveur qui contient déjà encodeBase()
+    public void addAssumptions(IVecInt hypotheses) {
+        for (int i = 0; i < taille; i++)
+            for (int j = 0; j < taille; j++)
+                if (grille[i][j] != 0)
+                    hypotheses.push(variable(i, j, grille[i][j] - 1));
+    }
+
+    // Littéraux d'une clause de blocage excluant la solution du modèle : au moins une des cases
+    // vides doit prendre un autre chiffre (les cases pré-remplies sont fixées par les hypothèses)
+    public void addBlockingLiterals(int[] model, IVecInt clause) {
+        for (int i = 0; i < taille; i++)
+            for (int j = 0; j < taille; j++)
+                if (grille[i][j] == 0)
+                    for (int k = 0; k < taille; k++)
+                        if (model[variable(i, j, k) - 1] > 0)
+                            clause.push(-variable(i, j, k));
+    }
+
+    // Même clause de blocage, pour une solution donnée sous forme de grille complète
+    public void addBlockingLiterals(Sudoku solution, IVecInt clause) {
+        for (int i = 0; i < taille; i++)
+            for (int j = 0; j < taille; j++)
+                if (grille[i][j] == 0)
+                    clause.push(-variable(i, j, solution.get(i, j) - 1));
+    }
+
+    // Nombre de solutions de la grille, au plus limite, avec un seul solveur gardé
+    // pendant tout le décompte (voir SudokuSession.countSolutions)
+    public int countSolutions(int limite) {
+        return new SudokuSession(hauteurBloc, largeurBloc, AtMostOne.PAIRWISE).countSolutions(this, limite);
+    }
+
+    public boolean isUnique() {
+        return countSolutions(2) == 1;
+    }
+
+    // Reconstruit la grille solution à partir d'un modèle SAT4J
+    public Sudoku decode(int[] model) {
+        int grilleSol[][] = new int[taille][taille];
+        for (int i = 0; i < taille; i++)
+            for (int j = 0; j < taille; j++)
+                for (int k = 0; k < taille; k++)
+                    if (model[variable(i, j, k) - 1] > 0)
+                        grilleSol[i][j] = k + 1;
+        return new Sudoku(grilleSol, hauteurBloc, largeurBloc);
+    }
+
+    // Résolution à partir de clauses déjà en mémoire (encode() ou modelize()), sans copie en int[][].
+    // Les clauses sont d'abord réduites par le prétraitement (propagation unitaire, élimination
+    // de variables, ...) ; le modèle trouvé est ensuite complété avec les variables retirées
+    public String solve(CnfFormula cnf) {
+        Sudoku solution = findSolution(cnf);
+        return solution == null ? "Grille non satisfiable" : solution.toString();
+    }
+
+    // Même résolution, mais la grille solution est retournée telle quelle ; null si les clauses sont insatisfiables
+    public Sudoku findSolution(CnfFormula cnf) {
+        CnfPreprocessor pretraitement = new CnfPreprocessor();
+        CnfFormula reduite = pretraitement.preprocess(cnf);
+        if (pretraitement.isUnsatisfiable())
+            return null;
+
+        ISolver solver = SolverFactory.newDefault();
+        solver.newVar(reduite.getVariableCount());
+
+        try {
+            ClauseArena.addTo(reduite, solver);
+            if (solver.isSatisfiable())
+                return decode(pretraitement.extend(solver.model()));
+        } catch (ContradictionException e) {
+            return null;
+        } catch (TimeoutException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    // Vrai si cette grille est complète, respecte les propriétés 1 à 4 et reprend les cases pré-remplies de grille
+    public boolean isSolutionOf(Sudoku grille) {
+        if (grille.getTaille() != taille)
+            return false;
+        for (int i = 0; i < taille; i++) {
+            boolean ligne[] = new boolean[taille + 1];
+            boolean colonne[] = new boolean[taille + 1];
+            boolean bloc[] = new boolean[taille + 1];
+            for (int j = 0; j < taille; j++) {
+                if (this.grille[i][j] == 0 || this.grille[j][i] == 0)
+                    return false;
+                if (grille.get(i, j) != 0 && grille.get(i, j) != this.grille[i][j])
+                    return false;
+                // j-ième case de la i-ième sous grille, les sous grilles étant numérotées comme dans sousGrille
+                int bi = (i / (taille / largeurBloc)) * hauteurBloc + j / largeurBloc;
+                int bj = (i % (taille / largeurBloc)) * largeurBloc + j % largeurBloc;
+                if (ligne[this.grille[i][j]] || colonne[this.grille[j][i]] || bloc[this.grille[bi][bj]])
+                    return false;
+                ligne[this.grille[i][j]] = true;
+                colonne[this.grille[j][i]] = true;
+                bloc[this.grille[bi][bj]] = true;
+            }
+        }
+        return true;
+    }
+
+    // Résolution sans conversion des contraintes de cardinalité en clauses : elles sont passées
+    // telles quelles à SAT4J, qui les propage directement
+    public String solveCardinality() {
+        ISolver solver = SolverFactory.newDefault();
+        solver.newVar(taille * taille * taille);
+
+        try {
+            ClauseArena.addTo(formule(), solver);
+        } catch (ContradictionException e) {
+            return "Grille non satisfiable";
+        }
+        return solve(solver);
+    }
+
+    // Résolution sans arène intermédiaire : les clauses de encode() vont directement au solveur
+    public String solveStreaming(AtMostOne auPlusUn) {
+        ISolver solver = SolverFactory.newDefault();
+        SolverSink sortie = new SolverSink(solver);
+        encode(auPlusUn, sortie);
+        if (sortie.isContradiction())
+            return "Grille non satisfiable";
+        return solve(solver);
+    }
+
+    public String solve(ReducedEncoding encodage) {
+        ISolver solver = SolverFactory.newDefault();
+        solver.newVar(encodage.getClauses().getVariableCount());
+
+        try {
+            encodage.getClauses().addTo(solver);
+            if (solver.isSatisfiable())
+                return encodage.decode(solver.model()).toString();
+        } catch (ContradictionException e) {
+            return "Grille non satisfiable";
+        } catch (TimeoutException e) {
+            e.printStackTrace();
+        }
+        return "Grille non satisfiable";
     }
 
     public String solve(int[][] clauses){
@@ -191,23 +669,15 @@ public class Sudoku {
             }
         }
 
+        return solve(solver);
+    }
+
+    private String solve(ISolver solver) {
         // we are done. Working now on the IProblem interface
-        char grilleSol[][] = new char[taille][taille];
         IProblem problem = solver;
         try {
             if (problem.isSatisfiable()) {
-                int[] model = problem.model();
-                for(int i = 0; i < taille; i ++){
-                    for(int j = 0; j < taille; j++){
-                        for(int k = 0; k < taille; k++){
-                            //System.out.println(model[i * taille * taille + j * taille + k]);
-                            if(model[i * taille * taille + j * taille + k] > 0)
-                                grilleSol[i][j] = (char) (k + 1 + '0');
-                        }
-                    }
-                }
-
-                Sudoku sol = new Sudoku(grilleSol, taille);
+                Sudoku sol = decode(problem.model());
                 return sol.toString();
             } else {
                 return "Grille non satisfiable";
@@ -0,0 +1,243 @@
+package stev.sudoku;
+
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Génération de grilles à solution unique : une grille complète est tirée au hasard, puis ses
+ * cases sont vidées une orbite de symétrie à la fois, tant que la solution reste unique et que
+ * le nombre d'indices visé n'est pas atteint. Chaque thread garde sa propre SudokuSession pour
+ * remplir les grilles et vérifier l'unicité, en un seul appel au solveur par case retirée.
+ */
+public class SudokuGenerator {
+    private static final int TAILLE_PAQUET = 16;
+    // Essais avec des grilles complètes différentes quand le nombre d'indices visé n'est pas atteint
+    private static final int TENTATIVES = 4;
+
+    private final int hauteurBloc;
+    private final int largeurBloc;
+    private final int taille;
+    private final int cibleIndices;
+    private final Symmetry symetrie;
+    private final int nbThreads;
+    private final ThreadLocal<SudokuSession> sessions;
+
+    private long total;
+    private int nbGrilles;
+    private int nbCibles;
+    private int minIndices = Integer.MAX_VALUE;
+    private int maxIndices;
+
+    /**
+     * @param cibleIndices Nombre d'indices visé ; 0 pour retirer autant de cases que possible
+     * @param symetrie Symétrie respectée par le motif des cases pré-remplies
+     * @param nbThreads Nombre de threads utilisés par run
+     */
+    public SudokuGenerator(int hauteurBloc, int largeurBloc, int cibleIndices, Symmetry symetrie, int nbThreads) {
+        this.hauteurBloc = hauteurBloc;
+        this.largeurBloc = largeurBloc;
+        this.taille = hauteurBloc * largeurBloc;
+        this.cibleIndices = cibleIndices;
+        this.symetrie = symetrie;
+        this.nbThreads = nbThreads;
+        sessions = ThreadLocal.withInitial(() -> new SudokuSession(hauteurBloc, largeurBloc, AtMostOne.PAIRWISE));
+    }
+
+    // Une grille à solution unique, générée sur le thread courant. Si le nombre d'indices visé
+    // n'est pas atteint après quelques essais, la grille la plus dépouillée est retournée
+    public Sudoku generate() {
+        SudokuSession session = sessions.get();
+        Random aleatoire = ThreadLocalRandom.current();
+
+        Sudoku meilleure = null;
+        int tentatives = cibleIndices > 0 ? TENTATIVES : 1;
+        for (int t = 0; t < tentatives; t++) {
+            Sudoku solution = remplir(session, aleatoire);
+            Sudoku grille = vider(session, solution, aleatoire);
+            if (meilleure == null || nbIndices(grille) < nbIndices(meilleure))
+                meilleure = grille;
+            if (nbIndices(meilleure) <= cibleIndices)
+                break;
+        }
+        return meilleure;
+    }
+
+    // Grille complète au hasard : une première ligne et quelques cases tirées sans conflit,
+    // complétées par le solveur, puis mélangées par des transformations qui préservent les règles
+    private Sudoku remplir(SudokuSession session, Random aleatoire) {
+        while (true) {
+            int grille[][] = new int[taille][taille];
+            int chiffres[] = permutation(taille, aleatoire);
+            for (int j = 0; j < taille; j++)
+                grille[0][j] = chiffres[j] + 1;
+            for (int p = 0; p < taille; p++) {
+                int i = 1 + aleatoire.nextInt(taille - 1);
+                int j = aleatoire.nextInt(taille);
+                int k = 1 + aleatoire.nextInt(taille);
+                if (grille[i][j] == 0 && possible(grille, i, j, k))
+                    grille[i][j] = k;
+            }
+            Sudoku solution = session.solve(new Sudoku(grille, hauteurBloc, largeurBloc));
+            if (solution != null)
+                return melanger(solution, aleatoire);
+        }
+    }
+
+    // Vide les cases dans un ordre aléatoire, par orbites de la symétrie, en gardant une solution unique
+    private Sudoku vider(SudokuSession session, Sudoku solution, Random aleatoire) {
+        int grille[][] = new int[taille][taille];
+        for (int i = 0; i < taille; i++)
+            for (int j = 0; j < taille; j++)
+                grille[i][j] = solution.get(i, j);
+        // La grille partage le tableau : elle suit les cases vidées sans être recréée
+        Sudoku sudoku = new Sudoku(grille, hauteurBloc, largeurBloc);
+        int nbIndices = taille * taille;
+
+        for (int c : permutation(taille * taille, aleatoire)) {
+            if (nbIndices <= cibleIndices)
+                break;
+            int i = c / taille, j = c % taille;
+            if (grille[i][j] == 0)
+                continue;
+            int image = symetrie.image(i, j, taille);
+            int ii = image / taille, jj = image % taille;
+            grille[i][j] = 0;
+            grille[ii][jj] = 0;
+            if (session.isUnique(sudoku, solution)) {
+                nbIndices -= image == c ? 1 : 2;
+            } else {
+                grille[i][j] = solution.get(i, j);
+                grille[ii][jj] = solution.get(ii, jj);
+            }
+        }
+        return sudoku;
+    }
+
+    // Permutation des chiffres, des lignes dans chaque bande et des bandes, puis des colonnes
+    // dans chaque pile et des piles : la grille obtenue est toujours une solution valide
+    private Sudoku melanger(Sudoku solution, Random aleatoire) {
+        int chiffres[] = permutation(taille, aleatoire);
+        int lignes[] = ordre(hauteurBloc, taille / hauteurBloc, aleatoire);
+        int colonnes[] = ordre(largeurBloc, taille / largeurBloc, aleatoire);
+        int grille[][] = new int[taille][taille];
+        for (int i = 0; i < taille; i++)
+            for (int j = 0; j < taille; j++)
+                grille[i][j] = chiffres[solution.get(lignes[i], colonnes[j]) - 1] + 1;
+        return new Sudoku(grille, hauteurBloc, largeurBloc);
+    }
+
+    // Ordre des lignes (ou des colonnes) : les groupes de longueur donnée sont permutés, ainsi que leurs éléments
+    private static int[] ordre(int longueur, int nbGroupes, Random aleatoire) {
+        int groupes[] = permutation(nbGroupes, aleatoire);
+        int resultat[] = new int[longueur * nbGroupes];
+        for (int g = 0; g < nbGroupes; g++) {
+            int elements[] = permutation(longueur, aleatoire);
+            for (int e = 0; e < longueur; e++)
+                resultat[g * longueur + e] = groupes[g] * longueur + elements[e];
+        }
+        return resultat;
+    }
+
+    // Mélange de Fisher-Yates de 0..n-1
+    private static int[] permutation(int n, Random aleatoire) {
+        int resultat[] = new int[n];
+        for (int a = 0; a < n; a++)
+            resultat[a] = a;
+        for (int a = n - 1; a > 0; a--) {
+            int b = aleatoire.nextInt(a + 1);
+            int t = resultat[a];
+            resultat[a] = resultat[b];
+            resultat[b] = t;
+        }
+        return resultat;
+    }
+
+    // Le chiffre k n'apparaît pas encore dans la ligne, la colonne ni la sous grille de la case (i, j)
+    private boolean possible(int[][] grille, int i, int j, int k) {
+        for (int a = 0; a < taille; a++)
+            if (grille[i][a] == k || grille[a][j] == k)
+                return false;
+        int i0 = (i / hauteurBloc) * hauteurBloc, j0 = (j / largeurBloc) * largeurBloc;
+        for (int a = i0; a < i0 + hauteurBloc; a++)
+            for (int b = j0; b < j0 + largeurBloc; b++)
+                if (grille[a][b] == k)
+                    return false;
+        return true;
+    }
+
+    private int nbIndices(Sudoku sudoku) {
+        int n = 0;
+        for (int i = 0; i < taille; i++)
+            for (int j = 0; j < taille; j++)
+                if (sudoku.get(i, j) != 0)
+                    n++;
+        return n;
+    }
+
+    // Génère nbGrilles grilles par paquets répartis sur les threads, une grille par ligne en sortie
+    public void run(int nbGrilles, PrintStream sortie, PrintStream stats) {
+        ExecutorService executeur = Executors.newFixedThreadPool(nbThreads);
+        // Fenêtre bornée de paquets en cours, comme pour la résolution en lot
+        ArrayDeque<Future<Sudoku[]>> enCours = new ArrayDeque<>();
+        long debut = System.nanoTime();
+        try {
+            for (int restantes = nbGrilles; restantes > 0; restantes -= TAILLE_PAQUET) {
+                int nb = Math.min(restantes, TAILLE_PAQUET);
+                enCours.add(executeur.submit(() -> {
+                    Sudoku paquet[] = new Sudoku[nb];
+                    for (int p = 0; p < nb; p++)
+                        paquet[p] = generate();
+                    return paquet;
+                }));
+                if (enCours.size() >= 4 * nbThreads)
+                    ecrire(enCours.poll(), sortie);
+            }
+            while (!enCours.isEmpty())
+                ecrire(enCours.poll(), sortie);
+        } finally {
+            executeur.shutdownNow();
+        }
+        sortie.flush();
+        afficherStatistiques(stats, System.nanoTime() - debut);
+    }
+
+    private void ecrire(Future<Sudoku[]> future, PrintStream sortie) {
+        Sudoku paquet[];
+        try {
+            paquet = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        for (Sudoku sudoku : paquet) {
+            sortie.println(sudoku.toLine());
+            int n = nbIndices(sudoku);
+            total += n;
+            nbGrilles++;
+            if (n <= cibleIndices)
+                nbCibles++;
+            minIndices = Math.min(minIndices, n);
+            maxIndices = Math.max(maxIndices, n);
+        }
+    }
+
+    private void afficherStatistiques(PrintStream stats, long duree) {
+        stats.println("Grilles : " + nbGrilles + " (" + taille + "x" + taille + ", symétrie " + symetrie.name().toLowerCase()
+                + ") sur " + nbThreads + " thread(s)");
+        stats.printf("Durée : %.3f s, débit : %.1f grilles/s%n", duree / 1e9, nbGrilles / (duree / 1e9));
+        if (nbGrilles == 0)
+            return;
+        stats.printf("Indices : moyenne %.1f, min %d, max %d", total / (double) nbGrilles, minIndices, maxIndices);
+        if (cibleIndices > 0)
+            stats.printf(", %d grille(s) au plus à %d indices", nbCibles, cibleIndices);
+        stats.println();
+    }
+}
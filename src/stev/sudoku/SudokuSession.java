@@ -0,0 +1,176 @@
+package stev.sudoku;
+
+import org.sat4j.core.VecInt;
+import org.sat4j.minisat.SolverFactory;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.IConstr;
+import org.sat4j.specs.ISolver;
+import org.sat4j.specs.TimeoutException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Solveur SAT4J réutilisable pour toutes les grilles d'une même taille.
+ * Les propriétés 1 à 4 sont chargées une seule fois ; les cases pré-remplies de chaque
+ * grille sont passées comme hypothèses, ce qui conserve les clauses apprises d'une grille à l'autre
+ * (un décompte de solutions ou une vérification d'unicité les efface en fin d'appel).
+ * Une session n'est pas thread-safe : il faut une session par thread.
+ */
+public class SudokuSession implements SudokuSolver {
+    private final int taille;
+    private final ISolver solver;
+    private final VecInt hypotheses;
+    // Sélecteur des clauses de blocage, pris comme hypothèse pendant les décomptes et les vérifications d'unicité
+    private final int selecteur;
+    // Indicateur de la résolution en cours, remplacé à chaque appel ; cancel() le lève
+    private final AtomicReference<AtomicBoolean> annulationCourante = new AtomicReference<>(new AtomicBoolean());
+
+    public SudokuSession(int taille) {
+        this(new Sudoku(taille).getHauteurBloc(), new Sudoku(taille).getLargeurBloc(), AtMostOne.PAIRWISE);
+    }
+
+    public SudokuSession(int hauteurBloc, int largeurBloc, AtMostOne auPlusUn) {
+        this.taille = hauteurBloc * largeurBloc;
+        ClauseArena base = new Sudoku(hauteurBloc, largeurBloc).encodeBase(auPlusUn);
+        solver = SolverFactory.newDefault();
+        solver.newVar(base.getVariableCount());
+        hypotheses = new VecInt(taille * taille);
+        selecteur = solver.nextFreeVarId(true);
+        SatSudokuSolver.surveiller(solver, () -> annulationCourante.get().get());
+
+        try {
+            base.addTo(solver);
+        } catch (ContradictionException e) {
+            // Les propriétés de base sont toujours satisfiables
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public int getTaille() {
+        return taille;
+    }
+
+    @Override
+    public Sudoku solve(Sudoku sudoku) {
+        return solve(sudoku, new AtomicBoolean());
+    }
+
+    @Override
+    public Sudoku solve(Sudoku sudoku, AtomicBoolean annulation) {
+        verifierTaille(sudoku);
+
+        hypotheses.clear();
+        sudoku.addAssumptions(hypotheses);
+        annulationCourante.set(annulation);
+        try {
+            if (solver.isSatisfiable(hypotheses))
+                return sudoku.decode(solver.model());
+        } catch (TimeoutException e) {
+            if (!annulation.get())
+                e.printStackTrace();
+        }
+        return null;
+    }
+
+    // Nombre de solutions de la grille, en s'arrêtant dès que limite est atteinte ; -1 si la recherche est annulée.
+    // Chaque solution trouvée est exclue par une clause de blocage sur les seules cases vides, gardée par le
+    // sélecteur de la session pris comme hypothèse. À la fin, les clauses de blocage sont retirées et les
+    // clauses apprises effacées, puisque certaines en dépendent : la session ne grossit pas d'un appel à l'autre
+    public int countSolutions(Sudoku sudoku, int limite) {
+        verifierTaille(sudoku);
+
+        hypotheses.clear();
+        sudoku.addAssumptions(hypotheses);
+        hypotheses.push(selecteur);
+        VecInt blocage = new VecInt(taille * taille + 1);
+        List<IConstr> gardes = new ArrayList<>();
+        int nbSolutions = 0;
+        AtomicBoolean annulation = new AtomicBoolean();
+        annulationCourante.set(annulation);
+        try {
+            while (nbSolutions < limite && solver.isSatisfiable(hypotheses)) {
+                nbSolutions++;
+                if (nbSolutions == limite)
+                    break;
+                blocage.clear();
+                blocage.push(-selecteur);
+                sudoku.addBlockingLiterals(solver.model(), blocage);
+                // Grille sans case vide : pas d'autre solution possible
+                if (blocage.size() == 1)
+                    break;
+                gardes.add(solver.addClause(blocage));
+            }
+        } catch (ContradictionException e) {
+            // La clause de blocage contient toujours ¬sélecteur : elle ne peut pas être contradictoire
+            throw new IllegalStateException(e);
+        } catch (TimeoutException e) {
+            if (!annulation.get())
+                e.printStackTrace();
+            nbSolutions = -1;
+        } finally {
+            oublier(gardes);
+        }
+        return nbSolutions;
+    }
+
+    public boolean isUnique(Sudoku sudoku) {
+        return countSolutions(sudoku, 2) == 1;
+    }
+
+    // Unicité d'une grille dont une solution est déjà connue (par exemple pendant la génération) :
+    // la clause de blocage de cette solution est ajoutée d'emblée, et un seul appel au solveur suffit
+    public boolean isUnique(Sudoku sudoku, Sudoku solution) {
+        verifierTaille(sudoku);
+
+        hypotheses.clear();
+        sudoku.addAssumptions(hypotheses);
+        hypotheses.push(selecteur);
+        VecInt blocage = new VecInt(taille * taille + 1);
+        blocage.push(-selecteur);
+        sudoku.addBlockingLiterals(solution, blocage);
+        AtomicBoolean annulation = new AtomicBoolean();
+        annulationCourante.set(annulation);
+        List<IConstr> gardes = new ArrayList<>(1);
+        try {
+            // Grille sans case vide : elle est unique si elle est valide
+            if (blocage.size() == 1)
+                return solver.isSatisfiable(hypotheses);
+            gardes.add(solver.addClause(blocage));
+            return !solver.isSatisfiable(hypotheses);
+        } catch (ContradictionException e) {
+            // La clause de blocage contient toujours ¬sélecteur : elle ne peut pas être contradictoire
+            throw new IllegalStateException(e);
+        } catch (TimeoutException e) {
+            if (!annulation.get())
+                e.printStackTrace();
+            return false;
+        } finally {
+            oublier(gardes);
+        }
+    }
+
+    // Retire les clauses de blocage, puis les clauses apprises : certaines ont été déduites des clauses
+    // de blocage et ne seraient plus justifiées au prochain appel qui suppose le sélecteur
+    private void oublier(List<IConstr> gardes) {
+        if (gardes.isEmpty())
+            return;
+        for (IConstr garde : gardes)
+            if (garde != null)
+                solver.removeConstr(garde);
+        solver.clearLearntClauses();
+    }
+
+    private void verifierTaille(Sudoku sudoku) {
+        if (sudoku.getTaille() != taille)
+            throw new IllegalArgumentException("Grille de taille " + sudoku.getTaille() + " pour une session de taille " + taille);
+    }
+
+    @Override
+    public void cancel() {
+        annulationCourante.get().set(true);
+        solver.expireTimeout();
+    }
+}
@@ -0,0 +1,23 @@
+package stev.sudoku;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moteur de résolution de grilles. Les implémentations ne sont pas thread-safe :
+ * il faut une instance par thread.
+ */
+public interface SudokuSolver {
+    // Retourne la grille résolue, ou null si la grille n'a pas de solution
+    Sudoku solve(Sudoku sudoku);
+
+    // Même résolution, abandonnée (null) dès que annulation passe à vrai, même si c'est avant son début
+    // ou pendant l'encodage. Le portefeuille crée un indicateur par course et le passe à chaque moteur
+    default Sudoku solve(Sudoku sudoku, AtomicBoolean annulation) {
+        return annulation.get() ? null : solve(sudoku);
+    }
+
+    // Demande, depuis un autre thread, l'arrêt de la résolution en cours ; solve() retourne alors null.
+    // Sans effet sur une résolution qui n'a pas encore commencé : passer alors un indicateur d'annulation
+    default void cancel() {
+    }
+}
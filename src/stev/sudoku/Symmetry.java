@@ -0,0 +1,51 @@
+package stev.sudoku;
+
+/**
+ * Symétries du motif des cases pré-remplies, utilisées par le générateur : une case et son image
+ * sont vidées ensemble, si bien que la grille finale reste symétrique.
+ * Chaque symétrie est une involution, les orbites ont donc une ou deux cases.
+ */
+public enum Symmetry {
+    // Aucune contrainte sur le motif
+    NONE {
+        @Override
+        public int image(int i, int j, int taille) {
+            return i * taille + j;
+        }
+    },
+
+    // Rotation d'un demi-tour autour du centre, la symétrie des grilles publiées
+    ROTATIONAL {
+        @Override
+        public int image(int i, int j, int taille) {
+            return (taille - 1 - i) * taille + (taille - 1 - j);
+        }
+    },
+
+    // Miroir par rapport à l'axe vertical
+    MIRROR {
+        @Override
+        public int image(int i, int j, int taille) {
+            return i * taille + (taille - 1 - j);
+        }
+    },
+
+    // Miroir par rapport à la diagonale principale
+    DIAGONAL {
+        @Override
+        public int image(int i, int j, int taille) {
+            return j * taille + i;
+        }
+    };
+
+    /**
+     * Case associée à la case (i, j) par la symétrie.
+     * @param taille Nombre de lignes (et de colonnes) de la grille
+     * @return Le numéro i * taille + j de la case image
+     */
+    public abstract int image(int i, int j, int taille);
+
+    public static Symmetry parse(String nom) {
+        return valueOf(nom.toUpperCase());
+    }
+}